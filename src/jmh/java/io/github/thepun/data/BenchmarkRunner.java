@@ -0,0 +1,116 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark across 1..N producer / consumer thread counts with allocation profiling.
+ *
+ * Arguments are optional regexps to select benchmarks by class name.
+ * Maximum thread count per side is taken from 'jmh.maxThreads' system property (half of available processors by default).
+ */
+public final class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = Integer.getInteger("jmh.maxThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        String resultFile = System.getProperty("jmh.resultFile", "jmh-results.json");
+
+        List<Pattern> filters = new ArrayList<>();
+        for (String arg : args) {
+            filters.add(Pattern.compile(arg));
+        }
+
+        List<Topology> topologies = new ArrayList<>();
+        topologies.add(new Topology("io.github.thepun.data.transfer.BridgeBenchmark", 1, 1));
+        topologies.add(new Topology("io.github.thepun.data.transfer.LongBridgeBenchmark", 1, 1));
+        for (int i = 1; i <= maxThreads; i++) {
+            topologies.add(new Topology("io.github.thepun.data.transfer.MultiplexerBenchmark", i, 1));
+            topologies.add(new Topology("io.github.thepun.data.transfer.DemultiplexerBenchmark", 1, i));
+            topologies.add(new Topology("io.github.thepun.data.transfer.RouterBenchmark", i, i));
+        }
+        topologies.add(new Topology("io.github.thepun.data.match.LongHashtableBenchmark", 0, 0));
+
+        // single submitting thread, number of workers is a parameter of the benchmark
+        topologies.add(new Topology("io.github.thepun.data.executor.ExecutorBenchmark", 0, 0));
+
+        for (Topology topology : topologies) {
+            if (!topology.matches(filters)) {
+                continue;
+            }
+
+            String topologyResultFile = resultFile.replace(".json", "-" + topology.suffix() + ".json");
+            new File(topologyResultFile).getAbsoluteFile().getParentFile().mkdirs();
+
+            OptionsBuilder options = new OptionsBuilder();
+            options.include(Pattern.quote(topology.benchmark) + "\\.");
+            options.addProfiler(GCProfiler.class);
+            options.resultFormat(ResultFormatType.JSON);
+            options.result(topologyResultFile);
+            if (topology.producers > 0) {
+                options.threadGroups(topology.producers, topology.consumers);
+            }
+
+            new Runner(options.build()).run();
+        }
+    }
+
+
+    private static final class Topology {
+
+        private final String benchmark;
+        private final int producers;
+        private final int consumers;
+
+        private Topology(String benchmark, int producers, int consumers) {
+            this.benchmark = benchmark;
+            this.producers = producers;
+            this.consumers = consumers;
+        }
+
+        private boolean matches(List<Pattern> filters) {
+            if (filters.isEmpty()) {
+                return true;
+            }
+
+            for (Pattern filter : filters) {
+                if (filter.matcher(benchmark).find()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private String suffix() {
+            String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            if (producers > 0) {
+                return name + "-" + producers + "x" + consumers;
+            }
+
+            return name;
+        }
+    }
+}
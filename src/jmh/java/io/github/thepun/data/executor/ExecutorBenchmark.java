@@ -0,0 +1,94 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.github.thepun.data.transfer.BlockingWaitStrategy;
+import io.github.thepun.data.transfer.DispatchPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single submitter executes small tasks on a pool of workers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    @Param({"RouterExecutorService", "StealingExecutorService", "ThreadPoolExecutor"})
+    public String implementation;
+
+    @Param("4")
+    public int threads;
+
+    @Param("65536")
+    public int queueSize;
+
+    private ExecutorService executor;
+    private Runnable task;
+
+    @Setup(Level.Iteration)
+    public void createExecutor() {
+        switch (implementation) {
+            case "RouterExecutorService":
+                executor = new RouterExecutorService(threads, queueSize, new BlockingWaitStrategy(), RejectionPolicy.WAIT, r -> new Thread(r));
+                break;
+
+            case "StealingExecutorService":
+                executor = new StealingExecutorService(threads, DispatchPolicy.LEAST_LOADED, 64, new BlockingWaitStrategy(), r -> new Thread(r));
+                break;
+
+            case "ThreadPoolExecutor":
+                executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+
+        task = () -> {};
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroyExecutor() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void execute() {
+        executor.execute(task);
+    }
+}
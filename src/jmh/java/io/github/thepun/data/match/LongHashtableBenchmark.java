@@ -0,0 +1,162 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.match;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-threaded get / set / remove mixes.
+ *
+ * Mix is expressed as percentage of get, set and remove operations (i.e. '80/10/10').
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongHashtableBenchmark {
+
+    private static final int OPERATION_COUNT = 1 << 16;
+    private static final int OPERATION_MASK = OPERATION_COUNT - 1;
+    private static final int KEY_RANGE = 1 << 24;
+
+    private static final byte GET = 0;
+    private static final byte SET = 1;
+    private static final byte REMOVE = 2;
+
+    @Param({"LinearLongHashtable", "HashMap"})
+    public String implementation;
+
+    @Param({"100/0/0", "80/10/10", "50/50/0", "40/30/30"})
+    public String mix;
+
+    @Param("16384")
+    public int initialKeys;
+
+    private LongHashtable hashtable;
+    private long[] keys;
+    private byte[] operations;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void createOperations() {
+        String[] percents = mix.split("/");
+        int getPercent = Integer.parseInt(percents[0]);
+        int setPercent = Integer.parseInt(percents[1]);
+
+        Random random = new Random(599);
+        keys = new long[OPERATION_COUNT];
+        operations = new byte[OPERATION_COUNT];
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            keys[i] = random.nextInt(KEY_RANGE);
+
+            int percent = random.nextInt(100);
+            if (percent < getPercent) {
+                operations[i] = GET;
+            } else if (percent < getPercent + setPercent) {
+                operations[i] = SET;
+            } else {
+                operations[i] = REMOVE;
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createHashtable() {
+        switch (implementation) {
+            case "LinearLongHashtable":
+                hashtable = new LinearLongHashtable();
+                break;
+
+            case "HashMap":
+                hashtable = new HashMapLongHashtable();
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+
+        for (int i = 0; i < initialKeys; i++) {
+            long key = keys[i & OPERATION_MASK];
+            hashtable.set(key, key);
+        }
+
+        index = 0;
+    }
+
+    @Benchmark
+    public long mixed() {
+        int localIndex = index++ & OPERATION_MASK;
+        long key = keys[localIndex];
+
+        switch (operations[localIndex]) {
+            case GET:
+                return hashtable.get(key);
+
+            case SET:
+                hashtable.set(key, key);
+                return key;
+
+            default:
+                hashtable.remove(key);
+                return key;
+        }
+    }
+
+
+    // baseline with boxed keys and values
+    private static final class HashMapLongHashtable implements LongHashtable {
+
+        private final Map<Long, Long> map = new HashMap<>();
+
+        @Override
+        public long get(long key) {
+            Long value = map.get(key);
+            if (value == null) {
+                return ELEMENT_NOT_FOUND;
+            }
+
+            return value;
+        }
+
+        @Override
+        public void set(long key, long value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void remove(long key) {
+            map.remove(key);
+        }
+    }
+}
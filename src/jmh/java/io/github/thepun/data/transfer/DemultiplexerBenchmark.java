@@ -0,0 +1,141 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Single producer / multiple consumers transfer.
+ *
+ * Number of consumers is controlled with thread groups (i.e. '-tg 1,4').
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemultiplexerBenchmark {
+
+    private static final Long ELEMENT = 599L;
+
+    @Param({"RingBufferDemultiplexer", "StealingLinkedChunkDemultiplexer", "StealingLinkedChunkDemultiplexerLeastLoaded", "ArrayBlockingQueue", "ConcurrentLinkedQueue"})
+    public String implementation;
+
+    @Param("65536")
+    public int bufferSize;
+
+    private QueueTail<Long> tail;
+    private HasConsumers<Long> consumers;
+
+    @Setup(Level.Iteration)
+    public void createDemultiplexer() {
+        switch (implementation) {
+            case "RingBufferDemultiplexer":
+                RingBufferDemultiplexer<Long> ringBufferDemultiplexer = new RingBufferDemultiplexer<>(bufferSize);
+                tail = ringBufferDemultiplexer;
+                consumers = ringBufferDemultiplexer;
+                break;
+
+            case "StealingLinkedChunkDemultiplexer":
+                StealingLinkedChunkDemultiplexer<Long> stealingLinkedChunkDemultiplexer = new StealingLinkedChunkDemultiplexer<>();
+                tail = stealingLinkedChunkDemultiplexer;
+                consumers = stealingLinkedChunkDemultiplexer;
+                break;
+
+            case "StealingLinkedChunkDemultiplexerLeastLoaded":
+                StealingLinkedChunkDemultiplexer<Long> leastLoadedDemultiplexer = new StealingLinkedChunkDemultiplexer<>(DispatchPolicy.LEAST_LOADED, 64, BusySpinWaitStrategy.INSTANCE);
+                tail = leastLoadedDemultiplexer;
+                consumers = leastLoadedDemultiplexer;
+                break;
+
+            case "ArrayBlockingQueue":
+                JdkQueueAdapter<Long> arrayBlockingQueue = new JdkQueueAdapter<>(new ArrayBlockingQueue<>(bufferSize));
+                tail = arrayBlockingQueue;
+                consumers = arrayBlockingQueue;
+                break;
+
+            case "ConcurrentLinkedQueue":
+                JdkQueueAdapter<Long> concurrentLinkedQueue = new JdkQueueAdapter<>(new ConcurrentLinkedQueue<>());
+                tail = concurrentLinkedQueue;
+                consumers = concurrentLinkedQueue;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public boolean produce(Control control) {
+        QueueTail<Long> localTail = tail;
+        while (!localTail.addToTail(ELEMENT)) {
+            if (control.stopMeasurement) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public Long consume(Consumer consumer, Control control) {
+        QueueHead<Long> localHead = consumer.head;
+
+        Long element;
+        while ((element = localHead.removeFromHead()) == null) {
+            if (control.stopMeasurement) {
+                return null;
+            }
+        }
+
+        return element;
+    }
+
+
+    @State(Scope.Thread)
+    public static class Consumer {
+
+        private QueueHead<Long> head;
+
+        @Setup(Level.Iteration)
+        public void createConsumer(DemultiplexerBenchmark benchmark) {
+            head = benchmark.consumers.createConsumer();
+        }
+    }
+}
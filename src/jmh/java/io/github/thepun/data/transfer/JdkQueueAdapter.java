@@ -0,0 +1,60 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Queue;
+
+/**
+ * Baseline adapter which exposes any {@link Queue} from java.util.concurrent as a transfer structure.
+ *
+ * All producers and consumers share the same queue instance so thread-safety relies on the queue itself.
+ */
+final class JdkQueueAdapter<T> implements QueueHead<T>, QueueTail<T>, HasProducers<T>, HasConsumers<T> {
+
+    private final Queue<T> queue;
+
+    JdkQueueAdapter(Queue<T> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public T removeFromHead() {
+        return queue.poll();
+    }
+
+    @Override
+    public boolean addToTail(T element) {
+        return queue.offer(element);
+    }
+
+    @Override
+    public QueueTail<T> createProducer() {
+        return this;
+    }
+
+    @Override
+    public void destroyProducer(QueueTail<T> producer) {
+    }
+
+    @Override
+    public QueueHead<T> createConsumer() {
+        return this;
+    }
+
+    @Override
+    public void destroyConsumer(QueueHead<T> consumer) {
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Single producer / single consumer transfer of sequence numbers.
+ *
+ * Boxed bridges are fed with growing values so every element is a new Long as it is in id-passing pipelines.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongBridgeBenchmark {
+
+    @Param({"LongRingBufferBridge", "LongLinkedChunkBridge", "RingBufferBridge", "LinkedChunkBridge"})
+    public String implementation;
+
+    @Param("65536")
+    public int bufferSize;
+
+    private LongQueueTail longTail;
+    private LongQueueHead longHead;
+    private QueueTail<Long> tail;
+    private QueueHead<Long> head;
+    private long sequence;
+
+    @Setup(Level.Iteration)
+    public void createBridge() {
+        longTail = null;
+        longHead = null;
+        tail = null;
+        head = null;
+
+        switch (implementation) {
+            case "LongRingBufferBridge":
+                LongRingBufferBridge longRingBufferBridge = new LongRingBufferBridge(bufferSize);
+                longTail = longRingBufferBridge;
+                longHead = longRingBufferBridge;
+                break;
+
+            case "LongLinkedChunkBridge":
+                LongLinkedChunkBridge longLinkedChunkBridge = new LongLinkedChunkBridge();
+                longTail = longLinkedChunkBridge;
+                longHead = longLinkedChunkBridge;
+                break;
+
+            case "RingBufferBridge":
+                RingBufferBridge<Long> ringBufferBridge = new RingBufferBridge<>(bufferSize);
+                tail = ringBufferBridge;
+                head = ringBufferBridge;
+                break;
+
+            case "LinkedChunkBridge":
+                LinkedChunkBridge<Long> linkedChunkBridge = new LinkedChunkBridge<>();
+                tail = linkedChunkBridge;
+                head = linkedChunkBridge;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public boolean produce(Control control) {
+        long element = sequence++;
+
+        if (longTail != null) {
+            LongQueueTail localTail = longTail;
+            while (!localTail.addToTail(element)) {
+                if (control.stopMeasurement) {
+                    return false;
+                }
+            }
+        } else {
+            QueueTail<Long> localTail = tail;
+            Long boxed = element;
+            while (!localTail.addToTail(boxed)) {
+                if (control.stopMeasurement) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public long consume(Control control) {
+        if (longHead != null) {
+            LongQueueHead localHead = longHead;
+
+            long element;
+            while ((element = localHead.removeFromHead()) == LongQueueHead.EMPTY) {
+                if (control.stopMeasurement) {
+                    return LongQueueHead.EMPTY;
+                }
+            }
+
+            return element;
+        } else {
+            QueueHead<Long> localHead = head;
+
+            Long element;
+            while ((element = localHead.removeFromHead()) == null) {
+                if (control.stopMeasurement) {
+                    return LongQueueHead.EMPTY;
+                }
+            }
+
+            return element;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Multiple producers / multiple consumers transfer.
+ *
+ * Number of producers and consumers is controlled with thread groups (i.e. '-tg 2,4').
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    private static final Long ELEMENT = 599L;
+
+    @Param({"RingBufferRouter", "GreedyRingBufferRouter", "AtomicPoolRouter", "ArrayBlockingQueue", "ConcurrentLinkedQueue"})
+    public String implementation;
+
+    @Param("65536")
+    public int bufferSize;
+
+    private HasProducers<Long> producers;
+    private HasConsumers<Long> consumers;
+
+    @Setup(Level.Iteration)
+    public void createRouter() {
+        switch (implementation) {
+            case "RingBufferRouter":
+                RingBufferRouter<Long> ringBufferRouter = new RingBufferRouter<>(bufferSize);
+                producers = ringBufferRouter;
+                consumers = ringBufferRouter;
+                break;
+
+            case "GreedyRingBufferRouter":
+                GreedyRingBufferRouter<Long> greedyRingBufferRouter = new GreedyRingBufferRouter<>(bufferSize);
+                producers = greedyRingBufferRouter;
+                consumers = greedyRingBufferRouter;
+                break;
+
+            case "AtomicPoolRouter":
+                AtomicPoolRouter<Long> atomicPoolRouter = new AtomicPoolRouter<>(bufferSize);
+                producers = atomicPoolRouter;
+                consumers = atomicPoolRouter;
+                break;
+
+            case "ArrayBlockingQueue":
+                JdkQueueAdapter<Long> arrayBlockingQueue = new JdkQueueAdapter<>(new ArrayBlockingQueue<>(bufferSize));
+                producers = arrayBlockingQueue;
+                consumers = arrayBlockingQueue;
+                break;
+
+            case "ConcurrentLinkedQueue":
+                JdkQueueAdapter<Long> concurrentLinkedQueue = new JdkQueueAdapter<>(new ConcurrentLinkedQueue<>());
+                producers = concurrentLinkedQueue;
+                consumers = concurrentLinkedQueue;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public boolean produce(Producer producer, Control control) {
+        QueueTail<Long> localTail = producer.tail;
+        while (!localTail.addToTail(ELEMENT)) {
+            if (control.stopMeasurement) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public Long consume(Consumer consumer, Control control) {
+        QueueHead<Long> localHead = consumer.head;
+
+        Long element;
+        while ((element = localHead.removeFromHead()) == null) {
+            if (control.stopMeasurement) {
+                return null;
+            }
+        }
+
+        return element;
+    }
+
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private QueueTail<Long> tail;
+
+        @Setup(Level.Iteration)
+        public void createProducer(RouterBenchmark benchmark) {
+            tail = benchmark.producers.createProducer();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Consumer {
+
+        private QueueHead<Long> head;
+
+        @Setup(Level.Iteration)
+        public void createConsumer(RouterBenchmark benchmark) {
+            head = benchmark.consumers.createConsumer();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.thepun.data.transfer.QueueHead;
+import io.github.thepun.data.transfer.QueueTail;
+import io.github.thepun.data.transfer.WaitStrategy;
+
+abstract class ExecutorServiceBase extends AbstractExecutorService {
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+
+    // idle workers and waiting submitters check state at least this often
+    private static final long STATE_CHECK_NANOS = 10_000_000;
+
+
+    private final WaitStrategy waitStrategy;
+    private final RejectionPolicy rejectionPolicy;
+    private final ThreadFactory threadFactory;
+    private final AtomicInteger state;
+    private final CountDownLatch terminationLatch;
+    private final Thread[] workers;
+
+    private volatile Submitter[] submitters;
+
+    ExecutorServiceBase(int threads, WaitStrategy waitStrategy, RejectionPolicy rejectionPolicy, ThreadFactory threadFactory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be greater then zero");
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        if (rejectionPolicy == null) {
+            throw new IllegalArgumentException("Rejection policy should be specified");
+        }
+
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("Thread factory should be specified");
+        }
+
+        this.waitStrategy = waitStrategy;
+        this.rejectionPolicy = rejectionPolicy;
+        this.threadFactory = threadFactory;
+
+        state = new AtomicInteger(RUNNING);
+        terminationLatch = new CountDownLatch(threads);
+        workers = new Thread[threads];
+        submitters = new Submitter[0];
+    }
+
+    @Override
+    public final void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("Task should be specified");
+        }
+
+        // submitter announces itself before the state check so workers do not exit while task is being added
+        Submitter submitter = currentSubmitter();
+        submitter.active = true;
+        try {
+            if (state.get() != RUNNING) {
+                reject(task);
+                return;
+            }
+
+            QueueTail<Runnable> tail = submitter.tail;
+            if (tail.addToTail(task)) {
+                return;
+            }
+
+            switch (rejectionPolicy) {
+                case CALLER_RUNS:
+                    break;
+
+                case DISCARD:
+                    return;
+
+                case WAIT:
+                    waitForSpace(tail, task);
+                    return;
+
+                default:
+                    throw new RejectedExecutionException("Queue is full");
+            }
+        } finally {
+            submitter.active = false;
+        }
+
+        task.run();
+    }
+
+    @Override
+    public final void shutdown() {
+        state.compareAndSet(RUNNING, SHUTDOWN);
+        waitStrategy.signal();
+    }
+
+    @Override
+    public final List<Runnable> shutdownNow() {
+        state.set(STOP);
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        waitStrategy.signal();
+
+        // nothing could be added after submitters are gone
+        while (hasActiveSubmitters()) {
+            Thread.yield();
+        }
+
+        List<Runnable> tasks = new ArrayList<>();
+        QueueHead<Runnable> head = createDrainHead();
+        try {
+            Runnable task;
+            while ((task = head.removeFromHead()) != null) {
+                tasks.add(task);
+            }
+        } finally {
+            destroyDrainHead(head);
+        }
+
+        return tasks;
+    }
+
+    @Override
+    public final boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public final boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    @Override
+    public final boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    final void startWorkers(QueueHead<Runnable>[] heads) {
+        for (int i = 0; i < workers.length; i++) {
+            QueueHead<Runnable> head = heads[i];
+            Thread worker = threadFactory.newThread(() -> work(head));
+            if (worker == null) {
+                throw new IllegalStateException("Thread factory returned no thread");
+            }
+
+            workers[i] = worker;
+        }
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    final synchronized Submitter registerSubmitter(QueueTail<Runnable> tail) {
+        Submitter submitter = new Submitter(tail);
+        Submitter[] oldSubmitters = submitters;
+        Submitter[] newSubmitters = Arrays.copyOf(oldSubmitters, oldSubmitters.length + 1);
+        newSubmitters[oldSubmitters.length] = submitter;
+        submitters = newSubmitters;
+        return submitter;
+    }
+
+    abstract Submitter currentSubmitter();
+
+    abstract QueueHead<Runnable> createDrainHead();
+
+    abstract void destroyDrainHead(QueueHead<Runnable> head);
+
+    private void work(QueueHead<Runnable> head) {
+        Thread thread = Thread.currentThread();
+        WaitStrategy localWaitStrategy = waitStrategy;
+
+        int attempt = 0;
+        try {
+            for (;;) {
+                // tasks left after stop are drained by shutdownNow
+                int localState = state.get();
+                if (localState == STOP) {
+                    break;
+                }
+
+                // queue stays empty after shutdown once all submitters have left
+                Runnable task = head.removeFromHead();
+                if (task == null && localState == SHUTDOWN && !hasActiveSubmitters()) {
+                    task = head.removeFromHead();
+                    if (task == null) {
+                        break;
+                    }
+                }
+
+                if (task != null) {
+                    if (attempt > 0) {
+                        localWaitStrategy.finish(attempt);
+                        attempt = 0;
+                    }
+
+                    runTask(thread, task);
+                    continue;
+                }
+
+                localWaitStrategy.idle(attempt, System.nanoTime() + STATE_CHECK_NANOS);
+                if (attempt != Integer.MAX_VALUE) {
+                    attempt++;
+                }
+            }
+        } finally {
+            if (attempt > 0) {
+                localWaitStrategy.finish(attempt);
+            }
+
+            terminationLatch.countDown();
+        }
+    }
+
+    private void runTask(Thread thread, Runnable task) {
+        // interruption of a previous task should not affect the next one
+        if (state.get() != STOP) {
+            Thread.interrupted();
+        }
+
+        try {
+            task.run();
+        } catch (Throwable e) {
+            // worker survives failed task like a thread of its own
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private void waitForSpace(QueueTail<Runnable> tail, Runnable task) {
+        for (;;) {
+            try {
+                tail.addToTail(task, STATE_CHECK_NANOS, TimeUnit.NANOSECONDS, waitStrategy);
+                return;
+            } catch (TimeoutException e) {
+                if (state.get() != RUNNING) {
+                    reject(task);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for space", e);
+            }
+        }
+    }
+
+    private void reject(Runnable task) {
+        if (rejectionPolicy != RejectionPolicy.DISCARD) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+    }
+
+    private boolean hasActiveSubmitters() {
+        Submitter[] localSubmitters = submitters;
+        for (int i = 0; i < localSubmitters.length; i++) {
+            if (localSubmitters[i].active) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    static final class Submitter {
+
+        private final QueueTail<Runnable> tail;
+
+        private volatile boolean active;
+
+        private Submitter(QueueTail<Runnable> tail) {
+            this.tail = tail;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+/**
+ * What an executor does with a task which does not fit into its queue.
+ */
+public enum RejectionPolicy {
+
+    /**
+     * Throw {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    ABORT,
+
+    /**
+     * Run the task in the submitting thread.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Silently drop the task.
+     */
+    DISCARD,
+
+    /**
+     * Wait for space in the queue using the executor wait strategy.
+     */
+    WAIT
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.github.thepun.data.transfer.BlockingWaitStrategy;
+import io.github.thepun.data.transfer.QueueHead;
+import io.github.thepun.data.transfer.RingBufferRouter;
+import io.github.thepun.data.transfer.WaitStrategy;
+
+/**
+ * Executor service with a fixed number of worker threads which take tasks from a {@link RingBufferRouter}.
+ *
+ * GUARANTIES:
+ * 1. Many threads can submit tasks
+ * 2. No locks on submit and take of a task
+ * 3. Queue is bounded and overflow is handled by {@link RejectionPolicy}
+ *
+ * LIMITATIONS:
+ * 1. Each submitting thread gets its own producer which is never released, so tasks are expected to be submitted from a bounded set of threads
+ * 2. Tasks submitted after shutdown are rejected with exception unless policy is {@link RejectionPolicy#DISCARD}
+ *
+ * Idle workers wait with {@link BlockingWaitStrategy} by default. Its signal on submit and take is a full fence and
+ * a read of the number of sleeping workers, which is written only when a worker goes to sleep or wakes up.
+ */
+public final class RouterExecutorService extends ExecutorServiceBase {
+
+    private final RingBufferRouter<Runnable> router;
+    private final ThreadLocal<Submitter> submitter;
+
+    public RouterExecutorService(int threads, int queueSize) {
+        this(threads, queueSize, new BlockingWaitStrategy());
+    }
+
+    public RouterExecutorService(int threads, int queueSize, WaitStrategy waitStrategy) {
+        this(threads, queueSize, waitStrategy, RejectionPolicy.ABORT, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param threads - number of worker threads
+     * @param queueSize - maximum number of waiting tasks, rounded up to power of two
+     * @param waitStrategy - strategy of idle workers and of submitters waiting for space
+     * @param rejectionPolicy - what to do with a task if the queue is full
+     * @param threadFactory - factory of worker threads
+     */
+    public RouterExecutorService(int threads, int queueSize, WaitStrategy waitStrategy, RejectionPolicy rejectionPolicy, ThreadFactory threadFactory) {
+        super(threads, waitStrategy, rejectionPolicy, threadFactory);
+
+        router = new RingBufferRouter<>(queueSize, waitStrategy);
+        submitter = ThreadLocal.withInitial(() -> registerSubmitter(router.createProducer()));
+
+        QueueHead<Runnable>[] heads = new QueueHead[threads];
+        for (int i = 0; i < threads; i++) {
+            heads[i] = router.createConsumer();
+        }
+
+        startWorkers(heads);
+    }
+
+    @Override
+    Submitter currentSubmitter() {
+        return submitter.get();
+    }
+
+    @Override
+    QueueHead<Runnable> createDrainHead() {
+        return router.createConsumer();
+    }
+
+    @Override
+    void destroyDrainHead(QueueHead<Runnable> head) {
+        router.destroyConsumer(head);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.github.thepun.data.transfer.BlockingWaitStrategy;
+import io.github.thepun.data.transfer.ChunkPool;
+import io.github.thepun.data.transfer.DispatchPolicy;
+import io.github.thepun.data.transfer.QueueHead;
+import io.github.thepun.data.transfer.StealingLinkedChunkDemultiplexer;
+import io.github.thepun.data.transfer.WaitStrategy;
+
+/**
+ * Executor service with a fixed number of worker threads each owning a queue of {@link StealingLinkedChunkDemultiplexer}.
+ * Idle worker steals tasks from the most loaded one.
+ *
+ * GUARANTIES:
+ * 1. No locks and no shared counters on submit and take of a task
+ *
+ * LIMITATIONS:
+ * 1. Tasks should be submitted from a single thread
+ * 2. Queue is unbounded so tasks are rejected only after shutdown
+ * 3. Tasks already stolen by a worker into its own buffer are not returned by {@link #shutdownNow()}
+ *
+ * Idle workers wait with {@link BlockingWaitStrategy} by default. Its signal on submit and take is a full fence and
+ * a read of the number of sleeping workers, which is written only when a worker goes to sleep or wakes up.
+ */
+public final class StealingExecutorService extends ExecutorServiceBase {
+
+    private final StealingLinkedChunkDemultiplexer<Runnable> demultiplexer;
+    private final Submitter submitter;
+
+    public StealingExecutorService(int threads) {
+        this(threads, new BlockingWaitStrategy());
+    }
+
+    public StealingExecutorService(int threads, WaitStrategy waitStrategy) {
+        this(threads, DispatchPolicy.LEAST_LOADED, 1, waitStrategy, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param threads - number of worker threads
+     * @param dispatchPolicy - how to choose worker for the next tasks
+     * @param batchSize - number of tasks given to the chosen worker before choosing again
+     * @param waitStrategy - strategy of idle workers
+     * @param threadFactory - factory of worker threads
+     */
+    public StealingExecutorService(int threads, DispatchPolicy dispatchPolicy, int batchSize, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        this(threads, new StealingLinkedChunkDemultiplexer<>(dispatchPolicy, batchSize, waitStrategy), waitStrategy, threadFactory);
+    }
+
+    /**
+     * @param threads - number of worker threads
+     * @param pool - pool of chunks for task queues, could be shared with other queues
+     * @param dispatchPolicy - how to choose worker for the next tasks
+     * @param batchSize - number of tasks given to the chosen worker before choosing again
+     * @param waitStrategy - strategy of idle workers
+     * @param threadFactory - factory of worker threads
+     */
+    public StealingExecutorService(int threads, ChunkPool pool, DispatchPolicy dispatchPolicy, int batchSize, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        this(threads, new StealingLinkedChunkDemultiplexer<>(pool, dispatchPolicy, batchSize, waitStrategy), waitStrategy, threadFactory);
+    }
+
+    private StealingExecutorService(int threads, StealingLinkedChunkDemultiplexer<Runnable> demultiplexer, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        super(threads, waitStrategy, RejectionPolicy.ABORT, threadFactory);
+
+        this.demultiplexer = demultiplexer;
+        submitter = registerSubmitter(demultiplexer);
+
+        QueueHead<Runnable>[] heads = new QueueHead[threads];
+        for (int i = 0; i < threads; i++) {
+            heads[i] = demultiplexer.createConsumer();
+        }
+
+        startWorkers(heads);
+    }
+
+    @Override
+    Submitter currentSubmitter() {
+        return submitter;
+    }
+
+    @Override
+    QueueHead<Runnable> createDrainHead() {
+        return demultiplexer.createConsumer();
+    }
+
+    @Override
+    void destroyDrainHead(QueueHead<Runnable> head) {
+        demultiplexer.destroyConsumer(head);
+    }
+}
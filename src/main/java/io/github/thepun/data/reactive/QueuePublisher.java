@@ -0,0 +1,226 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.reactive;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.thepun.data.transfer.BackoffWaitStrategy;
+import io.github.thepun.data.transfer.HasConsumers;
+import io.github.thepun.data.transfer.QueueHead;
+import io.github.thepun.data.transfer.WaitStrategy;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes elements of any {@link HasConsumers} structure. Each subscriber gets its own consumer of the structure
+ * and a delivery task started on the given executor.
+ *
+ * GUARANTIES:
+ * 1. Subscriber never gets more elements then requested
+ * 2. Up to batch size of requested elements are removed from the queue at once
+ * 3. Delivery task parks while there is no demand so the queue is not touched
+ *
+ * LIMITATIONS:
+ * 1. Delivery task occupies a thread of the executor until subscription is cancelled
+ * 2. Queues have no end of stream so {@link Subscriber#onComplete()} is never called
+ * 3. Elements already removed from the queue are delivered even if subscription is cancelled meanwhile
+ * 4. Consumer is destroyed on cancel, elements routed to it but not removed are left to other consumers
+ *    of partitioned and stealing demultiplexers, so such source should have another consumer to not stall them
+ *
+ * Use {@code org.reactivestreams.FlowAdapters} to expose it as {@code java.util.concurrent.Flow.Publisher}.
+ */
+public final class QueuePublisher<T> implements Publisher<T> {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    // delivery task checks cancellation at least this often
+    private static final long STATE_CHECK_NANOS = 10_000_000;
+
+
+    private final HasConsumers<T> source;
+    private final Executor executor;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+
+    public QueuePublisher(HasConsumers<T> source, Executor executor) {
+        this(source, executor, DEFAULT_BATCH_SIZE, new BackoffWaitStrategy());
+    }
+
+    /**
+     * @param source - structure to create consumers from
+     * @param executor - executor of delivery tasks
+     * @param batchSize - max number of elements removed from the queue at once
+     * @param waitStrategy - strategy of delivery task waiting for elements, usually the consumer strategy of the source
+     */
+    public QueuePublisher(HasConsumers<T> source, Executor executor, int batchSize, WaitStrategy waitStrategy) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source should be specified");
+        }
+
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor should be specified");
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be greater then zero");
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        this.source = source;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber should be specified");
+        }
+
+        QueueHead<T> head = source.createConsumer();
+        QueueSubscription<T> subscription = new QueueSubscription<>(this, head, subscriber);
+        subscriber.onSubscribe(subscription);
+
+        try {
+            executor.execute(subscription);
+        } catch (RejectedExecutionException e) {
+            source.destroyConsumer(head);
+            subscriber.onError(e);
+        }
+    }
+
+
+    private static final class QueueSubscription<T> implements Subscription, Runnable {
+
+        private final QueuePublisher<T> parent;
+        private final QueueHead<T> head;
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong demand;
+
+        private volatile boolean cancelled;
+        private volatile Throwable pendingError;
+        private volatile Thread deliveryThread;
+
+        private QueueSubscription(QueuePublisher<T> parent, QueueHead<T> head, Subscriber<? super T> subscriber) {
+            this.parent = parent;
+            this.head = head;
+            this.subscriber = subscriber;
+
+            demand = new AtomicLong();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n < 1) {
+                // error is signalled by delivery task to keep signals serial
+                pendingError = new IllegalArgumentException("Requested number should be greater then zero");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, next));
+            }
+
+            LockSupport.unpark(deliveryThread);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(deliveryThread);
+        }
+
+        @Override
+        public void run() {
+            deliveryThread = Thread.currentThread();
+
+            int localBatchSize = parent.batchSize;
+            WaitStrategy localWaitStrategy = parent.waitStrategy;
+            QueueHead<T> localHead = head;
+            Subscriber<? super T> localSubscriber = subscriber;
+            T[] elements = (T[]) new Object[localBatchSize];
+
+            try {
+                while (!cancelled) {
+                    Throwable error = pendingError;
+                    if (error != null) {
+                        cancelled = true;
+                        localSubscriber.onError(error);
+                        break;
+                    }
+
+                    long requested = demand.get();
+                    if (requested == 0) {
+                        // request and cancel unpark this thread
+                        LockSupport.park(this);
+                        continue;
+                    }
+
+                    int count = localHead.removeFromHead(elements, 0, (int) Math.min(requested, localBatchSize));
+                    if (count == 0) {
+                        try {
+                            elements[0] = localHead.removeFromHead(STATE_CHECK_NANOS, TimeUnit.NANOSECONDS, localWaitStrategy);
+                            count = 1;
+                        } catch (TimeoutException e) {
+                            continue;
+                        } catch (InterruptedException e) {
+                            cancelled = true;
+                            localSubscriber.onError(e);
+                            break;
+                        }
+                    }
+
+                    produced(count);
+
+                    for (int i = 0; i < count; i++) {
+                        T element = elements[i];
+                        elements[i] = null;
+                        localSubscriber.onNext(element);
+                    }
+                }
+            } finally {
+                cancelled = true;
+                parent.source.destroyConsumer(localHead);
+            }
+        }
+
+        private void produced(int count) {
+            long current;
+            do {
+                current = demand.get();
+                if (current == Long.MAX_VALUE) {
+                    // unbounded demand is never decreased
+                    return;
+                }
+            } while (!demand.compareAndSet(current, current - count));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.reactive;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.thepun.data.transfer.BackoffWaitStrategy;
+import io.github.thepun.data.transfer.HasProducers;
+import io.github.thepun.data.transfer.QueueTail;
+import io.github.thepun.data.transfer.WaitStrategy;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Adds elements of a publisher to any {@link HasProducers} structure using its own producer.
+ * Requests batch size of elements at start and requests more after each half of a batch is added.
+ *
+ * GUARANTIES:
+ * 1. Elements are never dropped: while the queue is full the publisher thread waits for space
+ *    and no more elements are requested
+ * 2. Producer is destroyed on completion, error or cancellation, structures with a lane per producer keep elements
+ *    of a destroyed producer until they are removed
+ *
+ * LIMITATIONS:
+ * 1. Single subscription per instance
+ * 2. Element is lost if subscriber is cancelled or publisher thread is interrupted while waiting for space
+ *
+ * Use {@code org.reactivestreams.FlowAdapters} to expose it as {@code java.util.concurrent.Flow.Subscriber}.
+ */
+public final class QueueSubscriber<T> implements Subscriber<T> {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    // waiting for space checks cancellation at least this often
+    private static final long STATE_CHECK_NANOS = 10_000_000;
+
+
+    private final HasProducers<T> target;
+    private final int batchSize;
+    private final int replenishSize;
+    private final WaitStrategy waitStrategy;
+    private final AtomicBoolean terminated;
+
+    private int received;
+
+    private volatile QueueTail<T> tail;
+    private volatile Subscription subscription;
+    private volatile boolean inNext;
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+    private volatile Throwable error;
+
+    public QueueSubscriber(HasProducers<T> target) {
+        this(target, DEFAULT_BATCH_SIZE, new BackoffWaitStrategy());
+    }
+
+    /**
+     * @param target - structure to create producer from
+     * @param batchSize - max number of requested but not yet added elements
+     * @param waitStrategy - strategy of waiting for space, usually the producer strategy of the target
+     */
+    public QueueSubscriber(HasProducers<T> target, int batchSize, WaitStrategy waitStrategy) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target should be specified");
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be greater then zero");
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        this.target = target;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+
+        replenishSize = Math.max(1, batchSize / 2);
+        terminated = new AtomicBoolean();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("Subscription should be specified");
+        }
+
+        if (this.subscription != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+
+        tail = target.createProducer();
+        this.subscription = subscription;
+
+        // cancelled before producer was created
+        if (cancelled) {
+            subscription.cancel();
+            terminate();
+            return;
+        }
+
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(T element) {
+        if (element == null) {
+            throw new NullPointerException("Element should be specified");
+        }
+
+        // cancel destroys producer only if it is not used here
+        inNext = true;
+        if (!cancelled) {
+            if (!tail.addToTail(element)) {
+                waitForSpace(element);
+            }
+
+            if (++received == replenishSize) {
+                received = 0;
+                if (!cancelled) {
+                    subscription.request(replenishSize);
+                }
+            }
+        }
+        inNext = false;
+
+        if (cancelled) {
+            terminate();
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("Error should be specified");
+        }
+
+        this.error = error;
+        terminate();
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+        terminate();
+    }
+
+    /**
+     * Cancels subscription and destroys producer after the element being added now. Elements already added stay in the queue.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        Subscription localSubscription = subscription;
+        if (localSubscription != null) {
+            localSubscription.cancel();
+        }
+
+        // otherwise producer is destroyed at the end of onNext
+        if (!inNext) {
+            terminate();
+        }
+    }
+
+    /**
+     * @return true if publisher has completed successfully
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return error signalled by publisher or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    private void waitForSpace(T element) {
+        while (!cancelled) {
+            try {
+                tail.addToTail(element, STATE_CHECK_NANOS, TimeUnit.NANOSECONDS, waitStrategy);
+                return;
+            } catch (TimeoutException e) {
+                // check cancellation and wait more
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+                cancel();
+                terminate();
+                return;
+            }
+        }
+    }
+
+    private void terminate() {
+        QueueTail<T> localTail = tail;
+        if (localTail != null && terminated.compareAndSet(false, true)) {
+            target.destroyProducer(localTail);
+        }
+    }
+}
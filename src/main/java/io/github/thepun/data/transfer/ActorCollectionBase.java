@@ -35,16 +35,20 @@ abstract class ActorCollectionBase<T, P extends AbstractProducer<T, ? extends Ac
         this.consumerType = (Class<C>) consumers;
 
         try {
-            producerConstructor = producerType.getConstructor(getClass());
+            producerConstructor = producerType.getDeclaredConstructor(getClass());
         } catch (NoSuchMethodException e) {
             throw new IllegalStateException(e);
         }
 
+        this.producers = (P[]) Array.newInstance(producerType, 0);
+
         try {
-            consumerConstructor = consumerType.getConstructor(getClass());
+            consumerConstructor = consumerType.getDeclaredConstructor(getClass());
         } catch (NoSuchMethodException e) {
             throw new IllegalStateException(e);
         }
+
+        this.consumers = (C[]) Array.newInstance(consumerType, 0);
     }
 
     @Override
@@ -59,7 +63,7 @@ abstract class ActorCollectionBase<T, P extends AbstractProducer<T, ? extends Ac
     }
 
     @Override
-    public final QueueHead<T> createConsumer() {
+    public final synchronized QueueHead<T> createConsumer() {
         C[] oldConsumers = consumers;
         C[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
         C consumer = createConsumerInstance();
@@ -105,7 +109,7 @@ abstract class ActorCollectionBase<T, P extends AbstractProducer<T, ? extends Ac
     }
 
     @Override
-    public final void destroyConsumer(QueueHead<T> consumer) {
+    public final synchronized void destroyConsumer(QueueHead<T> consumer) {
         if (!consumerType.isInstance(consumer)) {
             throw new IllegalArgumentException("Wrong consumer");
         }
@@ -151,7 +155,7 @@ abstract class ActorCollectionBase<T, P extends AbstractProducer<T, ? extends Ac
         try {
             return consumerConstructor.newInstance(this);
         } catch (Exception e) {
-            throw new IllegalStateException("Failed to create producer instance", e);
+            throw new IllegalStateException("Failed to create consumer instance", e);
         }
     }
 
@@ -16,12 +16,14 @@
 package io.github.thepun.data.transfer;
 
 
+import io.github.thepun.unsafe.MemoryFence;
 import io.github.thepun.unsafe.ObjectMemory;
 
 /**
  * Internal class for storing long value aligned to cache lines for lesser false sharing.
  *
- * Variable that stores the value is not volatile. Use volatileGet / volatileSet methods to cross memory barriers.
+ * Variable that stores the value is not volatile. Use getAcquire / setRelease methods to publish data between threads.
+ * Java 9+ version of the class with VarHandle is packed to META-INF/versions/9.
  *
  * Provides Compare-and-Swap (CAS) operation.
  */
@@ -44,6 +46,17 @@ final class AlignedLong extends AlignedLongFields {
         value = newValue;
     }
 
+    long getAcquire() {
+        long currentValue = value;
+        MemoryFence.load();
+        return currentValue;
+    }
+
+    void setRelease(long newValue) {
+        MemoryFence.store();
+        value = newValue;
+    }
+
     boolean compareAndSwap(long expectedValue, long newValue) {
         return ObjectMemory.compareAndSwapLong(this, valueOffset, expectedValue, newValue);
     }
@@ -51,6 +64,10 @@ final class AlignedLong extends AlignedLongFields {
     long getAndIncrement() {
         return ObjectMemory.getAndAddLong(this, valueOffset, 1L);
     }
+
+    long getAndAdd(long delta) {
+        return ObjectMemory.getAndAddLong(this, valueOffset, delta);
+    }
 }
 
 class AlignedLongPadding {
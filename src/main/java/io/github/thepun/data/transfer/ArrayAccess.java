@@ -0,0 +1,41 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import io.github.thepun.unsafe.ArrayMemory;
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Internal accessors for array slots shared between threads.
+ *
+ * Java 8 version relies on fences. Java 9+ version of the class with VarHandle is packed to META-INF/versions/9.
+ */
+final class ArrayAccess {
+
+    private ArrayAccess() {
+    }
+
+    static Object getAcquire(Object[] array, int index) {
+        Object element = ArrayMemory.getObject(array, index);
+        MemoryFence.load();
+        return element;
+    }
+
+    static void setRelease(Object[] array, int index, Object element) {
+        MemoryFence.store();
+        ArrayMemory.setObject(array, index, element);
+    }
+}
@@ -16,6 +16,8 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.github.thepun.unsafe.ArrayMemory;
 import io.github.thepun.unsafe.MemoryFence;
@@ -38,15 +40,29 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
     private final int size;
     private final int mask;
     private final Object[] data;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     private AtomicPoolConsumer<T>[] consumers;
     private AtomicPoolProducer<T>[] producers;
 
     public AtomicPoolRouter(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public AtomicPoolRouter(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public AtomicPoolRouter(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (bufferSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         double log2 = Math.log10(bufferSize) / Math.log10(2);
         int pow = (int) Math.ceil(log2);
 
@@ -55,6 +71,8 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
         data = new Object[size * 2];
         consumers = new AtomicPoolConsumer[0];
         producers = new AtomicPoolProducer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
 
         for (int i = 0; i < size; i++) {
             ArrayMemory.setObject(data, i << 1, EMPTY_REF);
@@ -179,6 +197,8 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
 
         private final int mask;
         private final Object[] data;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private int shift;
         private AlignedLong producerWriteCounter;
@@ -188,6 +208,8 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
 
             mask = parent.mask;
             data = parent.data;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             shift = 16 + (int) (Math.random() * 10);
             producerWriteCounter = new AlignedLong();
@@ -215,6 +237,7 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
                         MemoryFence.store();
                         ArrayMemory.setObject(localData, index, DATA_REF);
                         localWriteCounter.set(writeIndex);
+                        consumerWaitStrategy.signal();
                         return true;
                     }
                 } else if (atomic == ALMOST_EMPTY_REF) {
@@ -230,6 +253,11 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
             localWriteCounter.set(writeIndex);
             return false;
         }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTail(element, timeout, timeUnit, producerWaitStrategy);
+        }
     }
 
 
@@ -240,6 +268,8 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
         private final int size;
         private final int mask;
         private final Object[] data;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private AlignedLong consumerReadCounter;
 
@@ -249,6 +279,8 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
             size = parent.size;
             mask = parent.mask;
             data = parent.data;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             consumerReadCounter = new AlignedLong();
             consumerReadCounter.set(0);
@@ -274,6 +306,7 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
                         MemoryFence.load();
                         ArrayMemory.setObject(localData, index, EMPTY_REF);
                         localReadCounter.set(readIndex);
+                        producerWaitStrategy.signal();
                         return (T) element;
                     }
                 } else if (atomic == ALMOST_DATA_REF) {
@@ -289,5 +322,53 @@ public final class AtomicPoolRouter<T> implements HasProducers<T>, HasConsumers<
             localReadCounter.set(readIndex);
             return null;
         }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            int localMask = mask;
+            Object[] localData = data;
+            AlignedLong localReadCounter = consumerReadCounter;
+
+            int index;
+            Object atomic;
+            int count = 0;
+            long readIndex = localReadCounter.get();
+            long lastReadIndex = readIndex;
+            long maxReadIndex = readIndex + size;
+            while (count < length && readIndex < maxReadIndex) {
+                index = (int) (readIndex & localMask) << 1;
+                atomic = ArrayMemory.getObject(localData, index);
+
+                if (atomic == DATA_REF) {
+                    if (ArrayMemory.compareAndSwapObject(localData, index, DATA_REF, ALMOST_EMPTY_REF)) {
+                        elements[offset + count] = (T) ArrayMemory.getObject(localData, index | 1);
+                        MemoryFence.load();
+                        ArrayMemory.setObject(localData, index, EMPTY_REF);
+                        lastReadIndex = readIndex;
+                        count++;
+                    }
+                } else if (atomic == ALMOST_DATA_REF) {
+                    continue;
+                } else if (atomic == ALMOST_EMPTY_REF) {
+                    readIndex += 16;
+                    continue;
+                }
+
+                readIndex++;
+            }
+
+            // stay at last taken slot like single remove does
+            localReadCounter.set(count > 0 ? lastReadIndex : readIndex);
+            if (count > 0) {
+                producerWaitStrategy.signal();
+            }
+
+            return count;
+        }
     }
 }
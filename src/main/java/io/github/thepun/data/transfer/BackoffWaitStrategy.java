@@ -0,0 +1,80 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins, then yields and then parks for exponentially growing periods of time.
+ *
+ * Does not require signals from the other side so a thread can oversleep at most max park time.
+ */
+public final class BackoffWaitStrategy implements WaitStrategy {
+
+    private static final int DEFAULT_SPIN_TRIES = 100;
+    private static final int DEFAULT_YIELD_TRIES = 100;
+    private static final long DEFAULT_MIN_PARK_NANOS = 1_000;
+    private static final long DEFAULT_MAX_PARK_NANOS = 1_000_000;
+
+    private final int spinTries;
+    private final int yieldTries;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public BackoffWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES, DEFAULT_YIELD_TRIES, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public BackoffWaitStrategy(int spinTries, int yieldTries, long minParkNanos, long maxParkNanos) {
+        if (spinTries < 0 || yieldTries < 0) {
+            throw new IllegalArgumentException("Number of tries should not be negative");
+        }
+
+        if (minParkNanos < 1 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("Park time should be positive and min should not be greater then max");
+        }
+
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int attempt, long deadline) {
+        if (attempt < spinTries) {
+            return;
+        }
+
+        int yieldAttempt = attempt - spinTries;
+        if (yieldAttempt < yieldTries) {
+            Thread.yield();
+            return;
+        }
+
+        // double park time with each attempt until it reaches max
+        int parkAttempt = yieldAttempt - yieldTries;
+        long parkNanos = maxParkNanos;
+        if (parkAttempt < Long.numberOfLeadingZeros(minParkNanos) - 1) {
+            parkNanos = Math.min(minParkNanos << parkAttempt, maxParkNanos);
+        }
+
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+        }
+    }
+}
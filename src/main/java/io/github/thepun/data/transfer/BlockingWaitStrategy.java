@@ -0,0 +1,94 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins for a number of attempts and then parks until signaled.
+ *
+ * Before parking a thread announces itself as sleeping and makes one more attempt so a signal can not be missed.
+ * Signal unparks sleeping threads only if there are any. Published data is ordered before the check of sleepers
+ * with a full fence, so signal does not write shared memory when nobody sleeps.
+ *
+ * Parked virtual thread releases its carrier thread, so many virtual threads can wait on queues cheaply.
+ * Signal wakes all waiters of the instance, so each queue with many waiting threads should have its own instance.
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+
+    private static final int DEFAULT_SPIN_TRIES = 100;
+
+    private final int spinTries;
+    private final AtomicInteger sleepers;
+    private final ConcurrentLinkedQueue<Thread> waiters;
+
+    public BlockingWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    public BlockingWaitStrategy(int spinTries) {
+        if (spinTries < 0) {
+            throw new IllegalArgumentException("Number of spin tries should not be negative");
+        }
+
+        this.spinTries = spinTries;
+
+        sleepers = new AtomicInteger();
+        waiters = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void idle(int attempt, long deadline) {
+        if (attempt < spinTries) {
+            return;
+        }
+
+        if (attempt == spinTries) {
+            // register and let caller make one more attempt
+            waiters.add(Thread.currentThread());
+            sleepers.incrementAndGet();
+            return;
+        }
+
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    @Override
+    public void finish(int attempt) {
+        if (attempt > spinTries) {
+            sleepers.decrementAndGet();
+            waiters.remove(Thread.currentThread());
+        }
+    }
+
+    @Override
+    public void signal() {
+        // pairs with increment of sleepers before the last attempt of a waiter
+        Fences.full();
+        if (sleepers.get() == 0) {
+            return;
+        }
+
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of empty chunks which could be shared by many linked chunk queues.
+ *
+ * Chunks are kept in a fixed array of slots, so the pool never retains more then the specified number of chunks
+ * and released chunks above the limit are left to GC. Slots are split into stripes and each thread starts
+ * from its own stripe to avoid contention. Chunks are taken and released once per chunk of elements, not per element.
+ *
+ * GUARANTIES:
+ * 1. Lock-free
+ * 2. Retained memory is bounded by chunk size multiplied by maximum retained chunks
+ */
+public final class ChunkPool {
+
+    static final int MIN_CHUNK_SIZE = 4;
+    static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    // counters of neighbour stripes are on different cache lines
+    private static final int COUNT_STRIDE = 16;
+
+    private final int chunkSize;
+    private final int stripeMask;
+    private final int stripeSize;
+    private final AtomicReferenceArray<Object[]> slots;
+    private final AtomicIntegerArray counts;
+
+    public ChunkPool(int chunkSize, int maxRetainedChunks) {
+        this(chunkSize, maxRetainedChunks, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param chunkSize - size of each chunk
+     * @param maxRetainedChunks - maximum number of empty chunks kept in the pool, rounded up to multiple of stripes
+     * @param stripes - number of stripes, rounded up to power of two
+     */
+    public ChunkPool(int chunkSize, int maxRetainedChunks, int stripes) {
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size should be at least " + MIN_CHUNK_SIZE);
+        }
+
+        if (maxRetainedChunks < 1) {
+            throw new IllegalArgumentException("Maximum retained chunks should be greater then zero");
+        }
+
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripes should be greater then zero");
+        }
+
+        int stripeCount = 1 << (int) Math.ceil(Math.log10(Math.min(stripes, maxRetainedChunks)) / Math.log10(2));
+
+        this.chunkSize = chunkSize;
+        stripeMask = stripeCount - 1;
+        stripeSize = (maxRetainedChunks + stripeCount - 1) / stripeCount;
+        slots = new AtomicReferenceArray<>(stripeCount * stripeSize);
+        counts = new AtomicIntegerArray(stripeCount * COUNT_STRIDE);
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return number of empty chunks in the pool at the moment
+     */
+    public int retainedChunks() {
+        int count = 0;
+        for (int i = 0; i <= stripeMask; i++) {
+            count += counts.get(i * COUNT_STRIDE);
+        }
+        return count;
+    }
+
+    /**
+     * @return empty chunk from the pool or new one if the pool is empty
+     */
+    Object[] take() {
+        int homeStripe = homeStripe();
+        for (int i = 0; i <= stripeMask; i++) {
+            int stripe = (homeStripe + i) & stripeMask;
+            if (counts.get(stripe * COUNT_STRIDE) <= 0) {
+                continue;
+            }
+
+            int firstSlot = stripe * stripeSize;
+            for (int j = firstSlot; j < firstSlot + stripeSize; j++) {
+                Object[] chunk = slots.get(j);
+                if (chunk != null && slots.compareAndSet(j, chunk, null)) {
+                    counts.decrementAndGet(stripe * COUNT_STRIDE);
+                    return chunk;
+                }
+            }
+        }
+
+        return new Object[chunkSize];
+    }
+
+    /**
+     * @param chunk - chunk of the pool size filled with nulls
+     * @return false if the pool is full and chunk is left to GC
+     */
+    boolean release(Object[] chunk) {
+        if (chunk.length != chunkSize) {
+            throw new IllegalArgumentException("Wrong chunk size");
+        }
+
+        int homeStripe = homeStripe();
+        for (int i = 0; i <= stripeMask; i++) {
+            int stripe = (homeStripe + i) & stripeMask;
+            if (counts.get(stripe * COUNT_STRIDE) >= stripeSize) {
+                continue;
+            }
+
+            int firstSlot = stripe * stripeSize;
+            for (int j = firstSlot; j < firstSlot + stripeSize; j++) {
+                if (slots.get(j) == null && slots.compareAndSet(j, null, chunk)) {
+                    counts.incrementAndGet(stripe * COUNT_STRIDE);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    static int chunkSizeOf(ChunkPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool should be specified");
+        }
+
+        return pool.chunkSize;
+    }
+
+    private int homeStripe() {
+        return (int) Thread.currentThread().getId() & stripeMask;
+    }
+}
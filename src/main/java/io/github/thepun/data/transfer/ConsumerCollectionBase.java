@@ -30,14 +30,16 @@ abstract class ConsumerCollectionBase<T, C extends AbstractConsumer<T, ? extends
         this.consumerType = (Class<C>) consumers;
 
         try {
-            consumerConstructor = consumerType.getConstructor(getClass());
+            consumerConstructor = consumerType.getDeclaredConstructor(getClass());
         } catch (NoSuchMethodException e) {
             throw new IllegalStateException(e);
         }
+
+        this.consumers = (C[]) Array.newInstance(consumerType, 0);
     }
 
     @Override
-    public final QueueHead<T> createConsumer() {
+    public final synchronized QueueHead<T> createConsumer() {
         C[] oldConsumers = consumers;
         C[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
         C consumer = createConsumerInstance();
@@ -48,7 +50,7 @@ abstract class ConsumerCollectionBase<T, C extends AbstractConsumer<T, ? extends
     }
 
     @Override
-    public final void destroyConsumer(QueueHead<T> consumer) {
+    public final synchronized void destroyConsumer(QueueHead<T> consumer) {
         if (!consumerType.isInstance(consumer)) {
             throw new IllegalArgumentException("Wrong consumer");
         }
@@ -86,7 +88,7 @@ abstract class ConsumerCollectionBase<T, C extends AbstractConsumer<T, ? extends
         try {
             return consumerConstructor.newInstance(this);
         } catch (Exception e) {
-            throw new IllegalStateException("Failed to create producer instance", e);
+            throw new IllegalStateException("Failed to create consumer instance", e);
         }
     }
 
@@ -15,14 +15,69 @@
  */
 package io.github.thepun.data.transfer;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.github.thepun.unsafe.ArrayMemory;
+import io.github.thepun.unsafe.MemoryFence;
+
 final class CooperationConsumer<T> extends AbstractConsumer<T, CooperationRouter<T>> {
 
+    private final int mask;
+    private final int shift;
+    private final AtomicLongArray states;
+    private final AlignedLong readCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
     CooperationConsumer(CooperationRouter<T> parent) {
         super(parent);
+
+        mask = parent.mask;
+        shift = parent.shift;
+        states = parent.states;
+        readCounter = parent.readCounter;
+        consumerWaitStrategy = parent.consumerWaitStrategy;
+        producerWaitStrategy = parent.producerWaitStrategy;
     }
 
     @Override
     public T removeFromHead() {
-        return null;
+        int localMask = mask;
+        AtomicLongArray localStates = states;
+        AlignedLong localReadCounter = readCounter;
+
+        for (;;) {
+            long readIndex = localReadCounter.get();
+            int index = (int) (readIndex & localMask);
+            long lap = readIndex >>> shift;
+            long state = localStates.get(index);
+
+            if (CooperationRouter.isFull(state, lap)) {
+                if (localStates.compareAndSet(index, state, CooperationRouter.freeState(lap + 1))) {
+                    localReadCounter.compareAndSwap(readIndex, readIndex + 1);
+
+                    // lane is registered before its producer publishes anything
+                    Object[] lane = getParent().lanes[(int) (state >>> CooperationRouter.LANE_BITS) & CooperationRouter.PRODUCER_MASK];
+                    int laneIndex = (int) state & CooperationRouter.LANE_MASK;
+                    Object element = ArrayMemory.getObject(lane, laneIndex);
+                    MemoryFence.load();
+                    ArrayMemory.setObject(lane, laneIndex, null);
+                    producerWaitStrategy.signal();
+                    return (T) element;
+                }
+            } else if (state == CooperationRouter.freeState(lap + 1) || CooperationRouter.isFull(state, lap + 1)) {
+                // slot is taken by another consumer (and maybe filled again by producer) but the counter is not moved yet
+                localReadCounter.compareAndSwap(readIndex, readIndex + 1);
+            } else if (state == CooperationRouter.freeState(lap)) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
     }
 }
@@ -15,14 +15,81 @@
  */
 package io.github.thepun.data.transfer;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.github.thepun.unsafe.ArrayMemory;
+
 final class CooperationProducer<T> extends AbstractProducer<T, CooperationRouter<T>> {
 
+    private final int mask;
+    private final int shift;
+    private final AtomicLongArray states;
+    private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    final Object[] lane;
+    int id;
+
+    private long laneCounter;
+
     CooperationProducer(CooperationRouter<T> parent) {
         super(parent);
+
+        mask = parent.mask;
+        shift = parent.shift;
+        states = parent.states;
+        writeCounter = parent.writeCounter;
+        consumerWaitStrategy = parent.consumerWaitStrategy;
+        producerWaitStrategy = parent.producerWaitStrategy;
+
+        lane = new Object[parent.size];
     }
 
     @Override
     public boolean addToTail(T element) {
-        return false;
+        int localMask = mask;
+        Object[] localLane = lane;
+        AtomicLongArray localStates = states;
+        AlignedLong localWriteCounter = writeCounter;
+
+        // slot in lane is free only after the element is read by consumer
+        int laneIndex = (int) (laneCounter & localMask);
+        if (ArrayMemory.getObject(localLane, laneIndex) != null) {
+            return false;
+        }
+
+        for (;;) {
+            long writeIndex = localWriteCounter.get();
+            int index = (int) (writeIndex & localMask);
+            long lap = writeIndex >>> shift;
+            long state = localStates.get(index);
+
+            if (state == CooperationRouter.freeState(lap)) {
+                ArrayMemory.setObject(localLane, laneIndex, element);
+                if (localStates.compareAndSet(index, state, CooperationRouter.fullState(lap, id, laneIndex))) {
+                    laneCounter++;
+                    localWriteCounter.compareAndSwap(writeIndex, writeIndex + 1);
+                    consumerWaitStrategy.signal();
+                    return true;
+                }
+
+                ArrayMemory.setObject(localLane, laneIndex, null);
+            } else if (CooperationRouter.isFull(state, lap) || state == CooperationRouter.freeState(lap + 1)) {
+                // slot is done by another producer but the counter is not moved yet
+                localWriteCounter.compareAndSwap(writeIndex, writeIndex + 1);
+            } else if (CooperationRouter.isFull(state, lap - 1)) {
+                if (localWriteCounter.get() == writeIndex) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
     }
 }
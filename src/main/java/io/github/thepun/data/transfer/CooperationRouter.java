@@ -15,11 +15,148 @@
  */
 package io.github.thepun.data.transfer;
 
-public final class CooperationRouter<T> extends ActorCollectionBase<T, CooperationProducer<T>, CooperationConsumer<T>> {
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-    public CooperationRouter() {
+/**
+ * Multiple producers / multiple consumers bounded queue where no thread waits for another one to finish its slot.
+ *
+ * Each producer keeps its elements in its own lane. Shared ring holds a state per slot: lap of the slot and, if it is full,
+ * producer and lane index of the element. Producer publishes an element with a single CAS of slot state and consumer takes it
+ * with a single CAS, so there is no gap between claiming a slot and publishing it. Write and read counters are only hints:
+ * every thread that sees the slot under a counter already done moves the counter on instead of waiting.
+ *
+ * Lap is stored in the state so stale CAS from a thread that was descheduled for a long time cannot succeed.
+ *
+ * LIMITATIONS:
+ * 1. Size is not greater then 2^24
+ * 2. Not more then 4096 producers at the same time
+ * 3. Each producer has lane of the queue size
+ */
+public final class CooperationRouter<T> extends ActorCollectionBase<T, CooperationProducer<T>, CooperationConsumer<T>> implements HasDepth {
+
+    static final int LANE_BITS = 24;
+    static final int PRODUCER_BITS = 12;
+    static final int LAP_SHIFT = LANE_BITS + PRODUCER_BITS + 1;
+    static final int LANE_MASK = (1 << LANE_BITS) - 1;
+    static final int PRODUCER_MASK = (1 << PRODUCER_BITS) - 1;
+    static final long FULL_BIT = 1L << (LANE_BITS + PRODUCER_BITS);
+    static final long LAP_MASK = (1L << (64 - LAP_SHIFT)) - 1;
+
+    final int size;
+    final int mask;
+    final int shift;
+    final AtomicLongArray states;
+    final AlignedLong readCounter;
+    final AlignedLong writeCounter;
+    final WaitStrategy consumerWaitStrategy;
+    final WaitStrategy producerWaitStrategy;
+
+    // lanes by producer id, lanes of destroyed producers are kept till consumed
+    Object[][] lanes;
+    private boolean[] lanesInUse;
+
+    public CooperationRouter(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public CooperationRouter(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public CooperationRouter(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         super(CooperationProducer.class, CooperationConsumer.class);
+
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (bufferSize > 1 << LANE_BITS) {
+            throw new IllegalArgumentException("Size should not be greater then " + (1 << LANE_BITS));
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        double log2 = Math.log10(bufferSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        shift = pow;
+        states = new AtomicLongArray(size);
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+
+        lanes = new Object[0][];
+        lanesInUse = new boolean[0];
     }
 
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    @Override
+    void afterProducerCreated(CooperationProducer<T> producer) {
+        Object[][] oldLanes = lanes;
+
+        int id = -1;
+        for (int i = 0; i < oldLanes.length; i++) {
+            if (!lanesInUse[i] && isConsumed(oldLanes[i])) {
+                id = i;
+                break;
+            }
+        }
+
+        if (id == -1) {
+            id = oldLanes.length;
+            if (id > PRODUCER_MASK) {
+                throw new IllegalStateException("Too many producers");
+            }
+        }
+
+        Object[][] newLanes = Arrays.copyOf(oldLanes, Math.max(oldLanes.length, id + 1));
+        newLanes[id] = producer.lane;
+        lanesInUse = Arrays.copyOf(lanesInUse, newLanes.length);
+        lanesInUse[id] = true;
+        producer.id = id;
+        lanes = newLanes;
+    }
+
+    @Override
+    void beforeProducerDestroied(CooperationProducer<T> producer) {
+        lanesInUse[producer.id] = false;
+    }
+
+    static long freeState(long lap) {
+        return (lap & LAP_MASK) << LAP_SHIFT;
+    }
+
+    static long fullState(long lap, int producerId, int laneIndex) {
+        return ((lap & LAP_MASK) << LAP_SHIFT) | FULL_BIT | ((long) producerId << LANE_BITS) | laneIndex;
+    }
 
+    static boolean isFull(long state, long lap) {
+        return (state & FULL_BIT) != 0 && (state >>> LAP_SHIFT) == (lap & LAP_MASK);
+    }
+
+    private static boolean isConsumed(Object[] lane) {
+        for (Object element : lane) {
+            if (element != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
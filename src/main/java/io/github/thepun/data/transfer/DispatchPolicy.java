@@ -0,0 +1,39 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Way a demultiplexer chooses consumer for the next elements.
+ */
+public enum DispatchPolicy {
+
+    /**
+     * Give elements to each consumer in turn. Cheapest, but ignores how backed up consumers are.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Give elements to the consumer with the smallest backlog. Backlogs of all consumers are sampled on each choice.
+     */
+    LEAST_LOADED,
+
+    /**
+     * Give elements to the less loaded of two randomly chosen consumers.
+     * Almost as good as least loaded while sampling only two backlogs.
+     */
+    TWO_RANDOM_CHOICES
+
+}
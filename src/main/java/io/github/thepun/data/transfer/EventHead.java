@@ -0,0 +1,40 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Consumer's entry point interface for queues of preallocated mutable events.
+ *
+ * Event is read in place: claim it, read its fields and release. Event should not be used after release
+ * since producers reuse it for next messages.
+ */
+public interface EventHead<T> {
+
+    /**
+     * Claim next published event for reading. Claiming again before release returns the same event.
+     *
+     * @return event or null if the queue is empty
+     */
+    T claimHead();
+
+    /**
+     * Return previously claimed event to producers.
+     *
+     * @throws IllegalStateException if there is no claimed event
+     */
+    void releaseHead();
+
+}
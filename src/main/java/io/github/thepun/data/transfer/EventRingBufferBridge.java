@@ -0,0 +1,145 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.function.Supplier;
+
+import io.github.thepun.unsafe.ArrayMemory;
+
+/**
+ * Single producer / single consumer bounded queue of preallocated mutable events.
+ *
+ * Same counters as {@link RingBufferBridge} but the buffer is filled with events from the factory once
+ * and producer and consumer modify and read them in place, so nothing is allocated per message.
+ */
+@SuppressWarnings("unchecked")
+public final class EventRingBufferBridge<T> implements EventHead<T>, EventTail<T>, HasDepth {
+
+    // TODO: align local variables
+
+    private final int size;
+    private final int mask;
+    private final Object[] data;
+    private final AlignedLong readCounter;
+    private final AlignedLong writeCounter;
+    private final AlignedLong localReadCounter;
+    private final AlignedLong localWriteCounter;
+    private final AlignedLong claimedReadIndex;
+    private final AlignedLong claimedWriteIndex;
+
+    /**
+     * @param queueSize - number of events, rounded up to power of two
+     * @param eventFactory - factory to fill the buffer with
+     */
+    public EventRingBufferBridge(int queueSize, Supplier<T> eventFactory) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (eventFactory == null) {
+            throw new IllegalArgumentException("Event factory should be specified");
+        }
+
+        double log2 = Math.log10(queueSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        data = new Object[size];
+        for (int i = 0; i < size; i++) {
+            T event = eventFactory.get();
+            if (event == null) {
+                throw new IllegalArgumentException("Event factory should not return null");
+            }
+
+            data[i] = event;
+        }
+
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        localReadCounter = new AlignedLong();
+        localWriteCounter = new AlignedLong();
+        claimedReadIndex = new AlignedLong();
+        claimedWriteIndex = new AlignedLong();
+        claimedReadIndex.set(-1);
+        claimedWriteIndex.set(-1);
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    @Override
+    public T claimTail() {
+        long readIndex = localReadCounter.get();
+        long writeIndex = writeCounter.get();
+        if (writeIndex >= readIndex + size) {
+            readIndex = readCounter.getAcquire();
+            localReadCounter.set(readIndex);
+
+            if (writeIndex >= readIndex + size) {
+                return null;
+            }
+        }
+
+        claimedWriteIndex.set(writeIndex);
+        return (T) ArrayMemory.getObject(data, (int) (writeIndex & mask));
+    }
+
+    @Override
+    public void commitTail() {
+        long writeIndex = writeCounter.get();
+        if (claimedWriteIndex.get() != writeIndex) {
+            throw new IllegalStateException("Event is not claimed");
+        }
+
+        writeCounter.setRelease(writeIndex + 1);
+    }
+
+    @Override
+    public T claimHead() {
+        long writeIndex = localWriteCounter.get();
+        long readIndex = readCounter.get();
+        if (readIndex >= writeIndex) {
+            writeIndex = writeCounter.getAcquire();
+            localWriteCounter.set(writeIndex);
+
+            if (readIndex >= writeIndex) {
+                return null;
+            }
+        }
+
+        claimedReadIndex.set(readIndex);
+        return (T) ArrayMemory.getObject(data, (int) (readIndex & mask));
+    }
+
+    @Override
+    public void releaseHead() {
+        long readIndex = readCounter.get();
+        if (claimedReadIndex.get() != readIndex) {
+            throw new IllegalStateException("Event is not claimed");
+        }
+
+        readCounter.setRelease(readIndex + 1);
+    }
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import io.github.thepun.unsafe.ArrayMemory;
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Multiple producers / multiple consumers bounded queue of preallocated mutable events.
+ *
+ * Same protocol as {@link RingBufferRouter} split into two steps: producer keeps its counter in progress from claim till commit
+ * so consumers do not pass the event, consumer keeps its counter in progress from claim till release so producers do not overwrite it.
+ * Buffer is filled with events from the factory once, so nothing is allocated per message.
+ */
+@SuppressWarnings("unchecked")
+public final class EventRingBufferRouter<T> implements HasDepth {
+
+    // TODO: align consumers/producers
+
+    private final int size;
+    private final int mask;
+    private final Object[] data;
+    private final AlignedLong readCounter;
+    private final AlignedLong writeCounter;
+
+    private AlignedLong[] consumerCounters;
+    private AlignedLong[] producerCounters;
+    private EventConsumer<T>[] consumers;
+    private EventProducer<T>[] producers;
+
+    /**
+     * @param bufferSize - number of events, rounded up to power of two
+     * @param eventFactory - factory to fill the buffer with
+     */
+    public EventRingBufferRouter(int bufferSize, Supplier<T> eventFactory) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (eventFactory == null) {
+            throw new IllegalArgumentException("Event factory should be specified");
+        }
+
+        double log2 = Math.log10(bufferSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        data = new Object[size];
+        for (int i = 0; i < size; i++) {
+            T event = eventFactory.get();
+            if (event == null) {
+                throw new IllegalArgumentException("Event factory should not return null");
+            }
+
+            data[i] = event;
+        }
+
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        consumerCounters = new AlignedLong[0];
+        producerCounters = new AlignedLong[0];
+        consumers = new EventConsumer[0];
+        producers = new EventProducer[0];
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    public synchronized EventTail<T> createProducer() {
+        EventProducer<T>[] oldProducers = producers;
+        EventProducer<T>[] newProducers = Arrays.copyOf(oldProducers, oldProducers.length + 1);
+        EventProducer<T> producer = new EventProducer<>(this);
+        newProducers[oldProducers.length] = producer;
+        updateProducers(newProducers);
+        return producer;
+    }
+
+    public synchronized EventHead<T> createConsumer() {
+        EventConsumer<T>[] oldConsumers = consumers;
+        EventConsumer<T>[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
+        EventConsumer<T> consumer = new EventConsumer<>(this);
+        newConsumers[oldConsumers.length] = consumer;
+        updateConsumers(newConsumers);
+        return consumer;
+    }
+
+    public synchronized void destroyProducer(EventTail<T> producer) {
+        if (!(producer instanceof EventProducer)) {
+            throw new IllegalArgumentException("Wrong producer");
+        }
+
+        EventProducer<T> producerSubqueue = (EventProducer<T>) producer;
+        if (producerSubqueue.parent != this) {
+            throw new IllegalArgumentException("Producer from another router");
+        }
+
+        EventProducer<T>[] newProducers;
+        EventProducer<T>[] oldProducers;
+
+        oldProducers = producers;
+        int index = -1;
+        for (int i = 0; i < oldProducers.length; i++) {
+            if (oldProducers[i] == producer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Producer not found");
+        }
+
+        newProducers = new EventProducer[oldProducers.length - 1];
+        System.arraycopy(oldProducers, 0, newProducers, 0, index);
+        System.arraycopy(oldProducers, index + 1, newProducers, index, oldProducers.length - (index + 1));
+        updateProducers(newProducers);
+    }
+
+    public synchronized void destroyConsumer(EventHead<T> consumer) {
+        if (!(consumer instanceof EventConsumer)) {
+            throw new IllegalArgumentException("Wrong consumer");
+        }
+
+        EventConsumer<T> consumerSubqueue = (EventConsumer<T>) consumer;
+        if (consumerSubqueue.parent != this) {
+            throw new IllegalArgumentException("Consumer from another router");
+        }
+
+        EventConsumer<T>[] newConsumers;
+        EventConsumer<T>[] oldConsumers;
+
+        oldConsumers = consumers;
+        int index = -1;
+        for (int i = 0; i < oldConsumers.length; i++) {
+            if (oldConsumers[i] == consumer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Consumer not found");
+        }
+
+        newConsumers = new EventConsumer[oldConsumers.length - 1];
+        System.arraycopy(oldConsumers, 0, newConsumers, 0, index);
+        System.arraycopy(oldConsumers, index + 1, newConsumers, index, oldConsumers.length - (index + 1));
+        updateConsumers(newConsumers);
+    }
+
+    private void updateProducers(EventProducer<T>[] newProducers) {
+        producers = newProducers;
+
+        AlignedLong[] newProducerCounters = new AlignedLong[newProducers.length];
+        for (int i = 0; i < newProducers.length; i++) {
+            newProducerCounters[i] = newProducers[i].producerWriteCounter;
+        }
+
+        producerCounters = newProducerCounters;
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i].producers = newProducerCounters;
+        }
+    }
+
+    private void updateConsumers(EventConsumer<T>[] newConsumers) {
+        consumers = newConsumers;
+
+        AlignedLong[] newConsumerCounters = new AlignedLong[newConsumers.length];
+        for (int i = 0; i < newConsumers.length; i++) {
+            newConsumerCounters[i] = newConsumers[i].consumerReadCounter;
+        }
+
+        consumerCounters = newConsumerCounters;
+        for (int i = 0; i < producers.length; i++) {
+            producers[i].consumers = newConsumerCounters;
+        }
+    }
+
+
+    private static final class EventProducer<T> implements EventTail<T> {
+
+        private final int size;
+        private final int mask;
+        private final Object[] data;
+        private final AlignedLong writeCounter;
+        private final AlignedLong producerWriteCounter;
+        private final AlignedLong readCounter;
+
+        private AlignedLong[] consumers;
+        private long producerReadCounter;
+        private long claimedWriteIndex;
+
+        private final EventRingBufferRouter<T> parent;
+
+        // gap
+        private Object t1, t2;
+
+        private EventProducer(EventRingBufferRouter<T> parent) {
+            this.parent = parent;
+
+            size = parent.size;
+            mask = parent.mask;
+            data = parent.data;
+            consumers = parent.consumerCounters;
+            readCounter = parent.readCounter;
+            writeCounter = parent.writeCounter;
+
+            producerWriteCounter = new AlignedLong();
+            producerWriteCounter.set(Long.MAX_VALUE);
+            claimedWriteIndex = -1;
+        }
+
+        @Override
+        public T claimTail() {
+            long writeIndex = claimedWriteIndex;
+            if (writeIndex >= 0) {
+                return (T) ArrayMemory.getObject(data, (int) (writeIndex & mask));
+            }
+
+            int localSize = size;
+            long readIndex = producerReadCounter;
+            AlignedLong localWriteCounter = writeCounter;
+            AlignedLong localProducerWriteCounter = producerWriteCounter;
+
+            writeIndex = localWriteCounter.get();
+            long readIndexPlusSize = readIndex + localSize;
+            if (writeIndex >= readIndexPlusSize) {
+                AlignedLong[] localConsumers = consumers;
+                AlignedLong localReadCounter = readCounter;
+
+                readIndex = localReadCounter.getAcquire();
+                for (int i = 0; i < localConsumers.length; i++) {
+                    long localReadCounterFromConsumer = localConsumers[i].getAcquire();
+                    if (readIndex > localReadCounterFromConsumer) {
+                        readIndex = localReadCounterFromConsumer;
+                    }
+                }
+                producerReadCounter = readIndex;
+
+                readIndexPlusSize = readIndex + localSize;
+                if (writeIndex >= readIndexPlusSize) {
+                    return null;
+                }
+            }
+
+            // event stays in progress until commit
+            localProducerWriteCounter.setRelease(writeIndex);
+            while (!localWriteCounter.compareAndSwap(writeIndex, writeIndex + 1)) {
+                writeIndex = localWriteCounter.get();
+
+                if (writeIndex >= readIndexPlusSize) {
+                    localProducerWriteCounter.set(Long.MAX_VALUE);
+                    return null;
+                }
+            }
+
+            claimedWriteIndex = writeIndex;
+            return (T) ArrayMemory.getObject(data, (int) (writeIndex & mask));
+        }
+
+        @Override
+        public void commitTail() {
+            if (claimedWriteIndex < 0) {
+                throw new IllegalStateException("Event is not claimed");
+            }
+
+            producerWriteCounter.setRelease(Long.MAX_VALUE);
+            claimedWriteIndex = -1;
+        }
+    }
+
+
+    private static final class EventConsumer<T> implements EventHead<T> {
+
+        // gap
+        private int t1;
+
+        private final int mask;
+        private final Object[] data;
+        private final AlignedLong readCounter;
+        private final AlignedLong consumerReadCounter;
+        private final AlignedLong writeCounter;
+
+        private long consumerWriteCounter;
+        private long claimedReadIndex;
+        private AlignedLong[] producers;
+
+        private final EventRingBufferRouter<T> parent;
+
+        // gap
+        private Object t2, t3, t4;
+
+        private EventConsumer(EventRingBufferRouter<T> parent) {
+            this.parent = parent;
+
+            mask = parent.mask;
+            data = parent.data;
+            producers = parent.producerCounters;
+            readCounter = parent.readCounter;
+            writeCounter = parent.writeCounter;
+
+            consumerReadCounter = new AlignedLong();
+            consumerReadCounter.set(Long.MAX_VALUE);
+            claimedReadIndex = -1;
+        }
+
+        @Override
+        public T claimHead() {
+            long readIndex = claimedReadIndex;
+            if (readIndex >= 0) {
+                return (T) ArrayMemory.getObject(data, (int) (readIndex & mask));
+            }
+
+            long writeIndex = consumerWriteCounter;
+            AlignedLong localReadCounter = readCounter;
+            AlignedLong localConsumerReadCounter = consumerReadCounter;
+
+            readIndex = localReadCounter.get();
+            if (readIndex >= writeIndex) {
+                AlignedLong[] localProducers = producers;
+                AlignedLong localWriteCounter = writeCounter;
+
+                writeIndex = localWriteCounter.getAcquire();
+                for (int i = 0; i < localProducers.length; i++) {
+                    long localWriteCounterFromProducer = localProducers[i].getAcquire();
+                    if (writeIndex > localWriteCounterFromProducer) {
+                        writeIndex = localWriteCounterFromProducer;
+                    }
+                }
+                consumerWriteCounter = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return null;
+                }
+            }
+
+            // event stays in progress until release
+            localConsumerReadCounter.setRelease(readIndex);
+            while (!localReadCounter.compareAndSwap(readIndex, readIndex + 1)) {
+                readIndex = localReadCounter.get();
+
+                if (readIndex >= writeIndex) {
+                    localConsumerReadCounter.set(Long.MAX_VALUE);
+                    return null;
+                }
+            }
+
+            MemoryFence.load();
+            claimedReadIndex = readIndex;
+            return (T) ArrayMemory.getObject(data, (int) (readIndex & mask));
+        }
+
+        @Override
+        public void releaseHead() {
+            if (claimedReadIndex < 0) {
+                throw new IllegalStateException("Event is not claimed");
+            }
+
+            consumerReadCounter.setRelease(Long.MAX_VALUE);
+            claimedReadIndex = -1;
+        }
+    }
+}
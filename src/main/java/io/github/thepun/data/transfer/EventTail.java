@@ -0,0 +1,40 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Producer's entry point interface for queues of preallocated mutable events.
+ *
+ * Event is written in place: claim it, set its fields and commit. Events are reused so nothing is allocated per message.
+ */
+public interface EventTail<T> {
+
+    /**
+     * Claim next event for writing. Claiming again before commit returns the same event.
+     * Event contains previous values which should be overwritten.
+     *
+     * @return event or null if the queue is full
+     */
+    T claimTail();
+
+    /**
+     * Publish previously claimed event to consumers.
+     *
+     * @throws IllegalStateException if there is no claimed event
+     */
+    void commitTail();
+
+}
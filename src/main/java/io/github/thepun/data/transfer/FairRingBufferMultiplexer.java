@@ -0,0 +1,335 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.github.thepun.unsafe.ArrayMemory;
+
+/**
+ * Multiple producers / single consumer queue where each producer has its own single producer / single consumer ring buffer.
+ *
+ * Unlike {@link GreedyRingBufferMultiplexer} producers do not share counters, so a producer paused in the middle of adding
+ * does not block elements of other producers. Consumer takes elements from producers in turn.
+ *
+ * GUARANTIES:
+ * 1. Elements of each producer are removed in order of addition
+ * 2. Each non-empty producer gets its turn on every round
+ * 3. Elements added before a producer is destroyed are still removed, its lane is dropped once it is empty
+ *
+ * LIMITATIONS:
+ * 1. There is no order between elements of different producers
+ */
+@SuppressWarnings("unchecked")
+public final class FairRingBufferMultiplexer<T> implements Multiplexer<T>, HasDepth {
+
+    // TODO: align producers
+
+    private final int size;
+    private final int mask;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    private int nextProducerIndex;
+    private LaneProducer<T>[] producers;
+
+    /**
+     * @param laneSize - size of ring buffer of each producer, rounded up to power of two
+     */
+    public FairRingBufferMultiplexer(int laneSize) {
+        this(laneSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public FairRingBufferMultiplexer(int laneSize, WaitStrategy waitStrategy) {
+        this(laneSize, waitStrategy, waitStrategy);
+    }
+
+    public FairRingBufferMultiplexer(int laneSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
+        if (laneSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        double log2 = Math.log10(laneSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        producers = new LaneProducer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = 0;
+        for (LaneProducer<T> producer : producers) {
+            long laneDepth = producer.writeCounter.getAcquire() - producer.readCounter.getAcquire();
+            depth += Math.max(0, Math.min(laneDepth, size));
+        }
+        return depth;
+    }
+
+    /**
+     * @return capacity of all current producers
+     */
+    @Override
+    public long capacity() {
+        return (long) producers.length * size;
+    }
+
+    @Override
+    public synchronized QueueTail<T> createProducer() {
+        LaneProducer<T>[] oldProducers = producers;
+        LaneProducer<T>[] newProducers = Arrays.copyOf(oldProducers, oldProducers.length + 1);
+        LaneProducer<T> producer = new LaneProducer<>(this);
+        newProducers[oldProducers.length] = producer;
+        producers = newProducers;
+        return producer;
+    }
+
+    @Override
+    public synchronized void destroyProducer(QueueTail<T> producer) {
+        if (!(producer instanceof LaneProducer)) {
+            throw new IllegalArgumentException("Wrong producer");
+        }
+
+        LaneProducer<T> laneProducer = (LaneProducer<T>) producer;
+        if (laneProducer.parent != this) {
+            throw new IllegalArgumentException("Producer from another multiplexer");
+        }
+
+        if (laneProducer.destroyed || indexOf(producers, laneProducer) == -1) {
+            throw new IllegalArgumentException("Producer not found");
+        }
+
+        // lane with elements is dropped by consumer when it becomes empty
+        laneProducer.destroyed = true;
+        if (laneProducer.writeCounter.get() > laneProducer.readCounter.getAcquire()) {
+            return;
+        }
+
+        removeProducer(laneProducer);
+    }
+
+    private synchronized void removeProducer(LaneProducer<T> producer) {
+        LaneProducer<T>[] newProducers;
+        LaneProducer<T>[] oldProducers;
+
+        oldProducers = producers;
+        int index = indexOf(oldProducers, producer);
+        if (index == -1) {
+            // already removed by destroying thread
+            return;
+        }
+
+        newProducers = new LaneProducer[oldProducers.length - 1];
+        System.arraycopy(oldProducers, 0, newProducers, 0, index);
+        System.arraycopy(oldProducers, index + 1, newProducers, index + 1 - 1, oldProducers.length - (index + 1));
+        producers = newProducers;
+    }
+
+    @Override
+    public T removeFromHead() {
+        LaneProducer<T>[] localProducers = producers;
+
+        int producerCount = localProducers.length;
+        int producerIndex = nextProducerIndex;
+        for (int i = 0; i < producerCount; i++, producerIndex++) {
+            if (producerIndex >= producerCount) {
+                producerIndex = 0;
+            }
+
+            LaneProducer<T> producer = localProducers[producerIndex];
+            long writeIndex = producer.consumerWriteIndex;
+            long readIndex = producer.readCounter.get();
+            if (readIndex >= writeIndex) {
+                writeIndex = producer.writeCounter.getAcquire();
+                producer.consumerWriteIndex = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    removeIfDestroyed(producer, readIndex);
+                    continue;
+                }
+            }
+
+            int index = (int) (readIndex & mask);
+            Object element = ArrayMemory.getObject(producer.data, index);
+            producer.readCounter.setRelease(readIndex + 1);
+            nextProducerIndex = producerIndex + 1;
+
+            producerWaitStrategy.signal();
+            return (T) element;
+        }
+
+        return null;
+    }
+
+    @Override
+    public int removeFromHead(T[] elements, int offset, int length) {
+        LaneProducer<T>[] localProducers = producers;
+
+        int count = 0;
+        int producerCount = localProducers.length;
+        int producerIndex = nextProducerIndex;
+        for (int i = 0; i < producerCount && count < length; i++, producerIndex++) {
+            if (producerIndex >= producerCount) {
+                producerIndex = 0;
+            }
+
+            // each producer gives a batch in its turn
+            LaneProducer<T> producer = localProducers[producerIndex];
+            long writeIndex = producer.consumerWriteIndex;
+            long readIndex = producer.readCounter.get();
+            if (readIndex + length - count > writeIndex) {
+                writeIndex = producer.writeCounter.getAcquire();
+                producer.consumerWriteIndex = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    removeIfDestroyed(producer, readIndex);
+                    continue;
+                }
+            }
+
+            int producerElements = (int) Math.min(length - count, writeIndex - readIndex);
+            for (int j = 0; j < producerElements; j++) {
+                int index = (int) ((readIndex + j) & mask);
+                elements[offset + count + j] = (T) ArrayMemory.getObject(producer.data, index);
+            }
+
+            producer.readCounter.setRelease(readIndex + producerElements);
+            count += producerElements;
+        }
+
+        nextProducerIndex = producerIndex;
+        if (count > 0) {
+            producerWaitStrategy.signal();
+        }
+
+        return count;
+    }
+
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+    }
+
+    private static int indexOf(LaneProducer<?>[] producers, LaneProducer<?> producer) {
+        for (int i = 0; i < producers.length; i++) {
+            if (producers[i] == producer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeIfDestroyed(LaneProducer<T> producer, long readIndex) {
+        // flag is read before the counter so nothing could be added after the check
+        if (producer.destroyed && readIndex >= producer.writeCounter.getAcquire()) {
+            removeProducer(producer);
+        }
+    }
+
+
+    private static final class LaneProducer<T> implements QueueTail<T> {
+
+        private final FairRingBufferMultiplexer<T> parent;
+
+        private final int size;
+        private final int mask;
+        private final Object[] data;
+        private final AlignedLong readCounter;
+        private final AlignedLong writeCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
+
+        // used only by producer
+        private long producerReadIndex;
+
+        // used only by consumer
+        private long consumerWriteIndex;
+
+        private volatile boolean destroyed;
+
+        private LaneProducer(FairRingBufferMultiplexer<T> parent) {
+            this.parent = parent;
+
+            size = parent.size;
+            mask = parent.mask;
+            data = new Object[size];
+            readCounter = new AlignedLong();
+            writeCounter = new AlignedLong();
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
+        }
+
+        @Override
+        public boolean addToTail(T element) {
+            long readIndex = producerReadIndex;
+            long writeIndex = writeCounter.get();
+            if (writeIndex >= readIndex + size) {
+                readIndex = readCounter.getAcquire();
+                producerReadIndex = readIndex;
+
+                if (writeIndex >= readIndex + size) {
+                    return false;
+                }
+            }
+
+            int index = (int) (writeIndex & mask);
+            ArrayMemory.setObject(data, index, element);
+            writeCounter.setRelease(writeIndex + 1);
+
+            consumerWaitStrategy.signal();
+            return true;
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            long readIndex = producerReadIndex;
+            long writeIndex = writeCounter.get();
+            if (writeIndex + length > readIndex + size) {
+                readIndex = readCounter.getAcquire();
+                producerReadIndex = readIndex;
+
+                if (writeIndex >= readIndex + size) {
+                    return 0;
+                }
+            }
+
+            int count = (int) Math.min(length, readIndex + size - writeIndex);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((writeIndex + i) & mask);
+                ArrayMemory.setObject(data, index, elements[offset + i]);
+            }
+
+            writeCounter.setRelease(writeIndex + count);
+
+            consumerWaitStrategy.signal();
+            return count;
+        }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTail(element, timeout, timeUnit, producerWaitStrategy);
+        }
+    }
+}
@@ -16,12 +16,14 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.github.thepun.unsafe.ArrayMemory;
 import io.github.thepun.unsafe.MemoryFence;
 
 
-public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
+public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T>, HasDepth {
 
     // TODO: change 'writeIndex >= readIndex + size' to 'writeIndex - size >= readIndex'
     // TODO: align producers and variables
@@ -32,6 +34,8 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
     private final Object[] data;
     private final AlignedLong readCounter;
     private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     private AlignedLong[] producerCounters;
     private RingBufferProducer<T>[] producers;
@@ -40,10 +44,22 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
     private long consumerWriteCounter;
 
     public GreedyRingBufferMultiplexer(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public GreedyRingBufferMultiplexer(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public GreedyRingBufferMultiplexer(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (bufferSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         double log2 = Math.log10(bufferSize) / Math.log10(2);
         int pow = (int) Math.ceil(log2);
 
@@ -54,6 +70,19 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
         writeCounter = new AlignedLong();
         producerCounters = new AlignedLong[0];
         producers = new RingBufferProducer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
     }
 
     @Override
@@ -122,9 +151,9 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
             AlignedLong[] localProducers = producerCounters;
             AlignedLong localWriteCounter = writeCounter;
 
-            writeIndex = localWriteCounter.get();
+            writeIndex = localWriteCounter.getAcquire();
             for (int i = 0; i < localProducers.length; i++) {
-                long localWriteCounterFromConsumer = ArrayMemory.getObject(localProducers, i).get();
+                long localWriteCounterFromConsumer = ArrayMemory.getObject(localProducers, i).getAcquire();
                 if (writeIndex > localWriteCounterFromConsumer) {
                     writeIndex = localWriteCounterFromConsumer;
                 }
@@ -143,9 +172,55 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
         long nextReadIndex = readIndex + 1;
         consumerReadCounter = nextReadIndex;
         localReadCounter.set(nextReadIndex);
+        producerWaitStrategy.signal();
         return (T) element;
     }
 
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+    }
+
+    @Override
+    public int removeFromHead(T[] elements, int offset, int length) {
+        int localMask = mask;
+        Object[] localData = data;
+        long writeIndex = consumerWriteCounter;
+        AlignedLong localReadCounter = readCounter;
+
+        long readIndex = consumerReadCounter;
+        if (readIndex + length > writeIndex) {
+            AlignedLong[] localProducers = producerCounters;
+            AlignedLong localWriteCounter = writeCounter;
+
+            writeIndex = localWriteCounter.getAcquire();
+            for (int i = 0; i < localProducers.length; i++) {
+                long localWriteCounterFromConsumer = ArrayMemory.getObject(localProducers, i).getAcquire();
+                if (writeIndex > localWriteCounterFromConsumer) {
+                    writeIndex = localWriteCounterFromConsumer;
+                }
+            }
+            consumerWriteCounter = writeIndex;
+
+            if (readIndex >= writeIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, writeIndex - readIndex);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((readIndex + i) & localMask);
+            elements[offset + i] = (T) ArrayMemory.getObject(localData, index);
+        }
+
+        MemoryFence.load();
+        long nextReadIndex = readIndex + count;
+        consumerReadCounter = nextReadIndex;
+        localReadCounter.set(nextReadIndex);
+        producerWaitStrategy.signal();
+        return count;
+    }
+
 
     private static final class RingBufferProducer<T> implements QueueTail<T> {
 
@@ -157,9 +232,12 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
         private final AlignedLong readCounter;
         private final AlignedLong writeCounter;
         private final AlignedLong producerWriteCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private long localReadCounter;
         private long lastKnownWriteCounter;
+        private long claimedWriteLimit;
 
         private RingBufferProducer(GreedyRingBufferMultiplexer<T> parent) {
             this.parent = parent;
@@ -169,6 +247,8 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
             data = parent.data;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             producerWriteCounter = new AlignedLong();
             producerWriteCounter.set(Long.MAX_VALUE);
@@ -186,11 +266,12 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
 
                 writeIndex = writeCounter.getAndIncrement();
                 lastKnownWriteCounter = writeIndex;
+                claimedWriteLimit = writeIndex + 1;
                 producerWriteCounter.set(writeIndex);
             }
 
             if (writeIndex >= readIndex + size) {
-                readIndex = readCounter.get();
+                readIndex = readCounter.getAcquire();
                 localReadCounter = readIndex;
 
                 if (writeIndex >= readIndex + size) {
@@ -201,9 +282,74 @@ public final class GreedyRingBufferMultiplexer<T> implements Multiplexer<T> {
             int index = (int) (writeIndex & mask);
             ArrayMemory.setObject(data, index, element);
 
-            MemoryFence.store();
-            producerWriteCounter.set(Long.MAX_VALUE);
+            long nextWriteIndex = writeIndex + 1;
+            producerWriteCounter.setRelease(nextWriteIndex < claimedWriteLimit ? nextWriteIndex : Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
             return true;
         }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTail(element, timeout, timeUnit, producerWaitStrategy);
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            long readIndex = localReadCounter;
+
+            long writeIndex = producerWriteCounter.get();
+            if (writeIndex == Long.MAX_VALUE) {
+                producerWriteCounter.set(lastKnownWriteCounter);
+
+                // claim only free slots, elements which are not added should not leave a hole for others
+                long claimLength;
+                writeIndex = writeCounter.get();
+                for (;;) {
+                    if (writeIndex + length > readIndex + size) {
+                        readIndex = readCounter.getAcquire();
+                        localReadCounter = readIndex;
+
+                        if (writeIndex >= readIndex + size) {
+                            producerWriteCounter.set(Long.MAX_VALUE);
+                            return 0;
+                        }
+                    }
+
+                    claimLength = Math.min(length, readIndex + size - writeIndex);
+                    if (writeCounter.compareAndSwap(writeIndex, writeIndex + claimLength)) {
+                        break;
+                    }
+
+                    writeIndex = writeCounter.get();
+                }
+
+                lastKnownWriteCounter = writeIndex;
+                claimedWriteLimit = writeIndex + claimLength;
+                producerWriteCounter.set(writeIndex);
+            }
+
+            // slots of the claimed range which are not filled now are left for the next additions
+            long writeLimit = Math.min(claimedWriteLimit, writeIndex + length);
+            if (writeLimit > readIndex + size) {
+                readIndex = readCounter.getAcquire();
+                localReadCounter = readIndex;
+
+                if (writeIndex >= readIndex + size) {
+                    return 0;
+                }
+
+                writeLimit = Math.min(writeLimit, readIndex + size);
+            }
+
+            int count = (int) (writeLimit - writeIndex);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((writeIndex + i) & mask);
+                ArrayMemory.setObject(data, index, elements[offset + i]);
+            }
+
+            producerWriteCounter.setRelease(writeLimit < claimedWriteLimit ? writeLimit : Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
+            return count;
+        }
     }
 }
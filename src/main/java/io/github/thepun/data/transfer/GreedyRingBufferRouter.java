@@ -16,12 +16,13 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.github.thepun.unsafe.ArrayMemory;
-import io.github.thepun.unsafe.MemoryFence;
 
 
-public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasConsumers<T> {
+public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasConsumers<T>, HasDepth {
 
     // TODO: extend from ActorCollectionBase
     // TODO: change 'writeIndex >= readIndex + size' to 'writeIndex - size >= readIndex'
@@ -34,6 +35,8 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
     private final Object[] data;
     private final AlignedLong readCounter;
     private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     private AlignedLong[] consumerCounters;
     private AlignedLong[] producerCounters;
@@ -41,10 +44,22 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
     private RingBufferProducer<T>[] producers;
 
     public GreedyRingBufferRouter(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public GreedyRingBufferRouter(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public GreedyRingBufferRouter(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (bufferSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         double log2 = Math.log10(bufferSize) / Math.log10(2);
         int pow = (int) Math.ceil(log2);
 
@@ -57,6 +72,19 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
         producerCounters = new AlignedLong[0];
         consumers = new RingBufferConsumer[0];
         producers = new RingBufferProducer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
     }
 
     @Override
@@ -184,9 +212,12 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
         private final AlignedLong readCounter;
         private final AlignedLong writeCounter;
         private final AlignedLong localWriteCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private long localReadCounter;
         private long lastKnownWriteCounter;
+        private long claimedWriteLimit;
 
         private AlignedLong[] consumers;
 
@@ -199,6 +230,8 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
             consumers = parent.consumerCounters;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             localWriteCounter = new AlignedLong();
             localWriteCounter.set(Long.MAX_VALUE);
@@ -216,15 +249,16 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
 
                 writeIndex = writeCounter.getAndIncrement();
                 lastKnownWriteCounter = writeIndex;
+                claimedWriteLimit = writeIndex + 1;
                 localWriteCounter.set(writeIndex);
             }
 
             if (writeIndex >= readIndex + size) {
                 AlignedLong[] localConsumers = consumers;
 
-                readIndex = localConsumers[0].get(); //readCounter.get();
+                readIndex = localConsumers[0].getAcquire(); //readCounter.get();
                 for (int i = 1; i < localConsumers.length; i++) {
-                    long localReadCounterFromConsumer = localConsumers[i].get();
+                    long localReadCounterFromConsumer = localConsumers[i].getAcquire();
                     if (readIndex > localReadCounterFromConsumer) {
                         readIndex = localReadCounterFromConsumer;
                     }
@@ -239,10 +273,89 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
             int index = (int) (writeIndex & mask);
             ArrayMemory.setObject(data, index, element);
 
-            MemoryFence.store();
-            localWriteCounter.set(Long.MAX_VALUE);
+            long nextWriteIndex = writeIndex + 1;
+            localWriteCounter.setRelease(nextWriteIndex < claimedWriteLimit ? nextWriteIndex : Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
             return true;
         }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTail(element, timeout, timeUnit, producerWaitStrategy);
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            long readIndex = localReadCounter;
+
+            long writeIndex = localWriteCounter.get();
+            if (writeIndex == Long.MAX_VALUE) {
+                localWriteCounter.set(lastKnownWriteCounter);
+
+                // claim only free slots, elements which are not added should not leave a hole for others
+                long claimLength;
+                writeIndex = writeCounter.get();
+                for (;;) {
+                    if (writeIndex + length > readIndex + size) {
+                        readIndex = slowestReadIndex();
+                        localReadCounter = readIndex;
+
+                        if (writeIndex >= readIndex + size) {
+                            localWriteCounter.set(Long.MAX_VALUE);
+                            return 0;
+                        }
+                    }
+
+                    claimLength = Math.min(length, readIndex + size - writeIndex);
+                    if (writeCounter.compareAndSwap(writeIndex, writeIndex + claimLength)) {
+                        break;
+                    }
+
+                    writeIndex = writeCounter.get();
+                }
+
+                lastKnownWriteCounter = writeIndex;
+                claimedWriteLimit = writeIndex + claimLength;
+                localWriteCounter.set(writeIndex);
+            }
+
+            // slots of the claimed range which are not filled now are left for the next additions
+            long writeLimit = Math.min(claimedWriteLimit, writeIndex + length);
+            if (writeLimit > readIndex + size) {
+                readIndex = slowestReadIndex();
+                localReadCounter = readIndex;
+
+                if (writeIndex >= readIndex + size) {
+                    return 0;
+                }
+
+                writeLimit = Math.min(writeLimit, readIndex + size);
+            }
+
+            int count = (int) (writeLimit - writeIndex);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((writeIndex + i) & mask);
+                ArrayMemory.setObject(data, index, elements[offset + i]);
+            }
+
+            localWriteCounter.setRelease(writeLimit < claimedWriteLimit ? writeLimit : Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
+            return count;
+        }
+
+        private long slowestReadIndex() {
+            AlignedLong[] localConsumers = consumers;
+
+            long readIndex = localConsumers[0].getAcquire();
+            for (int i = 1; i < localConsumers.length; i++) {
+                long localReadCounterFromConsumer = localConsumers[i].getAcquire();
+                if (readIndex > localReadCounterFromConsumer) {
+                    readIndex = localReadCounterFromConsumer;
+                }
+            }
+
+            return readIndex;
+        }
     }
 
 
@@ -255,6 +368,8 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
         private final AlignedLong readCounter;
         private final AlignedLong writeCounter;
         private final AlignedLong localReadCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private long localWriteCounter;
 
@@ -268,6 +383,8 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
             producers = parent.producerCounters;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             localReadCounter = new AlignedLong();
             localReadCounter.set(0);
@@ -281,9 +398,9 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
             if (readIndex >= writeIndex) {
                 AlignedLong[] localProducers = producers;
 
-                writeIndex = writeCounter.get();
+                writeIndex = writeCounter.getAcquire();
                 for (int i = 0; i < localProducers.length; i++) {
-                    long localWriteCounterFromConsumer = localProducers[i].get();
+                    long localWriteCounterFromConsumer = localProducers[i].getAcquire();
                     if (writeIndex > localWriteCounterFromConsumer) {
                         writeIndex = localWriteCounterFromConsumer;
                     }
@@ -295,8 +412,7 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
                 }
             }
 
-            MemoryFence.store();
-            localReadCounter.set(readIndex);
+            localReadCounter.setRelease(readIndex);
             while (!readCounter.compareAndSwap(readIndex, readIndex + 1)) {
                 readIndex = readCounter.get();
 
@@ -308,10 +424,59 @@ public final class GreedyRingBufferRouter<T> implements HasProducers<T>, HasCons
 
             int index = (int) (readIndex & mask);
             Object element = ArrayMemory.getObject(data, index);
-            MemoryFence.load();
-
-            localReadCounter.set(readIndex + 1);
+            localReadCounter.setRelease(readIndex + 1);
+            producerWaitStrategy.signal();
             return (T) element;
         }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            long writeIndex = localWriteCounter;
+
+            long readIndex = localReadCounter.get();
+            if (readIndex + length > writeIndex) {
+                AlignedLong[] localProducers = producers;
+
+                writeIndex = writeCounter.getAcquire();
+                for (int i = 0; i < localProducers.length; i++) {
+                    long localWriteCounterFromConsumer = localProducers[i].getAcquire();
+                    if (writeIndex > localWriteCounterFromConsumer) {
+                        writeIndex = localWriteCounterFromConsumer;
+                    }
+                }
+                localWriteCounter = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return 0;
+                }
+            }
+
+            // claim the whole range with single CAS
+            localReadCounter.setRelease(readIndex);
+            int count = (int) Math.min(length, writeIndex - readIndex);
+            while (!readCounter.compareAndSwap(readIndex, readIndex + count)) {
+                readIndex = readCounter.get();
+
+                if (readIndex >= writeIndex) {
+                    localReadCounter.set(readIndex);
+                    return 0;
+                }
+
+                count = (int) Math.min(length, writeIndex - readIndex);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((readIndex + i) & mask);
+                elements[offset + i] = (T) ArrayMemory.getObject(data, index);
+            }
+            localReadCounter.setRelease(readIndex + count);
+            producerWaitStrategy.signal();
+            return count;
+        }
     }
 }
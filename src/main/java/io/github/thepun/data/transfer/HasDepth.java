@@ -0,0 +1,35 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Bounded queue which can tell how many elements it holds.
+ *
+ * Values are read from counters without any locking so they are approximate and intended for monitoring only.
+ */
+public interface HasDepth {
+
+    /**
+     * @return approximate number of elements in the queue
+     */
+    long depth();
+
+    /**
+     * @return maximum number of elements in the queue
+     */
+    long capacity();
+
+}
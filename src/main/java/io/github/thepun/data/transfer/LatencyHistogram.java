@@ -0,0 +1,203 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of long values with fixed relative precision in the style of HdrHistogram.
+ *
+ * Values below 2^precisionBits are counted exactly. Larger values fall into buckets of 2^(precisionBits - 1) linear
+ * sub-buckets per power of two, so relative error is not greater then 2^(1 - precisionBits).
+ * All memory is allocated in constructor, recording is one atomic increment.
+ *
+ * Reads are not atomic with concurrent recording, so percentiles are approximate while values are being recorded.
+ */
+public final class LatencyHistogram {
+
+    private final int precisionBits;
+    private final int subBucketCount;
+    private final int halfSubBucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLong maxValue;
+
+    public LatencyHistogram() {
+        this(7);
+    }
+
+    /**
+     * @param precisionBits - number of significant bits of recorded values, from 2 to 16
+     */
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 2 || precisionBits > 16) {
+            throw new IllegalArgumentException("Precision should be from 2 to 16 bits");
+        }
+
+        this.precisionBits = precisionBits;
+        subBucketCount = 1 << precisionBits;
+        halfSubBucketCount = subBucketCount >> 1;
+        counts = new AtomicLongArray(subBucketCount + (64 - precisionBits) * halfSubBucketCount);
+        maxValue = new AtomicLong();
+    }
+
+    /**
+     * @param value - non-negative value, negative values are recorded as zero
+     */
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(indexOf(value));
+
+        long localMaxValue = maxValue.get();
+        while (value > localMaxValue && !maxValue.compareAndSet(localMaxValue, value)) {
+            localMaxValue = maxValue.get();
+        }
+    }
+
+    /**
+     * Record value and correct coordinated omission: if the value is longer then expected interval between samples
+     * then samples which were missed during it are recorded too, each one interval shorter then previous.
+     *
+     * @param value - non-negative value
+     * @param expectedInterval - expected interval between samples or zero to skip correction
+     */
+    public void recordValueWithExpectedInterval(long value, long expectedInterval) {
+        recordValue(value);
+
+        if (expectedInterval <= 0) {
+            return;
+        }
+
+        for (long missedValue = value - expectedInterval; missedValue >= expectedInterval; missedValue -= expectedInterval) {
+            recordValue(missedValue);
+        }
+    }
+
+    public long getTotalCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * @return mean of recorded values with precision of the histogram
+     */
+    public double getMean() {
+        long count = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                count += bucketCount;
+                sum += (double) bucketCount * (lowestValueAt(i) + highestValueAt(i)) / 2;
+            }
+        }
+
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param percentile - percentile from 0 to 100
+     * @return highest value equivalent to the value at percentile or zero if there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile should be from 0 to 100");
+        }
+
+        long totalCount = getTotalCount();
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+            if (count >= countAtPercentile) {
+                return Math.min(highestValueAt(i), maxValue.get());
+            }
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * Remove all recorded values. Values recorded concurrently could be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+
+        maxValue.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getTotalCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p90=" + getValueAtPercentile(90) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", p99.9=" + getValueAtPercentile(99.9) +
+                ", max=" + getMaxValue() +
+                '}';
+    }
+
+    int indexOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (precisionBits - 1);
+        int subBucket = (int) (value >>> shift);
+        return subBucketCount + (shift - 1) * halfSubBucketCount + subBucket - halfSubBucketCount;
+    }
+
+    long lowestValueAt(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+
+        int bucket = index - subBucketCount;
+        int shift = bucket / halfSubBucketCount + 1;
+        long subBucket = bucket % halfSubBucketCount + halfSubBucketCount;
+        return subBucket << shift;
+    }
+
+    long highestValueAt(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+
+        int bucket = index - subBucketCount;
+        int shift = bucket / halfSubBucketCount + 1;
+        long subBucket = bucket % halfSubBucketCount + halfSubBucketCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
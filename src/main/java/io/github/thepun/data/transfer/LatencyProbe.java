@@ -0,0 +1,260 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures end-to-end transit time of elements through any queue.
+ *
+ * Producers and consumers are wrapped with {@link #probeTail(QueueTail)} and {@link #probeHead(QueueHead)}.
+ * Every N-th element of each producer is stamped with {@link System#nanoTime()} when it is added and consumers record
+ * the time it took into {@link LatencyHistogram} when it is removed. Stamps are kept by the wrappers, not in the elements:
+ * each producer has a single sample slot and consumers compare removed elements with slots of all producers,
+ * so the overhead of unsampled elements is a few reference comparisons.
+ *
+ * Coordinated omission is corrected in two ways:
+ * 1. Time of rejected sampled element is taken from the first attempt to add it, so waiting for space is included
+ * 2. If expected interval between elements is specified then it is used to record values of missed samples
+ *
+ * LIMITATIONS:
+ * 1. Wrapper should be used by the same single thread as the wrapped producer or consumer
+ * 2. Next element of producer is not sampled while previous sample is still in the queue
+ * 3. Elements removed not through a wrapper are not measured
+ */
+public final class LatencyProbe {
+
+    private final int sampleRate;
+    private final long expectedInterval;
+    private final LatencyHistogram histogram;
+
+    private ProbedTail<?>[] tails;
+
+    public LatencyProbe(int sampleRate) {
+        this(sampleRate, 0);
+    }
+
+    /**
+     * @param sampleRate - measure every N-th element of each producer
+     * @param expectedIntervalNanos - expected interval between sampled elements of a producer, zero to disable correction
+     */
+    public LatencyProbe(int sampleRate, long expectedIntervalNanos) {
+        this(sampleRate, expectedIntervalNanos, new LatencyHistogram());
+    }
+
+    public LatencyProbe(int sampleRate, long expectedIntervalNanos, LatencyHistogram histogram) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate should be greater then zero");
+        }
+
+        if (expectedIntervalNanos < 0) {
+            throw new IllegalArgumentException("Expected interval should not be negative");
+        }
+
+        if (histogram == null) {
+            throw new IllegalArgumentException("Histogram should be specified");
+        }
+
+        this.sampleRate = sampleRate;
+        this.expectedInterval = expectedIntervalNanos;
+        this.histogram = histogram;
+
+        tails = new ProbedTail[0];
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    public synchronized <T> QueueTail<T> probeTail(QueueTail<T> tail) {
+        if (tail == null) {
+            throw new IllegalArgumentException("Producer should be specified");
+        }
+
+        ProbedTail<T> probedTail = new ProbedTail<>(this, tail);
+        ProbedTail<?>[] newTails = Arrays.copyOf(tails, tails.length + 1);
+        newTails[tails.length] = probedTail;
+        tails = newTails;
+        return probedTail;
+    }
+
+    public <T> QueueHead<T> probeHead(QueueHead<T> head) {
+        if (head == null) {
+            throw new IllegalArgumentException("Consumer should be specified");
+        }
+
+        return new ProbedHead<>(this, head);
+    }
+
+    private void finishSample(Object element) {
+        if (element == null) {
+            return;
+        }
+
+        ProbedTail<?>[] localTails = tails;
+        for (int i = 0; i < localTails.length; i++) {
+            ProbedTail<?> tail = localTails[i];
+            if (tail.sampledElement.get() == element) {
+                long latency = System.nanoTime() - tail.sampledTime.getAcquire();
+                if (tail.sampledElement.compareAndSet(element, null)) {
+                    histogram.recordValueWithExpectedInterval(latency, expectedInterval);
+                }
+                return;
+            }
+        }
+    }
+
+
+    private static final class ProbedTail<T> implements QueueTail<T> {
+
+        private final LatencyProbe probe;
+        private final QueueTail<T> tail;
+        private final int sampleRate;
+        private final AlignedLong sampledTime;
+        private final AtomicReference<Object> sampledElement;
+
+        private int untilSample;
+        private Object rejectedElement;
+        private long rejectedTime;
+
+        private ProbedTail(LatencyProbe probe, QueueTail<T> tail) {
+            this.probe = probe;
+            this.tail = tail;
+
+            sampleRate = probe.sampleRate;
+            sampledTime = new AlignedLong();
+            sampledElement = new AtomicReference<>();
+            untilSample = sampleRate;
+        }
+
+        @Override
+        public boolean addToTail(T element) {
+            // sample is started before the element becomes visible to consumers
+            long time = startSample(element);
+            if (tail.addToTail(element)) {
+                rejectedElement = null;
+                return true;
+            }
+
+            if (time != 0) {
+                cancelSample(element, time);
+            }
+            return false;
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            // only the first element of a batch could be sampled
+            T element = elements[offset];
+            long time = startSample(element);
+            int count = tail.addAllToTail(elements, offset, length);
+            if (count > 0) {
+                rejectedElement = null;
+            } else if (time != 0) {
+                cancelSample(element, time);
+            }
+
+            untilSample = Math.max(1, untilSample - (count - 1));
+            return count;
+        }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            long time = startSample(element);
+            try {
+                tail.addToTail(element, timeout, timeUnit);
+            } catch (TimeoutException | InterruptedException e) {
+                if (time != 0) {
+                    cancelSample(element, time);
+                }
+                throw e;
+            }
+
+            rejectedElement = null;
+        }
+
+        private long startSample(T element) {
+            if (element == null) {
+                return 0;
+            }
+
+            // retry of rejected sample keeps time of the first attempt
+            boolean retry = element == rejectedElement;
+            if (!retry && --untilSample > 0) {
+                return 0;
+            }
+
+            if (sampledElement.get() != null) {
+                return 0;
+            }
+
+            long time = retry ? rejectedTime : System.nanoTime();
+            untilSample = sampleRate;
+            // slot is empty so no consumer reads the time while it is written
+            sampledTime.setRelease(time);
+            sampledElement.lazySet(element);
+            return time;
+        }
+
+        private void cancelSample(T element, long time) {
+            sampledElement.compareAndSet(element, null);
+            rejectedElement = element;
+            rejectedTime = time;
+        }
+    }
+
+
+    private static final class ProbedHead<T> implements QueueHead<T> {
+
+        private final LatencyProbe probe;
+        private final QueueHead<T> head;
+
+        private ProbedHead(LatencyProbe probe, QueueHead<T> head) {
+            this.probe = probe;
+            this.head = head;
+        }
+
+        @Override
+        public T removeFromHead() {
+            T element = head.removeFromHead();
+            probe.finishSample(element);
+            return element;
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            int count = head.removeFromHead(elements, offset, length);
+            for (int i = 0; i < count; i++) {
+                probe.finishSample(elements[offset + i]);
+            }
+            return count;
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            T element = head.removeFromHead(timeout, timeUnit);
+            probe.finishSample(element);
+            return element;
+        }
+    }
+}
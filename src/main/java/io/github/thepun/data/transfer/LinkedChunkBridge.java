@@ -15,9 +15,13 @@
  */
 package io.github.thepun.data.transfer;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import io.github.thepun.unsafe.ArrayMemory;
+import io.github.thepun.unsafe.MemoryFence;
 import io.github.thepun.unsafe.SystemTypeSizes;
 
 
@@ -35,8 +39,9 @@ import io.github.thepun.unsafe.SystemTypeSizes;
  * LIMITATIONS:
  * 1. Unbounded
  * 2. No guaranties on behavior outside of initial producer/consumer threads
- * 3. Latency can significantly plunge during buffer allocation (after each ~1K elements)
- * 4. Works only with architecture with strong memory consistency (i.e. x86)
+ * 3. Latency can significantly plunge during buffer allocation (after each chunk of elements)
+ *
+ * Chunk size is 1024 by default. Empty chunks are recycled by the queue itself or by a {@link ChunkPool} shared with other queues.
  *
  * @param <T> type of objects to store
  */
@@ -45,21 +50,58 @@ public final class LinkedChunkBridge<T> implements QueueHead<T>, QueueTail<T> {
     // TODO: align local variables
 
 
-    private static final int LINKED_BUNCH_SIZE = 1024;
-    private static final int LINKED_FIRST_OFFSET_INDEX = LINKED_BUNCH_SIZE;
     private static final int LINKED_FIRST_ITEM_INDEX = 1;
     private static final int LINKED_SECOND_ITEM_INDEX = 2;
+    private static final int LINKED_REF_TO_NEXT_INDEX = 0;
     private static final long LINKED_FIRST_ITEM_INDEX_ADDRESS = ArrayMemory.firstElementOffset() + SystemTypeSizes.referenceSize();
     private static final long LINKED_REF_TO_NEXT_INDEX_ADDRESS = ArrayMemory.firstElementOffset();
-    private static final Object[] LINKED_NULLS_BUNCH = new Object[LINKED_BUNCH_SIZE];
 
 
+    // index after the last element of a bunch is equal to its size
+    private final int linkedFirstOffsetIndex;
+    private final ChunkPool pool;
     private final AlignedBunch head;
     private final AlignedBunch tail;
     private final AtomicReference<Object[]> emptyChain;
+    private final WaitStrategy waitStrategy;
 
     public LinkedChunkBridge() {
-        Object[] firstBunch = new Object[LINKED_BUNCH_SIZE];
+        this(BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public LinkedChunkBridge(WaitStrategy waitStrategy) {
+        this(ChunkPool.DEFAULT_CHUNK_SIZE, waitStrategy);
+    }
+
+    public LinkedChunkBridge(int chunkSize) {
+        this(chunkSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public LinkedChunkBridge(int chunkSize, WaitStrategy waitStrategy) {
+        this(chunkSize, null, waitStrategy);
+    }
+
+    public LinkedChunkBridge(ChunkPool pool) {
+        this(pool, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public LinkedChunkBridge(ChunkPool pool, WaitStrategy waitStrategy) {
+        this(ChunkPool.chunkSizeOf(pool), pool, waitStrategy);
+    }
+
+    private LinkedChunkBridge(int chunkSize, ChunkPool pool, WaitStrategy waitStrategy) {
+        if (chunkSize < ChunkPool.MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size should be at least " + ChunkPool.MIN_CHUNK_SIZE);
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        this.pool = pool;
+        linkedFirstOffsetIndex = chunkSize;
+
+        Object[] firstBunch = pool == null ? new Object[chunkSize] : pool.take();
         head = new AlignedBunch();
         tail = new AlignedBunch();
         head.bunch = firstBunch;
@@ -67,81 +109,179 @@ public final class LinkedChunkBridge<T> implements QueueHead<T>, QueueTail<T> {
         head.index = LINKED_FIRST_ITEM_INDEX;
         tail.index = LINKED_FIRST_ITEM_INDEX;
         emptyChain = new AtomicReference<>();
+        this.waitStrategy = waitStrategy;
     }
 
     @Override
     public boolean addToTail(T element) {
         int localIndex = tail.index;
         Object[] localBunch = tail.bunch;
-        if (localIndex == LINKED_FIRST_OFFSET_INDEX) {
-            Object[] localEmptyChain = tail.emptyChain;
-            if (localEmptyChain == null) {
-                Object[] newChain = emptyChain.getAndSet(null);
-                if (newChain == null) {
-                    newChain = new Object[LINKED_BUNCH_SIZE];
-                }
-
-                localEmptyChain = newChain;
-            }
-
-            tail.emptyChain = (Object[]) ArrayMemory.getObject(localEmptyChain, LINKED_REF_TO_NEXT_INDEX_ADDRESS);
-            ArrayMemory.setObject(localEmptyChain, LINKED_REF_TO_NEXT_INDEX_ADDRESS, null);
+        if (localIndex == linkedFirstOffsetIndex) {
+            Object[] localEmptyChain = takeTailBunch();
             ArrayMemory.setObject(localEmptyChain, LINKED_FIRST_ITEM_INDEX_ADDRESS, element);
-            ArrayMemory.setObject(localBunch, LINKED_REF_TO_NEXT_INDEX_ADDRESS, localEmptyChain);
+            ArrayAccess.setRelease(localBunch, LINKED_REF_TO_NEXT_INDEX, localEmptyChain);
             tail.bunch = localEmptyChain;
             tail.index = LINKED_SECOND_ITEM_INDEX;
+            waitStrategy.signal();
             return true;
         }
 
-        ArrayMemory.setObject(localBunch, localIndex, element);
+        ArrayAccess.setRelease(localBunch, localIndex, element);
         tail.index = localIndex + 1;
+        waitStrategy.signal();
         return true;
     }
 
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        int localIndex = tail.index;
+        Object[] localBunch = tail.bunch;
+
+        int count = 0;
+        while (count < length) {
+            if (localIndex == linkedFirstOffsetIndex) {
+                Object[] localEmptyChain = takeTailBunch();
+
+                // fill new bunch before it becomes visible to reader
+                int bunchCount = Math.min(length - count, linkedFirstOffsetIndex - LINKED_FIRST_ITEM_INDEX);
+                System.arraycopy(elements, offset + count, localEmptyChain, LINKED_FIRST_ITEM_INDEX, bunchCount);
+                ArrayAccess.setRelease(localBunch, LINKED_REF_TO_NEXT_INDEX, localEmptyChain);
+
+                localBunch = localEmptyChain;
+                localIndex = LINKED_FIRST_ITEM_INDEX + bunchCount;
+                count += bunchCount;
+            } else {
+                // elements are read one by one so a fence before the copy is enough
+                int bunchCount = Math.min(length - count, linkedFirstOffsetIndex - localIndex);
+                MemoryFence.store();
+                System.arraycopy(elements, offset + count, localBunch, localIndex, bunchCount);
+
+                localIndex += bunchCount;
+                count += bunchCount;
+            }
+        }
+
+        tail.bunch = localBunch;
+        tail.index = localIndex;
+        waitStrategy.signal();
+        return count;
+    }
+
     @Override
     public T removeFromHead() {
         int localIndex = head.index;
         Object[] localBunch = head.bunch;
-        if (localIndex == LINKED_FIRST_OFFSET_INDEX) {
-            Object[] oldHeadBunh = localBunch;
-            localBunch = (Object[]) ArrayMemory.getObject(localBunch, LINKED_REF_TO_NEXT_INDEX_ADDRESS);
+        if (localIndex == linkedFirstOffsetIndex) {
+            localBunch = switchHeadBunch(localBunch);
             if (localBunch == null) {
                 // no more bunches at the moment
                 return null;
             }
 
-            // change current bunch to the next one
-            head.bunch = localBunch;
-            head.index = LINKED_FIRST_ITEM_INDEX;
             localIndex = LINKED_FIRST_ITEM_INDEX;
+        }
+
+        Object element = ArrayAccess.getAcquire(localBunch, localIndex);
+        if (element != null) {
+            head.index = localIndex + 1;
+        }
 
-            // clear array from reader thread to be sure about initial state without fences
-            System.arraycopy(LINKED_NULLS_BUNCH, 0, oldHeadBunh, 0, LINKED_BUNCH_SIZE);
+        return (T) element;
+    }
 
-            // check if writer took all freed bunches
-            Object[] prevEmptyChainHead = emptyChain.get();
-            if (prevEmptyChainHead == null) {
-                // we need to cross fence to be able to rely on it
-                emptyChain.lazySet(oldHeadBunh);
-            } else {
-                // add empty bunch to list
-                ArrayMemory.setObject(oldHeadBunh, LINKED_REF_TO_NEXT_INDEX_ADDRESS, prevEmptyChainHead);
-
-                // if writer took empty bunches
-                if (!emptyChain.compareAndSet(prevEmptyChainHead, oldHeadBunh)) {
-                    // ensure initial state is written by reader thread
-                    ArrayMemory.setObject(oldHeadBunh, LINKED_REF_TO_NEXT_INDEX_ADDRESS, null);
-                    // again we need to cross fence to be able to rely on it
-                    emptyChain.lazySet(oldHeadBunh);
+    @Override
+    public int removeFromHead(T[] elements, int offset, int length) {
+        int localIndex = head.index;
+        Object[] localBunch = head.bunch;
+
+        int count = 0;
+        while (count < length) {
+            if (localIndex == linkedFirstOffsetIndex) {
+                Object[] nextBunch = switchHeadBunch(localBunch);
+                if (nextBunch == null) {
+                    // no more bunches at the moment
+                    break;
                 }
+
+                localBunch = nextBunch;
+                localIndex = LINKED_FIRST_ITEM_INDEX;
             }
+
+            Object element = ArrayAccess.getAcquire(localBunch, localIndex);
+            if (element == null) {
+                break;
+            }
+
+            elements[offset + count] = (T) element;
+            localIndex++;
+            count++;
         }
 
-        Object element = ArrayMemory.getObject(localBunch, localIndex);
-        if (element != null) {
-            head.index = localIndex + 1;
+        head.index = localIndex;
+        return count;
+    }
+
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, waitStrategy);
+    }
+
+    private Object[] takeTailBunch() {
+        if (pool != null) {
+            return pool.take();
         }
 
-        return (T) element;
+        Object[] localEmptyChain = tail.emptyChain;
+        if (localEmptyChain == null) {
+            Object[] newChain = emptyChain.getAndSet(null);
+            if (newChain == null) {
+                newChain = new Object[linkedFirstOffsetIndex];
+            }
+
+            localEmptyChain = newChain;
+        }
+
+        tail.emptyChain = (Object[]) ArrayMemory.getObject(localEmptyChain, LINKED_REF_TO_NEXT_INDEX_ADDRESS);
+        ArrayMemory.setObject(localEmptyChain, LINKED_REF_TO_NEXT_INDEX_ADDRESS, null);
+        return localEmptyChain;
+    }
+
+    private Object[] switchHeadBunch(Object[] oldHeadBunh) {
+        Object[] localBunch = (Object[]) ArrayAccess.getAcquire(oldHeadBunh, LINKED_REF_TO_NEXT_INDEX);
+        if (localBunch == null) {
+            return null;
+        }
+
+        // change current bunch to the next one
+        head.bunch = localBunch;
+        head.index = LINKED_FIRST_ITEM_INDEX;
+
+        // clear array from reader thread to be sure about initial state without fences
+        Arrays.fill(oldHeadBunh, null);
+
+        if (pool != null) {
+            pool.release(oldHeadBunh);
+            return localBunch;
+        }
+
+        // check if writer took all freed bunches
+        Object[] prevEmptyChainHead = emptyChain.get();
+        if (prevEmptyChainHead == null) {
+            // we need to cross fence to be able to rely on it
+            emptyChain.lazySet(oldHeadBunh);
+        } else {
+            // add empty bunch to list
+            ArrayMemory.setObject(oldHeadBunh, LINKED_REF_TO_NEXT_INDEX_ADDRESS, prevEmptyChainHead);
+
+            // if writer took empty bunches
+            if (!emptyChain.compareAndSet(prevEmptyChainHead, oldHeadBunh)) {
+                // ensure initial state is written by reader thread
+                ArrayMemory.setObject(oldHeadBunh, LINKED_REF_TO_NEXT_INDEX_ADDRESS, null);
+                // again we need to cross fence to be able to rely on it
+                emptyChain.lazySet(oldHeadBunh);
+            }
+        }
+
+        return localBunch;
     }
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Chunk of primitive long values for linked queues.
+ *
+ * Long values do not have a free value to mark empty slot so the chunk tracks number of published values instead.
+ */
+final class LongBunch {
+
+    final long[] values;
+
+    // written by producer after values
+    int published;
+
+    // written by producer after the next chunk is filled
+    LongBunch next;
+
+    // link in the chain of empty chunks
+    LongBunch nextEmpty;
+
+    LongBunch(int size) {
+        values = new long[size];
+    }
+}
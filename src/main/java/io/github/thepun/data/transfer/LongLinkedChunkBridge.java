@@ -0,0 +1,242 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+
+/**
+ * Single producer / single consumer queue of primitive longs based on linked list.
+ *
+ * Same as {@link LinkedChunkBridge} but stores values in long arrays without boxing.
+ * Since any long value is valid each chunk tracks number of published values instead of checking slots for null.
+ *
+ * GUARANTIES:
+ * 1. Wait-free
+ * 2. Almost no atomic operations (only during buffer allocation once in ~1K elements)
+ * 3. FIFO order
+ * 4. Do not produce garbage
+ *
+ * LIMITATIONS:
+ * 1. Unbounded
+ * 2. No guaranties on behavior outside of initial producer/consumer threads
+ */
+public final class LongLinkedChunkBridge implements LongQueueHead, LongQueueTail {
+
+    private static final int LINKED_BUNCH_SIZE = 1024;
+
+
+    private final AlignedLongBunch head;
+    private final AlignedLongBunch tail;
+    private final AtomicReference<LongBunch> emptyChain;
+    private final WaitStrategy waitStrategy;
+
+    public LongLinkedChunkBridge() {
+        this(BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public LongLinkedChunkBridge(WaitStrategy waitStrategy) {
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        LongBunch firstBunch = new LongBunch(LINKED_BUNCH_SIZE);
+        head = new AlignedLongBunch();
+        tail = new AlignedLongBunch();
+        head.bunch = firstBunch;
+        tail.bunch = firstBunch;
+        head.values = firstBunch.values;
+        tail.values = firstBunch.values;
+        emptyChain = new AtomicReference<>();
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean addToTail(long element) {
+        int localIndex = tail.index;
+        LongBunch localBunch = tail.bunch;
+        if (localIndex == LINKED_BUNCH_SIZE) {
+            LongBunch newBunch = takeTailBunch();
+            newBunch.values[0] = element;
+            newBunch.published = 1;
+            MemoryFence.store();
+            localBunch.next = newBunch;
+            tail.bunch = newBunch;
+            tail.values = newBunch.values;
+            tail.index = 1;
+            waitStrategy.signal();
+            return true;
+        }
+
+        tail.values[localIndex] = element;
+        MemoryFence.store();
+        localBunch.published = localIndex + 1;
+        tail.index = localIndex + 1;
+        waitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    public int addAllToTail(long[] elements, int offset, int length) {
+        int localIndex = tail.index;
+        LongBunch localBunch = tail.bunch;
+
+        int count = 0;
+        while (count < length) {
+            if (localIndex == LINKED_BUNCH_SIZE) {
+                LongBunch newBunch = takeTailBunch();
+
+                // fill new bunch before it becomes visible to reader
+                int bunchCount = Math.min(length - count, LINKED_BUNCH_SIZE);
+                System.arraycopy(elements, offset + count, newBunch.values, 0, bunchCount);
+                newBunch.published = bunchCount;
+                MemoryFence.store();
+                localBunch.next = newBunch;
+
+                localBunch = newBunch;
+                localIndex = bunchCount;
+                count += bunchCount;
+            } else {
+                int bunchCount = Math.min(length - count, LINKED_BUNCH_SIZE - localIndex);
+                System.arraycopy(elements, offset + count, localBunch.values, localIndex, bunchCount);
+                localIndex += bunchCount;
+                MemoryFence.store();
+                localBunch.published = localIndex;
+
+                count += bunchCount;
+            }
+        }
+
+        tail.bunch = localBunch;
+        tail.values = localBunch.values;
+        tail.index = localIndex;
+        waitStrategy.signal();
+        return count;
+    }
+
+    @Override
+    public long removeFromHead() {
+        int localIndex = head.index;
+        if (localIndex == head.published) {
+            if (!refreshHead()) {
+                return EMPTY;
+            }
+
+            localIndex = head.index;
+        }
+
+        long element = head.values[localIndex];
+        head.index = localIndex + 1;
+        return element;
+    }
+
+    @Override
+    public int removeFromHead(long[] elements, int offset, int length) {
+        int count = 0;
+        while (count < length) {
+            int localIndex = head.index;
+            int available = head.published - localIndex;
+            if (available == 0) {
+                if (!refreshHead()) {
+                    // no more elements at the moment
+                    break;
+                }
+
+                continue;
+            }
+
+            int bunchCount = Math.min(length - count, available);
+            System.arraycopy(head.values, localIndex, elements, offset + count, bunchCount);
+            head.index = localIndex + bunchCount;
+            count += bunchCount;
+        }
+
+        return count;
+    }
+
+    @Override
+    public long removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, waitStrategy);
+    }
+
+    private boolean refreshHead() {
+        LongBunch localBunch = head.bunch;
+        int localIndex = head.index;
+        if (localIndex == LINKED_BUNCH_SIZE) {
+            LongBunch nextBunch = localBunch.next;
+            if (nextBunch == null) {
+                return false;
+            }
+
+            // next bunch is linked only after it is filled
+            MemoryFence.load();
+            head.bunch = nextBunch;
+            head.values = nextBunch.values;
+            head.index = 0;
+            head.published = nextBunch.published;
+
+            recycleHeadBunch(localBunch);
+            return true;
+        }
+
+        int published = localBunch.published;
+        MemoryFence.load();
+        head.published = published;
+        return localIndex < published;
+    }
+
+    private LongBunch takeTailBunch() {
+        LongBunch localEmptyChain = tail.emptyChain;
+        if (localEmptyChain == null) {
+            LongBunch newChain = emptyChain.getAndSet(null);
+            if (newChain == null) {
+                newChain = new LongBunch(LINKED_BUNCH_SIZE);
+            }
+
+            localEmptyChain = newChain;
+        }
+
+        tail.emptyChain = localEmptyChain.nextEmpty;
+        localEmptyChain.nextEmpty = null;
+        return localEmptyChain;
+    }
+
+    private void recycleHeadBunch(LongBunch oldHeadBunch) {
+        // reset from reader thread to be sure about initial state without fences
+        oldHeadBunch.published = 0;
+        oldHeadBunch.next = null;
+
+        // check if writer took all freed bunches
+        LongBunch prevEmptyChainHead = emptyChain.get();
+        if (prevEmptyChainHead == null) {
+            // we need to cross fence to be able to rely on it
+            emptyChain.lazySet(oldHeadBunch);
+        } else {
+            // add empty bunch to list
+            oldHeadBunch.nextEmpty = prevEmptyChainHead;
+
+            // if writer took empty bunches
+            if (!emptyChain.compareAndSet(prevEmptyChainHead, oldHeadBunch)) {
+                oldHeadBunch.nextEmpty = null;
+                emptyChain.lazySet(oldHeadBunch);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Consumer's entry point interface for queues of primitive longs.
+ *
+ * Same as {@link QueueHead} but without boxing. Absence of element is reported with {@link #EMPTY} value
+ * so producers should not add it if they use single element remove. Batch remove has no such limitation.
+ */
+public interface LongQueueHead {
+
+    /**
+     * Value returned if there is no element in the queue
+     */
+    long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Remove and return element from the head of the queue
+     *
+     * @return head element or {@link #EMPTY}
+     */
+    long removeFromHead();
+
+    /**
+     * Remove elements from the head of the queue into the array.
+     *
+     * @param elements - array to fill from the first index
+     * @return number of removed elements
+     */
+    default int removeFromHead(long[] elements) {
+        return removeFromHead(elements, 0, elements.length);
+    }
+
+    /**
+     * Remove up to length elements from the head of the queue into the array.
+     *
+     * @param elements - array to fill
+     * @param offset - index in the array to start from
+     * @param length - maximum number of elements to remove
+     * @return number of removed elements
+     */
+    int removeFromHead(long[] elements, int offset, int length);
+
+    /**
+     * Remove and return element from the head of the queue.
+     * If there is now element then wait until it comes.
+     *
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @return element
+     * @throws TimeoutException
+     */
+    default long removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    /**
+     * Remove and return element from the head of the queue.
+     * If there is now element then wait until it comes using provided strategy between attempts.
+     *
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @param waitStrategy - strategy to wait with
+     * @return element
+     * @throws TimeoutException
+     */
+    default long removeFromHead(long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+        long element = removeFromHead();
+        if (element != EMPTY) {
+            return element;
+        }
+
+        // deadline is compared by difference so overflow is fine
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        // spinning strategy would occupy carrier of a virtual thread
+        WaitStrategy localWaitStrategy = ThreadSupport.waitStrategyFor(waitStrategy);
+
+        int attempt = 0;
+        try {
+            for (;;) {
+                localWaitStrategy.idle(attempt, deadline);
+                if (attempt != Integer.MAX_VALUE) {
+                    attempt++;
+                }
+
+                element = removeFromHead();
+                if (element != EMPTY) {
+                    return element;
+                }
+
+                if ((attempt & 0x3F) == 0 || attempt == Integer.MAX_VALUE) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TimeoutException();
+                    }
+
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        } finally {
+            localWaitStrategy.finish(attempt);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Producer's entry point interface for queues of primitive longs.
+ *
+ * Same as {@link QueueTail} but without boxing.
+ */
+public interface LongQueueTail {
+
+    boolean addToTail(long element);
+
+    /**
+     * Add elements from the array to the tail of the queue.
+     *
+     * @param elements - array of elements to add starting from the first index
+     * @return number of added elements
+     */
+    default int addAllToTail(long[] elements) {
+        return addAllToTail(elements, 0, elements.length);
+    }
+
+    /**
+     * Add up to length elements from the array to the tail of the queue preserving their order.
+     * If the queue is full only the first elements are added.
+     *
+     * @param elements - array of elements to add
+     * @param offset - index in the array to start from
+     * @param length - number of elements to add
+     * @return number of added elements
+     */
+    int addAllToTail(long[] elements, int offset, int length);
+
+    /**
+     * Add element to the tail of the queue.
+     * If there is no space then wait until it appears.
+     *
+     * @param element - element to add
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @throws TimeoutException
+     */
+    default void addToTail(long element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    /**
+     * Add element to the tail of the queue.
+     * If there is no space then wait until it appears using provided strategy between attempts.
+     *
+     * @param element - element to add
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @param waitStrategy - strategy to wait with
+     * @throws TimeoutException
+     */
+    default void addToTail(long element, long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+        if (addToTail(element)) {
+            return;
+        }
+
+        // deadline is compared by difference so overflow is fine
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        // spinning strategy would occupy carrier of a virtual thread
+        WaitStrategy localWaitStrategy = ThreadSupport.waitStrategyFor(waitStrategy);
+
+        int attempt = 0;
+        try {
+            for (;;) {
+                localWaitStrategy.idle(attempt, deadline);
+                if (attempt != Integer.MAX_VALUE) {
+                    attempt++;
+                }
+
+                if (addToTail(element)) {
+                    return;
+                }
+
+                if ((attempt & 0x3F) == 0 || attempt == Integer.MAX_VALUE) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TimeoutException();
+                    }
+
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        } finally {
+            localWaitStrategy.finish(attempt);
+        }
+    }
+
+}
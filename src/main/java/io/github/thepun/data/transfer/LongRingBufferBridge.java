@@ -0,0 +1,185 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Single producer / single consumer bounded queue of primitive longs based on ring buffer.
+ *
+ * Same as {@link RingBufferBridge} but stores values in long array without boxing.
+ */
+public final class LongRingBufferBridge implements LongQueueHead, LongQueueTail, HasDepth {
+
+    // TODO: align local variables
+
+    private final int size;
+    private final int mask;
+    private final long[] data;
+    private final AlignedLong readCounter;
+    private final AlignedLong writeCounter;
+    private final AlignedLong localReadCounter;
+    private final AlignedLong localWriteCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    public LongRingBufferBridge(int queueSize) {
+        this(queueSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public LongRingBufferBridge(int queueSize, WaitStrategy waitStrategy) {
+        this(queueSize, waitStrategy, waitStrategy);
+    }
+
+    public LongRingBufferBridge(int queueSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        double log2 = Math.log10(queueSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        data = new long[size];
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        localReadCounter = new AlignedLong();
+        localWriteCounter = new AlignedLong();
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    @Override
+    public long removeFromHead() {
+        long writeIndex = localWriteCounter.get();
+        long readIndex = readCounter.get();
+        if (readIndex >= writeIndex) {
+            writeIndex = writeCounter.getAcquire();
+            localWriteCounter.set(writeIndex);
+
+            if (readIndex >= writeIndex) {
+                return EMPTY;
+            }
+        }
+
+        int index = (int) (readIndex & mask);
+        long element = data[index];
+        readCounter.setRelease(readIndex + 1);
+
+        producerWaitStrategy.signal();
+        return element;
+    }
+
+    @Override
+    public int removeFromHead(long[] elements, int offset, int length) {
+        long writeIndex = localWriteCounter.get();
+        long readIndex = readCounter.get();
+        if (readIndex + length > writeIndex) {
+            writeIndex = writeCounter.getAcquire();
+            localWriteCounter.set(writeIndex);
+
+            if (readIndex >= writeIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, writeIndex - readIndex);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((readIndex + i) & mask);
+            elements[offset + i] = data[index];
+        }
+
+        readCounter.setRelease(readIndex + count);
+
+        producerWaitStrategy.signal();
+        return count;
+    }
+
+    @Override
+    public long removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+    }
+
+    @Override
+    public boolean addToTail(long element) {
+        long readIndex = localReadCounter.get();
+        long writeIndex = writeCounter.get();
+        if (writeIndex >= readIndex + size) {
+            readIndex = readCounter.getAcquire();
+            localReadCounter.set(readIndex);
+
+            if (writeIndex >= readIndex + size) {
+                return false;
+            }
+        }
+
+        int index = (int) (writeIndex & mask);
+        data[index] = element;
+        writeCounter.setRelease(writeIndex + 1);
+
+        consumerWaitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    public void addToTail(long element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+    @Override
+    public int addAllToTail(long[] elements, int offset, int length) {
+        long readIndex = localReadCounter.get();
+        long writeIndex = writeCounter.get();
+        if (writeIndex + length > readIndex + size) {
+            readIndex = readCounter.getAcquire();
+            localReadCounter.set(readIndex);
+
+            if (writeIndex >= readIndex + size) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, readIndex + size - writeIndex);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((writeIndex + i) & mask);
+            data[index] = elements[offset + i];
+        }
+
+        writeCounter.setRelease(writeIndex + count);
+
+        consumerWaitStrategy.signal();
+        return count;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Single producer persistent queue of binary messages stored in memory mapped segment files.
+ *
+ * Each record is an int header followed by the message padded to 8 bytes. Header is the length plus one so zero always
+ * means no more data, even after an empty message. Header is written after the message so a reader never sees partially
+ * written record. Segment which has no space for the next record is closed with {@link #END_OF_SEGMENT} marker
+ * and writing continues in the next file. Readers are independent, see {@link MappedJournalReader}.
+ *
+ * Position in the journal is a global byte offset: segment index * segment size + offset in segment.
+ *
+ * LIMITATIONS:
+ * 1. Only one thread of one process should add messages
+ * 2. Segment size should be the same for the whole life of a journal directory
+ * 3. Mapped segments are released by GC
+ */
+public final class MappedJournal implements QueueTail<ByteBuffer> {
+
+    static final int RECORD_HEADER_SIZE = 4;
+    static final int END_OF_SEGMENT = -1;
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private long segmentIndex;
+    private int writeOffset;
+    private MappedByteBuffer segment;
+    private ByteBuffer segmentWriter;
+
+    /**
+     * Open existing journal or create new one. Writing continues after the last complete record.
+     *
+     * @param directory - directory for segment files
+     * @param segmentSize - size of each segment file in bytes, multiple of 8
+     */
+    public MappedJournal(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < 64 || segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("Segment size should be multiple of 8 and at least 64 bytes");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+
+        long lastSegmentIndex = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long index = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                if (index > lastSegmentIndex) {
+                    lastSegmentIndex = index;
+                }
+            }
+        }
+
+        // crash after the next segment is created but before the marker is written leaves previous segment open
+        if (lastSegmentIndex > 0) {
+            closeSegment(lastSegmentIndex - 1);
+        }
+
+        switchSegment(Math.max(lastSegmentIndex, 0));
+
+        // find the end of written data
+        for (;;) {
+            int header = segment.getInt(writeOffset);
+            if (header == 0) {
+                break;
+            }
+
+            if (header == END_OF_SEGMENT) {
+                switchSegment(segmentIndex + 1);
+                continue;
+            }
+
+            writeOffset += recordSize(messageLength(header));
+        }
+    }
+
+    /**
+     * Append message to the journal. Remaining bytes of the buffer are copied, its position stays the same.
+     *
+     * @param element - message
+     * @return always true
+     */
+    @Override
+    public boolean addToTail(ByteBuffer element) {
+        int length = element.remaining();
+        int recordSize = recordSize(length);
+
+        // always leave space for end of segment marker
+        if (recordSize > segmentSize - 8) {
+            throw new IllegalArgumentException("Message is too large for segment");
+        }
+
+        if (writeOffset + recordSize > segmentSize - 8) {
+            MappedByteBuffer oldSegment = segment;
+            int oldWriteOffset = writeOffset;
+
+            // next segment should exist before readers see the marker
+            try {
+                switchSegment(segmentIndex + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            MemoryFence.store();
+            oldSegment.putInt(oldWriteOffset, END_OF_SEGMENT);
+        }
+
+        int position = element.position();
+        segmentWriter.position(writeOffset + RECORD_HEADER_SIZE);
+        segmentWriter.put(element);
+        element.position(position);
+
+        MemoryFence.store();
+        segment.putInt(writeOffset, recordHeader(length));
+        writeOffset += recordSize;
+        return true;
+    }
+
+    /**
+     * @return position after the last written record
+     */
+    public long position() {
+        return segmentIndex * segmentSize + writeOffset;
+    }
+
+    /**
+     * Flush current segment to the storage device. Without it data survives process crash but not OS crash.
+     */
+    public void force() {
+        segment.force();
+    }
+
+    /**
+     * Delete segment files which contain only data before the position.
+     * Usually called with the minimal committed position of all readers.
+     *
+     * @param position - position before which data is not needed any more
+     */
+    public void deleteSegmentsBefore(long position) throws IOException {
+        long lastIndexToDelete = Math.min(position / segmentSize, segmentIndex) - 1;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long index = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                if (index <= lastIndexToDelete) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void closeSegment(long closedSegmentIndex) throws IOException {
+        if (!Files.exists(segmentPath(directory, closedSegmentIndex))) {
+            return;
+        }
+
+        MappedByteBuffer closedSegment = mapSegment(directory, closedSegmentIndex, segmentSize, true);
+
+        int offset = 0;
+        for (;;) {
+            int header = closedSegment.getInt(offset);
+            if (header == END_OF_SEGMENT) {
+                return;
+            }
+
+            if (header == 0) {
+                closedSegment.putInt(offset, END_OF_SEGMENT);
+                closedSegment.force();
+                return;
+            }
+
+            offset += recordSize(messageLength(header));
+        }
+    }
+
+    private void switchSegment(long newSegmentIndex) throws IOException {
+        segment = mapSegment(directory, newSegmentIndex, segmentSize, true);
+        segmentWriter = segment.duplicate();
+        segmentIndex = newSegmentIndex;
+        writeOffset = 0;
+    }
+
+    static int recordHeader(int length) {
+        return length + 1;
+    }
+
+    static int messageLength(int header) {
+        return header - 1;
+    }
+
+    static int recordSize(int length) {
+        return (RECORD_HEADER_SIZE + length + 7) & ~7;
+    }
+
+    static Path segmentPath(Path directory, long segmentIndex) {
+        return directory.resolve(String.format("%020d%s", segmentIndex, SEGMENT_SUFFIX));
+    }
+
+    static MappedByteBuffer mapSegment(Path directory, long segmentIndex, int segmentSize, boolean write) throws IOException {
+        Path path = segmentPath(directory, segmentIndex);
+
+        MappedByteBuffer buffer;
+        if (write) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        } else {
+            if (!Files.exists(path)) {
+                return null;
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() < segmentSize) {
+                    // writer is still creating it
+                    return null;
+                }
+
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            }
+        }
+
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Reader of {@link MappedJournal} with its own position.
+ *
+ * Position is kept in memory mapped file named after the reader so a reader created with the same name after restart
+ * continues from the last committed position. Messages removed after the last commit are read again.
+ * Any number of readers can read the same journal independently, also from other processes.
+ *
+ * Returned buffers are read-only views of the mapped segment, nothing is copied.
+ *
+ * LIMITATIONS:
+ * 1. Instance should be used by single thread
+ * 2. Segment size should be the same as the journal's one
+ */
+public final class MappedJournalReader implements QueueHead<ByteBuffer> {
+
+    static final String POSITION_SUFFIX = ".position";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final MappedByteBuffer committedPosition;
+
+    private long segmentIndex;
+    private int readOffset;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param directory - directory of the journal
+     * @param segmentSize - segment size of the journal
+     * @param name - name of the reader to store its position with
+     */
+    public MappedJournalReader(Path directory, int segmentSize, String name) throws IOException {
+        if (segmentSize < 64 || segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("Segment size should be multiple of 8 and at least 64 bytes");
+        }
+
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Reader name should be specified");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+
+        Path positionPath = directory.resolve(name + POSITION_SUFFIX);
+        try (FileChannel channel = FileChannel.open(positionPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            committedPosition = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        }
+        committedPosition.order(ByteOrder.nativeOrder());
+
+        long position = committedPosition.getLong(0);
+        segmentIndex = position / segmentSize;
+        readOffset = (int) (position % segmentSize);
+        segment = MappedJournal.mapSegment(directory, segmentIndex, segmentSize, false);
+    }
+
+    @Override
+    public ByteBuffer removeFromHead() {
+        for (;;) {
+            MappedByteBuffer localSegment = segment;
+            if (localSegment == null) {
+                localSegment = mapSegment();
+                if (localSegment == null) {
+                    return null;
+                }
+            }
+
+            int header = localSegment.getInt(readOffset);
+            if (header == 0) {
+                return null;
+            }
+
+            MemoryFence.load();
+
+            if (header == MappedJournal.END_OF_SEGMENT) {
+                segmentIndex++;
+                readOffset = 0;
+                segment = null;
+                continue;
+            }
+
+            int length = MappedJournal.messageLength(header);
+            int messageOffset = readOffset + MappedJournal.RECORD_HEADER_SIZE;
+            ByteBuffer message = localSegment.duplicate();
+            message.limit(messageOffset + length);
+            message.position(messageOffset);
+
+            readOffset += MappedJournal.recordSize(length);
+            return message.slice().asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * @return position after the last removed message
+     */
+    public long position() {
+        return segmentIndex * segmentSize + readOffset;
+    }
+
+    /**
+     * Remember current position so a reader with the same name continues from it after restart.
+     */
+    public void commit() {
+        committedPosition.putLong(0, position());
+    }
+
+    private MappedByteBuffer mapSegment() {
+        try {
+            segment = MappedJournal.mapSegment(directory, segmentIndex, segmentSize, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return segment;
+    }
+}
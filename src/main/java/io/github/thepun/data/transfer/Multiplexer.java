@@ -15,7 +15,7 @@
  */
 package io.github.thepun.data.transfer;
 
-public interface Multiplexer<T> extends QueueHead<T> {
+public interface Multiplexer<T> extends QueueHead<T>, HasProducers<T> {
 
     /**
      * Created producer entry point. Should be executed once per each producer thread and used from that thread.
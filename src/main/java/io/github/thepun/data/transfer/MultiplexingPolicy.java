@@ -0,0 +1,44 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Order in which a multiplexer takes elements from its producers.
+ */
+public enum MultiplexingPolicy {
+
+    /**
+     * Stay with the last non-empty producer while it has elements. Fastest, but could starve other producers.
+     */
+    UNFAIR,
+
+    /**
+     * Take one element from each non-empty producer in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Take up to weight elements from each non-empty producer in turn.
+     */
+    WEIGHTED,
+
+    /**
+     * Take elements from producers of higher priority first, producers of the same priority are taken in turn.
+     * Producers of lower priority wait while there are elements of higher priority.
+     */
+    PRIORITY
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer's entry point interface for off-heap queues of fixed-size binary messages.
+ *
+ * Message is read in place: claim a slot, read it with absolute get methods of {@link #buffer()} and release.
+ */
+public interface OffHeapHead {
+
+    /**
+     * Buffer with all the slots of the queue.
+     * Only absolute get / put methods should be used since the buffer is shared.
+     *
+     * @return buffer in native byte order
+     */
+    ByteBuffer buffer();
+
+    /**
+     * @return size of each slot in bytes
+     */
+    int slotSize();
+
+    /**
+     * Claim next published slot for reading. Claiming again before release returns the same slot.
+     *
+     * @return offset of the slot in the buffer or -1 if the queue is empty
+     */
+    int claimHead();
+
+    /**
+     * Return previously claimed slot to producers.
+     *
+     * @throws IllegalStateException if there is no claimed slot
+     */
+    void releaseHead();
+
+}
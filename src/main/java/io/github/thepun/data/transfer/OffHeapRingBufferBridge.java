@@ -0,0 +1,153 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Single producer / single consumer bounded queue of fixed-size binary messages stored in direct memory.
+ *
+ * Same counters as {@link RingBufferBridge} but slots are regions of a direct buffer which are written and read in place.
+ * There are no references in the buffer so it is invisible for GC and nothing is allocated per message.
+ */
+public final class OffHeapRingBufferBridge implements OffHeapHead, OffHeapTail, HasDepth {
+
+    // TODO: align local variables
+
+    private final int size;
+    private final int mask;
+    private final int slotSize;
+    private final ByteBuffer data;
+    private final AlignedLong readCounter;
+    private final AlignedLong writeCounter;
+    private final AlignedLong localReadCounter;
+    private final AlignedLong localWriteCounter;
+    private final AlignedLong claimedReadIndex;
+    private final AlignedLong claimedWriteIndex;
+
+    /**
+     * @param queueSize - number of slots, rounded up to power of two
+     * @param slotSize - size of slot in bytes, rounded up to multiple of 8
+     */
+    public OffHeapRingBufferBridge(int queueSize, int slotSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("Slot size should be greater then zero");
+        }
+
+        double log2 = Math.log10(queueSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        this.slotSize = (slotSize + 7) & ~7;
+
+        long capacity = (long) size * this.slotSize;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer is too large");
+        }
+
+        data = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        localReadCounter = new AlignedLong();
+        localWriteCounter = new AlignedLong();
+        claimedReadIndex = new AlignedLong();
+        claimedWriteIndex = new AlignedLong();
+        claimedReadIndex.set(-1);
+        claimedWriteIndex.set(-1);
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    @Override
+    public ByteBuffer buffer() {
+        return data;
+    }
+
+    @Override
+    public int slotSize() {
+        return slotSize;
+    }
+
+    @Override
+    public int claimTail() {
+        long readIndex = localReadCounter.get();
+        long writeIndex = writeCounter.get();
+        if (writeIndex >= readIndex + size) {
+            readIndex = readCounter.getAcquire();
+            localReadCounter.set(readIndex);
+
+            if (writeIndex >= readIndex + size) {
+                return -1;
+            }
+        }
+
+        claimedWriteIndex.set(writeIndex);
+        return (int) (writeIndex & mask) * slotSize;
+    }
+
+    @Override
+    public void commitTail() {
+        long writeIndex = writeCounter.get();
+        if (claimedWriteIndex.get() != writeIndex) {
+            throw new IllegalStateException("Slot is not claimed");
+        }
+
+        writeCounter.setRelease(writeIndex + 1);
+    }
+
+    @Override
+    public int claimHead() {
+        long writeIndex = localWriteCounter.get();
+        long readIndex = readCounter.get();
+        if (readIndex >= writeIndex) {
+            writeIndex = writeCounter.getAcquire();
+            localWriteCounter.set(writeIndex);
+
+            if (readIndex >= writeIndex) {
+                return -1;
+            }
+        }
+
+        claimedReadIndex.set(readIndex);
+        return (int) (readIndex & mask) * slotSize;
+    }
+
+    @Override
+    public void releaseHead() {
+        long readIndex = readCounter.get();
+        if (claimedReadIndex.get() != readIndex) {
+            throw new IllegalStateException("Slot is not claimed");
+        }
+
+        readCounter.setRelease(readIndex + 1);
+    }
+}
@@ -0,0 +1,409 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Multiple producers / multiple consumers bounded queue of fixed-size binary messages stored in direct memory.
+ *
+ * Same protocol as {@link RingBufferRouter} split into two steps: producer keeps its counter in progress from claim till commit
+ * so consumers do not pass the slot, consumer keeps its counter in progress from claim till release so producers do not overwrite it.
+ */
+public final class OffHeapRingBufferRouter implements HasDepth {
+
+    // TODO: align consumers/producers
+
+    private final int size;
+    private final int mask;
+    private final int slotSize;
+    private final ByteBuffer data;
+    private final AlignedLong readCounter;
+    private final AlignedLong writeCounter;
+
+    private AlignedLong[] consumerCounters;
+    private AlignedLong[] producerCounters;
+    private OffHeapConsumer[] consumers;
+    private OffHeapProducer[] producers;
+
+    /**
+     * @param bufferSize - number of slots, rounded up to power of two
+     * @param slotSize - size of slot in bytes, rounded up to multiple of 8
+     */
+    public OffHeapRingBufferRouter(int bufferSize, int slotSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("Slot size should be greater then zero");
+        }
+
+        double log2 = Math.log10(bufferSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        this.slotSize = (slotSize + 7) & ~7;
+
+        long capacity = (long) size * this.slotSize;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer is too large");
+        }
+
+        data = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+        readCounter = new AlignedLong();
+        writeCounter = new AlignedLong();
+        consumerCounters = new AlignedLong[0];
+        producerCounters = new AlignedLong[0];
+        consumers = new OffHeapConsumer[0];
+        producers = new OffHeapProducer[0];
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    public synchronized OffHeapTail createProducer() {
+        OffHeapProducer[] oldProducers = producers;
+        OffHeapProducer[] newProducers = Arrays.copyOf(oldProducers, oldProducers.length + 1);
+        OffHeapProducer producer = new OffHeapProducer(this);
+        newProducers[oldProducers.length] = producer;
+        updateProducers(newProducers);
+        return producer;
+    }
+
+    public synchronized OffHeapHead createConsumer() {
+        OffHeapConsumer[] oldConsumers = consumers;
+        OffHeapConsumer[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
+        OffHeapConsumer consumer = new OffHeapConsumer(this);
+        newConsumers[oldConsumers.length] = consumer;
+        updateConsumers(newConsumers);
+        return consumer;
+    }
+
+    public synchronized void destroyProducer(OffHeapTail producer) {
+        if (!(producer instanceof OffHeapProducer)) {
+            throw new IllegalArgumentException("Wrong producer");
+        }
+
+        OffHeapProducer producerSubqueue = (OffHeapProducer) producer;
+        if (producerSubqueue.parent != this) {
+            throw new IllegalArgumentException("Producer from another router");
+        }
+
+        OffHeapProducer[] newProducers;
+        OffHeapProducer[] oldProducers;
+
+        oldProducers = producers;
+        int index = -1;
+        for (int i = 0; i < oldProducers.length; i++) {
+            if (oldProducers[i] == producer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Producer not found");
+        }
+
+        newProducers = new OffHeapProducer[oldProducers.length - 1];
+        System.arraycopy(oldProducers, 0, newProducers, 0, index);
+        System.arraycopy(oldProducers, index + 1, newProducers, index, oldProducers.length - (index + 1));
+        updateProducers(newProducers);
+    }
+
+    public synchronized void destroyConsumer(OffHeapHead consumer) {
+        if (!(consumer instanceof OffHeapConsumer)) {
+            throw new IllegalArgumentException("Wrong consumer");
+        }
+
+        OffHeapConsumer consumerSubqueue = (OffHeapConsumer) consumer;
+        if (consumerSubqueue.parent != this) {
+            throw new IllegalArgumentException("Consumer from another router");
+        }
+
+        OffHeapConsumer[] newConsumers;
+        OffHeapConsumer[] oldConsumers;
+
+        oldConsumers = consumers;
+        int index = -1;
+        for (int i = 0; i < oldConsumers.length; i++) {
+            if (oldConsumers[i] == consumer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Consumer not found");
+        }
+
+        newConsumers = new OffHeapConsumer[oldConsumers.length - 1];
+        System.arraycopy(oldConsumers, 0, newConsumers, 0, index);
+        System.arraycopy(oldConsumers, index + 1, newConsumers, index, oldConsumers.length - (index + 1));
+        updateConsumers(newConsumers);
+    }
+
+    private void updateProducers(OffHeapProducer[] newProducers) {
+        producers = newProducers;
+
+        AlignedLong[] newProducerCounters = new AlignedLong[newProducers.length];
+        for (int i = 0; i < newProducers.length; i++) {
+            newProducerCounters[i] = newProducers[i].producerWriteCounter;
+        }
+
+        producerCounters = newProducerCounters;
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i].producers = newProducerCounters;
+        }
+    }
+
+    private void updateConsumers(OffHeapConsumer[] newConsumers) {
+        consumers = newConsumers;
+
+        AlignedLong[] newConsumerCounters = new AlignedLong[newConsumers.length];
+        for (int i = 0; i < newConsumers.length; i++) {
+            newConsumerCounters[i] = newConsumers[i].consumerReadCounter;
+        }
+
+        consumerCounters = newConsumerCounters;
+        for (int i = 0; i < producers.length; i++) {
+            producers[i].consumers = newConsumerCounters;
+        }
+    }
+
+
+    private static final class OffHeapProducer implements OffHeapTail {
+
+        private final int size;
+        private final int mask;
+        private final int slotSize;
+        private final ByteBuffer data;
+        private final AlignedLong writeCounter;
+        private final AlignedLong producerWriteCounter;
+        private final AlignedLong readCounter;
+
+        private AlignedLong[] consumers;
+        private long producerReadCounter;
+        private long claimedWriteIndex;
+
+        private final OffHeapRingBufferRouter parent;
+
+        // gap
+        private Object t1, t2;
+
+        private OffHeapProducer(OffHeapRingBufferRouter parent) {
+            this.parent = parent;
+
+            size = parent.size;
+            mask = parent.mask;
+            slotSize = parent.slotSize;
+            data = parent.data.duplicate().order(ByteOrder.nativeOrder());
+            consumers = parent.consumerCounters;
+            readCounter = parent.readCounter;
+            writeCounter = parent.writeCounter;
+
+            producerWriteCounter = new AlignedLong();
+            producerWriteCounter.set(Long.MAX_VALUE);
+            claimedWriteIndex = -1;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return data;
+        }
+
+        @Override
+        public int slotSize() {
+            return slotSize;
+        }
+
+        @Override
+        public int claimTail() {
+            long writeIndex = claimedWriteIndex;
+            if (writeIndex >= 0) {
+                return (int) (writeIndex & mask) * slotSize;
+            }
+
+            int localSize = size;
+            long readIndex = producerReadCounter;
+            AlignedLong localWriteCounter = writeCounter;
+            AlignedLong localProducerWriteCounter = producerWriteCounter;
+
+            writeIndex = localWriteCounter.get();
+            long readIndexPlusSize = readIndex + localSize;
+            if (writeIndex >= readIndexPlusSize) {
+                AlignedLong[] localConsumers = consumers;
+                AlignedLong localReadCounter = readCounter;
+
+                readIndex = localReadCounter.getAcquire();
+                for (int i = 0; i < localConsumers.length; i++) {
+                    long localReadCounterFromConsumer = localConsumers[i].getAcquire();
+                    if (readIndex > localReadCounterFromConsumer) {
+                        readIndex = localReadCounterFromConsumer;
+                    }
+                }
+                producerReadCounter = readIndex;
+
+                readIndexPlusSize = readIndex + localSize;
+                if (writeIndex >= readIndexPlusSize) {
+                    return -1;
+                }
+            }
+
+            // slot stays in progress until commit
+            localProducerWriteCounter.setRelease(writeIndex);
+            while (!localWriteCounter.compareAndSwap(writeIndex, writeIndex + 1)) {
+                writeIndex = localWriteCounter.get();
+
+                if (writeIndex >= readIndexPlusSize) {
+                    localProducerWriteCounter.set(Long.MAX_VALUE);
+                    return -1;
+                }
+            }
+
+            claimedWriteIndex = writeIndex;
+            return (int) (writeIndex & mask) * slotSize;
+        }
+
+        @Override
+        public void commitTail() {
+            if (claimedWriteIndex < 0) {
+                throw new IllegalStateException("Slot is not claimed");
+            }
+
+            producerWriteCounter.setRelease(Long.MAX_VALUE);
+            claimedWriteIndex = -1;
+        }
+    }
+
+
+    private static final class OffHeapConsumer implements OffHeapHead {
+
+        // gap
+        private int t1;
+
+        private final int mask;
+        private final int slotSize;
+        private final ByteBuffer data;
+        private final AlignedLong readCounter;
+        private final AlignedLong consumerReadCounter;
+        private final AlignedLong writeCounter;
+
+        private long consumerWriteCounter;
+        private long claimedReadIndex;
+        private AlignedLong[] producers;
+
+        private final OffHeapRingBufferRouter parent;
+
+        // gap
+        private Object t2, t3, t4;
+
+        private OffHeapConsumer(OffHeapRingBufferRouter parent) {
+            this.parent = parent;
+
+            mask = parent.mask;
+            slotSize = parent.slotSize;
+            data = parent.data.duplicate().order(ByteOrder.nativeOrder());
+            producers = parent.producerCounters;
+            readCounter = parent.readCounter;
+            writeCounter = parent.writeCounter;
+
+            consumerReadCounter = new AlignedLong();
+            consumerReadCounter.set(Long.MAX_VALUE);
+            claimedReadIndex = -1;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return data;
+        }
+
+        @Override
+        public int slotSize() {
+            return slotSize;
+        }
+
+        @Override
+        public int claimHead() {
+            long readIndex = claimedReadIndex;
+            if (readIndex >= 0) {
+                return (int) (readIndex & mask) * slotSize;
+            }
+
+            long writeIndex = consumerWriteCounter;
+            AlignedLong localReadCounter = readCounter;
+            AlignedLong localConsumerReadCounter = consumerReadCounter;
+
+            readIndex = localReadCounter.get();
+            if (readIndex >= writeIndex) {
+                AlignedLong[] localProducers = producers;
+                AlignedLong localWriteCounter = writeCounter;
+
+                writeIndex = localWriteCounter.getAcquire();
+                for (int i = 0; i < localProducers.length; i++) {
+                    long localWriteCounterFromProducer = localProducers[i].getAcquire();
+                    if (writeIndex > localWriteCounterFromProducer) {
+                        writeIndex = localWriteCounterFromProducer;
+                    }
+                }
+                consumerWriteCounter = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return -1;
+                }
+            }
+
+            // slot stays in progress until release
+            localConsumerReadCounter.setRelease(readIndex);
+            while (!localReadCounter.compareAndSwap(readIndex, readIndex + 1)) {
+                readIndex = localReadCounter.get();
+
+                if (readIndex >= writeIndex) {
+                    localConsumerReadCounter.set(Long.MAX_VALUE);
+                    return -1;
+                }
+            }
+
+            MemoryFence.load();
+            claimedReadIndex = readIndex;
+            return (int) (readIndex & mask) * slotSize;
+        }
+
+        @Override
+        public void releaseHead() {
+            if (claimedReadIndex < 0) {
+                throw new IllegalStateException("Slot is not claimed");
+            }
+
+            consumerReadCounter.setRelease(Long.MAX_VALUE);
+            claimedReadIndex = -1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Producer's entry point interface for off-heap queues of fixed-size binary messages.
+ *
+ * Message is written in place: claim a slot, write it with absolute put methods of {@link #buffer()} and commit.
+ */
+public interface OffHeapTail {
+
+    /**
+     * Buffer with all the slots of the queue.
+     * Only absolute get / put methods should be used since the buffer is shared.
+     *
+     * @return buffer in native byte order
+     */
+    ByteBuffer buffer();
+
+    /**
+     * @return size of each slot in bytes
+     */
+    int slotSize();
+
+    /**
+     * Claim next slot for writing. Claiming again before commit returns the same slot.
+     *
+     * @return offset of the slot in the buffer or -1 if the queue is full
+     */
+    int claimTail();
+
+    /**
+     * Publish previously claimed slot to consumers.
+     *
+     * @throws IllegalStateException if there is no claimed slot
+     */
+    void commitTail();
+
+}
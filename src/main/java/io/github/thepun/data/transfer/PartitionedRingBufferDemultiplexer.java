@@ -0,0 +1,373 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.thepun.data.hash.HashFunction;
+import io.github.thepun.unsafe.ArrayMemory;
+
+/**
+ * Single producer queue which routes elements to consumers by hash so elements with the same key keep their order.
+ *
+ * Elements are split into a fixed number of partitions by hash, each partition is a single producer / single consumer ring buffer.
+ * Partitions are spread evenly between consumers and reassigned when consumers are created or destroyed.
+ * Partition moves to a new consumer only after the previous one releases it on its next poll, so the new consumer
+ * continues exactly where the previous one stopped and elements removed before are already processed.
+ *
+ * GUARANTIES:
+ * 1. Elements of the same partition are removed in order of addition by one consumer at a time
+ *
+ * LIMITATIONS:
+ * 1. Only one thread can add elements
+ * 2. Each consumer should be used by a single thread and poll regularly, otherwise its partitions are not handed over
+ * 3. Consumer should not be used after it is destroyed
+ * 4. Elements of partitions without consumer stay in the queue until a consumer is created
+ */
+@SuppressWarnings("unchecked")
+public final class PartitionedRingBufferDemultiplexer<T> implements QueueTail<T>, HasConsumers<T>, HasDepth {
+
+    // TODO: align partitions
+
+    private final int partitionMask;
+    private final Partition[] partitions;
+    private final HashFunction<? super T> hashFunction;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    private PartitionConsumer<T>[] consumers;
+
+    /**
+     * @param partitionCount - number of partitions, rounded up to power of two
+     * @param partitionSize - size of each partition, rounded up to power of two
+     * @param hashFunction - function to choose partition of an element
+     */
+    public PartitionedRingBufferDemultiplexer(int partitionCount, int partitionSize, HashFunction<? super T> hashFunction) {
+        this(partitionCount, partitionSize, hashFunction, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public PartitionedRingBufferDemultiplexer(int partitionCount, int partitionSize, HashFunction<? super T> hashFunction, WaitStrategy waitStrategy) {
+        this(partitionCount, partitionSize, hashFunction, waitStrategy, waitStrategy);
+    }
+
+    public PartitionedRingBufferDemultiplexer(int partitionCount, int partitionSize, HashFunction<? super T> hashFunction,
+                                              WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count should be greater then zero");
+        }
+
+        if (partitionSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (hashFunction == null) {
+            throw new IllegalArgumentException("Hash function should be specified");
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        int count = 1 << (int) Math.ceil(Math.log10(partitionCount) / Math.log10(2));
+        int size = 1 << (int) Math.ceil(Math.log10(partitionSize) / Math.log10(2));
+
+        partitionMask = count - 1;
+        partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(size);
+        }
+
+        consumers = new PartitionConsumer[0];
+        this.hashFunction = hashFunction;
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = 0;
+        for (Partition partition : partitions) {
+            long partitionDepth = partition.writeCounter.getAcquire() - partition.readCounter.getAcquire();
+            depth += Math.max(0, Math.min(partitionDepth, partition.data.length));
+        }
+        return depth;
+    }
+
+    @Override
+    public long capacity() {
+        return (long) partitions.length * partitions[0].data.length;
+    }
+
+    @Override
+    public synchronized QueueHead<T> createConsumer() {
+        PartitionConsumer<T>[] oldConsumers = consumers;
+        PartitionConsumer<T>[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
+        PartitionConsumer<T> consumer = new PartitionConsumer<>(this);
+        newConsumers[oldConsumers.length] = consumer;
+        updateConsumers(newConsumers);
+        return consumer;
+    }
+
+    @Override
+    public synchronized void destroyConsumer(QueueHead<T> consumer) {
+        if (!(consumer instanceof PartitionConsumer)) {
+            throw new IllegalArgumentException("Wrong consumer");
+        }
+
+        PartitionConsumer<T> partitionConsumer = (PartitionConsumer<T>) consumer;
+        if (partitionConsumer.parent != this) {
+            throw new IllegalArgumentException("Consumer from another demultiplexer");
+        }
+
+        PartitionConsumer<T>[] newConsumers;
+        PartitionConsumer<T>[] oldConsumers;
+
+        oldConsumers = consumers;
+        int index = -1;
+        for (int i = 0; i < oldConsumers.length; i++) {
+            if (oldConsumers[i] == consumer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Consumer not found");
+        }
+
+        newConsumers = new PartitionConsumer[oldConsumers.length - 1];
+        System.arraycopy(oldConsumers, 0, newConsumers, 0, index);
+        System.arraycopy(oldConsumers, index + 1, newConsumers, index + 1 - 1, oldConsumers.length - (index + 1));
+
+        // destroyed consumer does not poll anymore so its partitions are released right away
+        partitionConsumer.assigned = new Partition[0];
+        for (Partition partition : partitions) {
+            partition.owner.compareAndSet(partitionConsumer, null);
+        }
+
+        updateConsumers(newConsumers);
+    }
+
+    private void updateConsumers(PartitionConsumer<T>[] newConsumers) {
+        consumers = newConsumers;
+
+        int count = newConsumers.length;
+        if (count == 0) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Partition[] assigned = new Partition[(partitions.length - i + count - 1) / count];
+            for (int j = 0; j < assigned.length; j++) {
+                assigned[j] = partitions[i + j * count];
+            }
+            newConsumers[i].assigned = assigned;
+        }
+    }
+
+    @Override
+    public boolean addToTail(T element) {
+        int hash = hashFunction.calculateHash(element);
+        Partition partition = partitions[(hash ^ (hash >>> 16)) & partitionMask];
+
+        int size = partition.data.length;
+        long readIndex = partition.producerReadIndex;
+        long writeIndex = partition.writeCounter.get();
+        if (writeIndex >= readIndex + size) {
+            readIndex = partition.readCounter.getAcquire();
+            partition.producerReadIndex = readIndex;
+
+            if (writeIndex >= readIndex + size) {
+                return false;
+            }
+        }
+
+        int index = (int) (writeIndex & (size - 1));
+        ArrayMemory.setObject(partition.data, index, element);
+        partition.writeCounter.setRelease(writeIndex + 1);
+        consumerWaitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+
+    private static final class Partition {
+
+        private final Object[] data;
+        private final AlignedLong readCounter;
+        private final AlignedLong writeCounter;
+        private final AtomicReference<Object> owner;
+
+        private long producerReadIndex;
+
+        private Partition(int size) {
+            data = new Object[size];
+            readCounter = new AlignedLong();
+            writeCounter = new AlignedLong();
+            owner = new AtomicReference<>();
+        }
+    }
+
+
+    private static final class PartitionConsumer<T> implements QueueHead<T> {
+
+        private final PartitionedRingBufferDemultiplexer<T> parent;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
+
+        // changed by other threads on rebalance
+        private volatile Partition[] assigned;
+
+        private Partition[] owned;
+        private Partition[] lastAssigned;
+        private int ownedCount;
+        private boolean ownsAll;
+        private int nextPartitionIndex;
+
+        private PartitionConsumer(PartitionedRingBufferDemultiplexer<T> parent) {
+            this.parent = parent;
+
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
+
+            assigned = new Partition[0];
+            owned = new Partition[0];
+            lastAssigned = assigned;
+            ownsAll = true;
+        }
+
+        @Override
+        public T removeFromHead() {
+            Partition[] localOwned = updateOwnership();
+
+            int partitionIndex = nextPartitionIndex;
+            int partitionCount = ownedCount;
+            for (int i = 0; i < partitionCount; i++, partitionIndex++) {
+                if (partitionIndex >= partitionCount) {
+                    partitionIndex = 0;
+                }
+
+                Partition partition = localOwned[partitionIndex];
+                long readIndex = partition.readCounter.get();
+                if (readIndex >= partition.writeCounter.getAcquire()) {
+                    continue;
+                }
+
+                Object[] data = partition.data;
+                Object element = ArrayMemory.getObject(data, (int) (readIndex & (data.length - 1)));
+                partition.readCounter.setRelease(readIndex + 1);
+                nextPartitionIndex = partitionIndex + 1;
+                producerWaitStrategy.signal();
+                return (T) element;
+            }
+
+            return null;
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            Partition[] localOwned = updateOwnership();
+
+            int count = 0;
+            int partitionIndex = nextPartitionIndex;
+            int partitionCount = ownedCount;
+            for (int i = 0; i < partitionCount && count < length; i++, partitionIndex++) {
+                if (partitionIndex >= partitionCount) {
+                    partitionIndex = 0;
+                }
+
+                Partition partition = localOwned[partitionIndex];
+                long readIndex = partition.readCounter.get();
+                long writeIndex = partition.writeCounter.getAcquire();
+                if (readIndex >= writeIndex) {
+                    continue;
+                }
+
+                Object[] data = partition.data;
+                int mask = data.length - 1;
+                int available = (int) Math.min(length - count, writeIndex - readIndex);
+                for (int j = 0; j < available; j++) {
+                    elements[offset + count + j] = (T) ArrayMemory.getObject(data, (int) ((readIndex + j) & mask));
+                }
+                partition.readCounter.setRelease(readIndex + available);
+                count += available;
+            }
+
+            // start next time from the partition after the last one used
+            nextPartitionIndex = partitionCount == 0 ? 0 : partitionIndex % partitionCount;
+            if (count > 0) {
+                producerWaitStrategy.signal();
+            }
+
+            return count;
+        }
+
+        private Partition[] updateOwnership() {
+            Partition[] localAssigned = assigned;
+            if (localAssigned == lastAssigned && ownsAll) {
+                return owned;
+            }
+
+            // release partitions moved to other consumers, elements removed before this call are processed
+            if (localAssigned != lastAssigned) {
+                for (int i = 0; i < ownedCount; i++) {
+                    if (!contains(localAssigned, owned[i])) {
+                        owned[i].owner.compareAndSet(this, null);
+                    }
+                }
+
+                owned = new Partition[localAssigned.length];
+                lastAssigned = localAssigned;
+            }
+
+            // take partitions released by previous consumers
+            int count = 0;
+            Partition[] localOwned = owned;
+            for (Partition partition : localAssigned) {
+                Object owner = partition.owner.get();
+                if (owner == this || (owner == null && partition.owner.compareAndSet(null, this))) {
+                    localOwned[count++] = partition;
+                }
+            }
+
+            ownedCount = count;
+            ownsAll = count == localAssigned.length;
+            nextPartitionIndex = 0;
+            return localOwned;
+        }
+
+        private static boolean contains(Partition[] partitions, Partition partition) {
+            for (Partition p : partitions) {
+                if (p == partition) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
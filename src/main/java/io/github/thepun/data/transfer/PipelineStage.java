@@ -0,0 +1,31 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Consumer of {@link RingBufferPipeline} which passes elements to dependent stages.
+ *
+ * Elements returned by the stage are finished when the stage removes next elements or calls {@link #finish()}.
+ * Until then dependent stages do not see them, so the stage can modify them in place.
+ */
+public interface PipelineStage<T> extends QueueHead<T> {
+
+    /**
+     * Mark all removed elements as finished and make them visible to dependent stages.
+     */
+    void finish();
+
+}
@@ -30,10 +30,12 @@ abstract class ProducerCollectionBase<T, P extends AbstractProducer<T, ? extends
         this.producerType = (Class<P>) producers;
 
         try {
-            producerConstructor = producerType.getConstructor(getClass());
+            producerConstructor = producerType.getDeclaredConstructor(getClass());
         } catch (NoSuchMethodException e) {
             throw new IllegalStateException(e);
         }
+
+        this.producers = (P[]) Array.newInstance(producerType, 0);
     }
 
     @Override
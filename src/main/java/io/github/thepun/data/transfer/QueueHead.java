@@ -33,6 +33,40 @@ public interface QueueHead<T> {
      */
     T removeFromHead();
 
+    /**
+     * Remove elements from the head of the queue into the array.
+     *
+     * @param elements - array to fill from the first index
+     * @return number of removed elements
+     */
+    default int removeFromHead(T[] elements) {
+        return removeFromHead(elements, 0, elements.length);
+    }
+
+    /**
+     * Remove up to length elements from the head of the queue into the array.
+     * Implementations publish their read position once per call instead of once per element.
+     *
+     * @param elements - array to fill
+     * @param offset - index in the array to start from
+     * @param length - maximum number of elements to remove
+     * @return number of removed elements
+     */
+    default int removeFromHead(T[] elements, int offset, int length) {
+        int count = 0;
+        while (count < length) {
+            T element = removeFromHead();
+            if (element == null) {
+                break;
+            }
+
+            elements[offset + count] = element;
+            count++;
+        }
+
+        return count;
+    }
+
     /**
      * Remove and return element from the head of the queue.
      * If there is now element then wait until it comes.
@@ -42,23 +76,57 @@ public interface QueueHead<T> {
      * @throws TimeoutException
      */
     default T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
-        long start = System.nanoTime();
-        long finish = start + timeUnit.toNanos(timeout);
-
-        T element;
-        for (;;) {
-            element = removeFromHead();
-            if (element != null) {
-                return element;
-            }
+        return removeFromHead(timeout, timeUnit, BusySpinWaitStrategy.INSTANCE);
+    }
 
-            if (System.nanoTime() > finish) {
-                throw new TimeoutException();
-            }
+    /**
+     * Remove and return element from the head of the queue.
+     * If there is now element then wait until it comes using provided strategy between attempts.
+     *
+     * Time and interruption are checked once per a number of attempts so strategy is expected to bound its pauses by the deadline.
+     *
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @param waitStrategy - strategy to wait with
+     * @return element
+     * @throws TimeoutException
+     */
+    default T removeFromHead(long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+        T element = removeFromHead();
+        if (element != null) {
+            return element;
+        }
+
+        // deadline is compared by difference so overflow is fine
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        // spinning strategy would occupy carrier of a virtual thread
+        WaitStrategy localWaitStrategy = ThreadSupport.waitStrategyFor(waitStrategy);
+
+        int attempt = 0;
+        try {
+            for (;;) {
+                localWaitStrategy.idle(attempt, deadline);
+                if (attempt != Integer.MAX_VALUE) {
+                    attempt++;
+                }
+
+                element = removeFromHead();
+                if (element != null) {
+                    return element;
+                }
+
+                if ((attempt & 0x3F) == 0 || attempt == Integer.MAX_VALUE) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TimeoutException();
+                    }
 
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
             }
+        } finally {
+            localWaitStrategy.finish(attempt);
         }
     }
 
@@ -0,0 +1,498 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional instrumentation of a queue.
+ *
+ * Producers and consumers of the queue are wrapped with {@link #monitorTail(QueueTail)} and {@link #monitorHead(QueueHead)}.
+ * Each wrapper counts its own operations in aligned non-atomic counters, so there are no shared writes on the hot path.
+ * Sampler thread sums the counters of all wrappers: call {@link #sample()} periodically to update rates.
+ *
+ * Latency is measured for every N-th added element: it is remembered with its time in the monitor and
+ * consumers compare every removed element with it. Only one element is measured at a time.
+ *
+ * LIMITATIONS:
+ * 1. Wrapper should be used by the same single thread as the wrapped producer or consumer
+ * 2. Elements removed not through a wrapper stop latency sampling
+ * 3. Latency of an element added to the queue more then once at the same time is not precise
+ */
+public final class QueueMonitor implements QueueMonitorMXBean {
+
+    // marks the sample slot while time is written
+    private static final Object CLAIMED_REF = new Object();
+
+    private final String name;
+    private final HasDepth queue;
+    private final int latencySampleRate;
+    private final AlignedLong sampledTime;
+    private final AtomicReference<Object> sampledElement;
+
+    private MonitoredTail<?>[] tails;
+    private MonitoredHead<?>[] heads;
+    private ObjectName objectName;
+
+    private long lastSampleTime;
+    private long lastAddedCount;
+    private long lastRemovedCount;
+    private long lastLatencyCount;
+    private long lastLatencySum;
+    private double addRate;
+    private double removeRate;
+    private double averageLatency;
+
+    public QueueMonitor(String name) {
+        this(name, null, 0);
+    }
+
+    public QueueMonitor(String name, HasDepth queue) {
+        this(name, queue, 0);
+    }
+
+    /**
+     * @param name - name of the queue
+     * @param queue - queue to get depth from or null to count it from added and removed elements
+     * @param latencySampleRate - measure latency of every N-th element of each producer, zero to disable
+     */
+    public QueueMonitor(String name, HasDepth queue, int latencySampleRate) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Name should be specified");
+        }
+
+        if (latencySampleRate < 0) {
+            throw new IllegalArgumentException("Latency sample rate should not be negative");
+        }
+
+        this.name = name;
+        this.queue = queue;
+        this.latencySampleRate = latencySampleRate;
+
+        sampledTime = new AlignedLong();
+        sampledElement = new AtomicReference<>();
+        tails = new MonitoredTail[0];
+        heads = new MonitoredHead[0];
+        lastSampleTime = System.nanoTime();
+    }
+
+    public synchronized <T> QueueTail<T> monitorTail(QueueTail<T> tail) {
+        if (tail == null) {
+            throw new IllegalArgumentException("Producer should be specified");
+        }
+
+        MonitoredTail<T> monitoredTail = new MonitoredTail<>(this, tail);
+        MonitoredTail<?>[] newTails = Arrays.copyOf(tails, tails.length + 1);
+        newTails[tails.length] = monitoredTail;
+        tails = newTails;
+        return monitoredTail;
+    }
+
+    public synchronized <T> QueueHead<T> monitorHead(QueueHead<T> head) {
+        if (head == null) {
+            throw new IllegalArgumentException("Consumer should be specified");
+        }
+
+        MonitoredHead<T> monitoredHead = new MonitoredHead<>(this, head);
+        MonitoredHead<?>[] newHeads = Arrays.copyOf(heads, heads.length + 1);
+        newHeads[heads.length] = monitoredHead;
+        heads = newHeads;
+        return monitoredHead;
+    }
+
+    /**
+     * Register in platform MBean server as io.github.thepun.data.transfer:type=QueueMonitor,name=[name].
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            throw new IllegalStateException("Already registered");
+        }
+
+        try {
+            ObjectName newObjectName = new ObjectName("io.github.thepun.data.transfer:type=QueueMonitor,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, newObjectName);
+            objectName = newObjectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register MBean", e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            throw new IllegalStateException("Not registered");
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister MBean", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getDepth() {
+        if (queue != null) {
+            return queue.depth();
+        }
+
+        return Math.max(0, getAddedCount() - getRemovedCount());
+    }
+
+    @Override
+    public long getCapacity() {
+        if (queue != null) {
+            return queue.capacity();
+        }
+
+        return -1;
+    }
+
+    @Override
+    public long getAddedCount() {
+        long count = 0;
+        for (MonitoredTail<?> tail : tails) {
+            count += tail.added.getAcquire();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRemovedCount() {
+        long count = 0;
+        for (MonitoredHead<?> head : heads) {
+            count += head.removed.getAcquire();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        long count = 0;
+        for (MonitoredTail<?> tail : tails) {
+            count += tail.rejected.getAcquire();
+        }
+        return count;
+    }
+
+    @Override
+    public long getEmptyPollCount() {
+        long count = 0;
+        for (MonitoredHead<?> head : heads) {
+            count += head.emptyPolls.getAcquire();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized double getAddRate() {
+        return addRate;
+    }
+
+    @Override
+    public synchronized double getRemoveRate() {
+        return removeRate;
+    }
+
+    @Override
+    public long getLatencySampleCount() {
+        long count = 0;
+        for (MonitoredHead<?> head : heads) {
+            count += head.latencyCount.getAcquire();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized double getAverageLatencyNanos() {
+        return averageLatency;
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        long max = 0;
+        for (MonitoredHead<?> head : heads) {
+            max = Math.max(max, head.latencyMax.getAcquire());
+        }
+        return max;
+    }
+
+    @Override
+    public synchronized void sample() {
+        long time = System.nanoTime();
+        long addedCount = getAddedCount();
+        long removedCount = getRemovedCount();
+
+        long latencyCount = 0;
+        long latencySum = 0;
+        for (MonitoredHead<?> head : heads) {
+            latencyCount += head.latencyCount.getAcquire();
+            latencySum += head.latencySum.getAcquire();
+        }
+
+        double seconds = (time - lastSampleTime) / 1_000_000_000.0;
+        if (seconds > 0) {
+            addRate = (addedCount - lastAddedCount) / seconds;
+            removeRate = (removedCount - lastRemovedCount) / seconds;
+        }
+
+        if (latencyCount > lastLatencyCount) {
+            averageLatency = (double) (latencySum - lastLatencySum) / (latencyCount - lastLatencyCount);
+        }
+
+        lastSampleTime = time;
+        lastAddedCount = addedCount;
+        lastRemovedCount = removedCount;
+        lastLatencyCount = latencyCount;
+        lastLatencySum = latencySum;
+    }
+
+    private boolean startLatencySample(Object element) {
+        if (sampledElement.get() != null || !sampledElement.compareAndSet(null, CLAIMED_REF)) {
+            return false;
+        }
+
+        sampledTime.set(System.nanoTime());
+        sampledElement.lazySet(element);
+        return true;
+    }
+
+    private void cancelLatencySample(Object element) {
+        sampledElement.compareAndSet(element, null);
+    }
+
+    private long finishLatencySample(Object element) {
+        long latency = System.nanoTime() - sampledTime.get();
+        if (!sampledElement.compareAndSet(element, null)) {
+            return -1;
+        }
+
+        return latency;
+    }
+
+
+    private static final class MonitoredTail<T> implements QueueTail<T> {
+
+        private final QueueMonitor monitor;
+        private final QueueTail<T> tail;
+        private final int latencySampleRate;
+        private final AlignedLong added;
+        private final AlignedLong rejected;
+
+        private int untilLatencySample;
+
+        private MonitoredTail(QueueMonitor monitor, QueueTail<T> tail) {
+            this.monitor = monitor;
+            this.tail = tail;
+
+            latencySampleRate = monitor.latencySampleRate;
+            added = new AlignedLong();
+            rejected = new AlignedLong();
+            untilLatencySample = latencySampleRate;
+        }
+
+        @Override
+        public boolean addToTail(T element) {
+            // sample is started before the element becomes visible to consumers
+            boolean sampled = sampleLatency(element);
+
+            if (tail.addToTail(element)) {
+                added.setRelease(added.get() + 1);
+                return true;
+            }
+
+            if (sampled) {
+                monitor.cancelLatencySample(element);
+            }
+
+            rejected.setRelease(rejected.get() + 1);
+            return false;
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            int count = tail.addAllToTail(elements, offset, length);
+
+            added.setRelease(added.get() + count);
+            if (count < length) {
+                rejected.setRelease(rejected.get() + length - count);
+            }
+
+            return count;
+        }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTailWithin(element, timeout, timeUnit, null);
+        }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+            addToTailWithin(element, timeout, timeUnit, waitStrategy);
+        }
+
+        // waits inside the monitored queue so the call is counted once, null means the strategy of the queue
+        private void addToTailWithin(T element, long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+            boolean sampled = sampleLatency(element);
+
+            try {
+                if (waitStrategy == null) {
+                    tail.addToTail(element, timeout, timeUnit);
+                } else {
+                    tail.addToTail(element, timeout, timeUnit, waitStrategy);
+                }
+            } catch (TimeoutException | InterruptedException e) {
+                if (sampled) {
+                    monitor.cancelLatencySample(element);
+                }
+
+                rejected.setRelease(rejected.get() + 1);
+                throw e;
+            }
+
+            added.setRelease(added.get() + 1);
+        }
+
+        private boolean sampleLatency(T element) {
+            if (latencySampleRate == 0 || element == null) {
+                return false;
+            }
+
+            if (--untilLatencySample > 0) {
+                return false;
+            }
+
+            untilLatencySample = latencySampleRate;
+            return monitor.startLatencySample(element);
+        }
+    }
+
+
+    private static final class MonitoredHead<T> implements QueueHead<T> {
+
+        private final QueueMonitor monitor;
+        private final QueueHead<T> head;
+        private final AtomicReference<Object> sampledElement;
+        private final AlignedLong removed;
+        private final AlignedLong emptyPolls;
+        private final AlignedLong latencyCount;
+        private final AlignedLong latencySum;
+        private final AlignedLong latencyMax;
+
+        private MonitoredHead(QueueMonitor monitor, QueueHead<T> head) {
+            this.monitor = monitor;
+            this.head = head;
+
+            sampledElement = monitor.sampledElement;
+            removed = new AlignedLong();
+            emptyPolls = new AlignedLong();
+            latencyCount = new AlignedLong();
+            latencySum = new AlignedLong();
+            latencyMax = new AlignedLong();
+        }
+
+        @Override
+        public T removeFromHead() {
+            T element = head.removeFromHead();
+            if (element == null) {
+                emptyPolls.setRelease(emptyPolls.get() + 1);
+                return null;
+            }
+
+            removed.setRelease(removed.get() + 1);
+            checkLatency(element);
+            return element;
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            int count = head.removeFromHead(elements, offset, length);
+            if (count == 0) {
+                emptyPolls.setRelease(emptyPolls.get() + 1);
+                return 0;
+            }
+
+            removed.setRelease(removed.get() + count);
+
+            Object localSampledElement = sampledElement.get();
+            if (localSampledElement != null) {
+                for (int i = 0; i < count; i++) {
+                    checkLatency(elements[offset + i]);
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHeadWithin(timeout, timeUnit, null);
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+            return removeFromHeadWithin(timeout, timeUnit, waitStrategy);
+        }
+
+        // waits inside the monitored queue so the call is counted once, null means the strategy of the queue
+        private T removeFromHeadWithin(long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+            T element;
+            try {
+                if (waitStrategy == null) {
+                    element = head.removeFromHead(timeout, timeUnit);
+                } else {
+                    element = head.removeFromHead(timeout, timeUnit, waitStrategy);
+                }
+            } catch (TimeoutException | InterruptedException e) {
+                emptyPolls.setRelease(emptyPolls.get() + 1);
+                throw e;
+            }
+
+            removed.setRelease(removed.get() + 1);
+            checkLatency(element);
+            return element;
+        }
+
+        private void checkLatency(T element) {
+            if (sampledElement.get() != element) {
+                return;
+            }
+
+            long latency = monitor.finishLatencySample(element);
+            if (latency < 0) {
+                return;
+            }
+
+            latencySum.setRelease(latencySum.get() + latency);
+            if (latency > latencyMax.get()) {
+                latencyMax.setRelease(latency);
+            }
+            latencyCount.setRelease(latencyCount.get() + 1);
+        }
+    }
+}
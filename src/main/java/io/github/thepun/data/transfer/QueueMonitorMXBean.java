@@ -0,0 +1,66 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * JMX view of {@link QueueMonitor}.
+ *
+ * Counters are cumulative. Rates and average latency are calculated between the last two calls of {@link #sample()}.
+ */
+public interface QueueMonitorMXBean {
+
+    String getName();
+
+    /**
+     * @return approximate number of elements in the queue
+     */
+    long getDepth();
+
+    /**
+     * @return maximum number of elements in the queue or -1 if unknown
+     */
+    long getCapacity();
+
+    long getAddedCount();
+
+    long getRemovedCount();
+
+    /**
+     * @return number of elements not added because the queue was full
+     */
+    long getRejectedCount();
+
+    /**
+     * @return number of removes which found the queue empty
+     */
+    long getEmptyPollCount();
+
+    double getAddRate();
+
+    double getRemoveRate();
+
+    long getLatencySampleCount();
+
+    double getAverageLatencyNanos();
+
+    long getMaxLatencyNanos();
+
+    /**
+     * Update rates and average latency.
+     */
+    void sample();
+
+}
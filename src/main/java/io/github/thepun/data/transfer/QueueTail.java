@@ -15,6 +15,9 @@
  */
 package io.github.thepun.data.transfer;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Created by thepun on 20.08.17.
  */
@@ -22,4 +25,98 @@ public interface QueueTail<T> {
 
     boolean addToTail(T element);
 
+    /**
+     * Add elements from the array to the tail of the queue.
+     *
+     * @param elements - array of elements to add starting from the first index
+     * @return number of added elements
+     */
+    default int addAllToTail(T[] elements) {
+        return addAllToTail(elements, 0, elements.length);
+    }
+
+    /**
+     * Add up to length elements from the array to the tail of the queue preserving their order.
+     * Implementations claim free space for the range at once and publish their write position once per call
+     * instead of once per element. If the queue is full only the first elements are added.
+     *
+     * @param elements - array of elements to add
+     * @param offset - index in the array to start from
+     * @param length - number of elements to add
+     * @return number of added elements
+     */
+    default int addAllToTail(T[] elements, int offset, int length) {
+        int count = 0;
+        while (count < length) {
+            if (!addToTail(elements[offset + count])) {
+                break;
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Add element to the tail of the queue.
+     * If there is no space then wait until it appears.
+     *
+     * @param element - element to add
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @throws TimeoutException
+     */
+    default void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    /**
+     * Add element to the tail of the queue.
+     * If there is no space then wait until it appears using provided strategy between attempts.
+     *
+     * Time and interruption are checked once per a number of attempts so strategy is expected to bound its pauses by the deadline.
+     *
+     * @param element - element to add
+     * @param timeout - maximum amount of time to wait until throw exception
+     * @param waitStrategy - strategy to wait with
+     * @throws TimeoutException
+     */
+    default void addToTail(T element, long timeout, TimeUnit timeUnit, WaitStrategy waitStrategy) throws TimeoutException, InterruptedException {
+        if (addToTail(element)) {
+            return;
+        }
+
+        // deadline is compared by difference so overflow is fine
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+        // spinning strategy would occupy carrier of a virtual thread
+        WaitStrategy localWaitStrategy = ThreadSupport.waitStrategyFor(waitStrategy);
+
+        int attempt = 0;
+        try {
+            for (;;) {
+                localWaitStrategy.idle(attempt, deadline);
+                if (attempt != Integer.MAX_VALUE) {
+                    attempt++;
+                }
+
+                if (addToTail(element)) {
+                    return;
+                }
+
+                if ((attempt & 0x3F) == 0 || attempt == Integer.MAX_VALUE) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TimeoutException();
+                    }
+
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        } finally {
+            localWaitStrategy.finish(attempt);
+        }
+    }
+
 }
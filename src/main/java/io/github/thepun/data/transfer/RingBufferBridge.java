@@ -16,10 +16,12 @@
 package io.github.thepun.data.transfer;
 
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import io.github.thepun.unsafe.ArrayMemory;
-import io.github.thepun.unsafe.MemoryFence;
 
-public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T> {
+public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T>, HasDepth {
 
     // TODO: align local variables
     // TODO: get rid of size field
@@ -31,12 +33,26 @@ public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T> {
     private final AlignedLong writeCounter;
     private final AlignedLong localReadCounter;
     private final AlignedLong localWriteCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     public RingBufferBridge(int queueSize) {
+        this(queueSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public RingBufferBridge(int queueSize, WaitStrategy waitStrategy) {
+        this(queueSize, waitStrategy, waitStrategy);
+    }
+
+    public RingBufferBridge(int queueSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (queueSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         double log2 = Math.log10(queueSize) / Math.log10(2);
         int pow = (int) Math.ceil(log2);
 
@@ -47,6 +63,19 @@ public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T> {
         writeCounter = new AlignedLong();
         localReadCounter = new AlignedLong();
         localWriteCounter = new AlignedLong();
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
     }
 
     @Override
@@ -54,7 +83,7 @@ public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T> {
         long writeIndex = localWriteCounter.get();
         long readIndex = readCounter.get();
         if (readIndex >= writeIndex) {
-            writeIndex = writeCounter.get();
+            writeIndex = writeCounter.getAcquire();
             localWriteCounter.set(writeIndex);
 
             if (readIndex >= writeIndex) {
@@ -64,30 +93,90 @@ public final class RingBufferBridge<T> implements QueueHead<T>, QueueTail<T> {
 
         int index = (int) (readIndex & mask);
         Object element = ArrayMemory.getObject(data, index);
-        MemoryFence.load();
-        readCounter.set(readIndex + 1);
+        readCounter.setRelease(readIndex + 1);
 
+        producerWaitStrategy.signal();
         return (T) element;
     }
 
+    @Override
+    public int removeFromHead(T[] elements, int offset, int length) {
+        long writeIndex = localWriteCounter.get();
+        long readIndex = readCounter.get();
+        if (readIndex + length > writeIndex) {
+            writeIndex = writeCounter.getAcquire();
+            localWriteCounter.set(writeIndex);
+
+            if (readIndex >= writeIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, writeIndex - readIndex);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((readIndex + i) & mask);
+            elements[offset + i] = (T) ArrayMemory.getObject(data, index);
+        }
+
+        readCounter.setRelease(readIndex + count);
+
+        producerWaitStrategy.signal();
+        return count;
+    }
+
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+    }
+
     @Override
     public boolean addToTail(T element) {
         long readIndex = localReadCounter.get();
         long writeIndex = writeCounter.get();
         if (writeIndex >= readIndex + size) {
-            readIndex = readCounter.get();
+            readIndex = readCounter.getAcquire();
             localReadCounter.set(readIndex);
 
-            if (readIndex >= writeIndex) {
+            if (writeIndex >= readIndex + size) {
                 return false;
             }
         }
 
         int index = (int) (writeIndex & mask);
         ArrayMemory.setObject(data, index, element);
-        MemoryFence.store();
-        writeCounter.set(writeIndex + 1);
+        writeCounter.setRelease(writeIndex + 1);
 
+        consumerWaitStrategy.signal();
         return true;
     }
+
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        long readIndex = localReadCounter.get();
+        long writeIndex = writeCounter.get();
+        if (writeIndex + length > readIndex + size) {
+            readIndex = readCounter.getAcquire();
+            localReadCounter.set(readIndex);
+
+            if (writeIndex >= readIndex + size) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, readIndex + size - writeIndex);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((writeIndex + i) & mask);
+            ArrayMemory.setObject(data, index, elements[offset + i]);
+        }
+
+        writeCounter.setRelease(writeIndex + count);
+
+        consumerWaitStrategy.signal();
+        return count;
+    }
 }
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.github.thepun.unsafe.ArrayMemory;
+
+/**
+ * Single producer ring buffer which delivers every element to every consumer.
+ *
+ * Each consumer has its own read counter and producer is gated by the slowest consumer.
+ * Consumer sees elements added after it was created.
+ *
+ * GUARANTIES:
+ * 1. Every consumer receives all elements in order of addition
+ *
+ * LIMITATIONS:
+ * 1. Only one thread can add elements
+ * 2. Each consumer should be used by a single thread
+ * 3. Elements are shared between consumers so they should not be modified by them
+ * 4. If there are no consumers then added elements are dropped
+ */
+public final class RingBufferBroadcaster<T> implements QueueTail<T>, HasConsumers<T>, HasDepth {
+
+    // TODO: align consumers
+
+    private final int size;
+    private final Object[] data;
+    private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    private long producerReadIndex;
+    private volatile BroadcastConsumer<T>[] consumers;
+
+    public RingBufferBroadcaster(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public RingBufferBroadcaster(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public RingBufferBroadcaster(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        size = bufferSize;
+        data = new Object[bufferSize];
+        writeCounter = new AlignedLong();
+        consumers = new BroadcastConsumer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    /**
+     * @return number of elements not yet consumed by the slowest consumer
+     */
+    @Override
+    public long depth() {
+        long writeIndex = writeCounter.getAcquire();
+        long depth = writeIndex - slowestReadIndex(writeIndex);
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    @Override
+    public synchronized QueueHead<T> createConsumer() {
+        BroadcastConsumer<T>[] oldConsumers = consumers;
+        BroadcastConsumer<T>[] newConsumers = Arrays.copyOf(oldConsumers, oldConsumers.length + 1);
+        BroadcastConsumer<T> consumer = new BroadcastConsumer<>(this);
+        newConsumers[oldConsumers.length] = consumer;
+        consumers = newConsumers;
+
+        // producer which has not seen the consumer yet could pass its start index
+        consumer.start();
+        return consumer;
+    }
+
+    @Override
+    public synchronized void destroyConsumer(QueueHead<T> consumer) {
+        if (!(consumer instanceof BroadcastConsumer)) {
+            throw new IllegalArgumentException("Wrong consumer");
+        }
+
+        BroadcastConsumer<T> broadcastConsumer = (BroadcastConsumer<T>) consumer;
+        if (broadcastConsumer.parent != this) {
+            throw new IllegalArgumentException("Consumer from another broadcaster");
+        }
+
+        BroadcastConsumer<T>[] newConsumers;
+        BroadcastConsumer<T>[] oldConsumers;
+
+        oldConsumers = consumers;
+        int index = -1;
+        for (int i = 0; i < oldConsumers.length; i++) {
+            if (oldConsumers[i] == consumer) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == -1) {
+            throw new IllegalArgumentException("Consumer not found");
+        }
+
+        newConsumers = new BroadcastConsumer[oldConsumers.length - 1];
+        System.arraycopy(oldConsumers, 0, newConsumers, 0, index);
+        System.arraycopy(oldConsumers, index + 1, newConsumers, index + 1 - 1, oldConsumers.length - (index + 1));
+        consumers = newConsumers;
+    }
+
+    @Override
+    public boolean addToTail(T element) {
+        AlignedLong localWriteCounter = writeCounter;
+
+        long readIndex = producerReadIndex;
+        long writeIndex = localWriteCounter.get();
+        long writeIndexMinusSize = writeIndex - size;
+        if (writeIndexMinusSize >= readIndex) {
+            readIndex = slowestReadIndex(writeIndex);
+            producerReadIndex = readIndex;
+
+            if (writeIndexMinusSize >= readIndex) {
+                return false;
+            }
+        }
+
+        int index = (int) (writeIndex % size);
+        ArrayMemory.setObject(data, index, element);
+        localWriteCounter.setRelease(writeIndex + 1);
+        consumerWaitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        AlignedLong localWriteCounter = writeCounter;
+
+        long readIndex = producerReadIndex;
+        long writeIndex = localWriteCounter.get();
+        long writeIndexMinusSize = writeIndex - size;
+        if (writeIndexMinusSize + length > readIndex) {
+            readIndex = slowestReadIndex(writeIndex);
+            producerReadIndex = readIndex;
+
+            if (writeIndexMinusSize >= readIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, readIndex - writeIndexMinusSize);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((writeIndex + i) % size);
+            ArrayMemory.setObject(data, index, elements[offset + i]);
+        }
+        localWriteCounter.setRelease(writeIndex + count);
+        consumerWaitStrategy.signal();
+        return count;
+    }
+
+    private long slowestReadIndex(long writeIndex) {
+        BroadcastConsumer<T>[] localConsumers = consumers;
+        int length = localConsumers.length;
+
+        long readIndex = writeIndex;
+        for (int i = 0; i < length; i++) {
+            long readIndexFromConsumer = localConsumers[i].consumerReadCounter.getAcquire();
+            if (readIndex > readIndexFromConsumer) {
+                readIndex = readIndexFromConsumer;
+            }
+        }
+
+        return readIndex;
+    }
+
+
+    private static final class BroadcastConsumer<T> implements QueueHead<T> {
+
+        private final RingBufferBroadcaster<T> parent;
+
+        private final int size;
+        private final Object[] data;
+        private final AlignedLong writeCounter;
+        private final AlignedLong consumerReadCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
+
+        private long consumerWriteIndex;
+
+        private BroadcastConsumer(RingBufferBroadcaster<T> parent) {
+            this.parent = parent;
+
+            size = parent.size;
+            data = parent.data;
+            writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
+
+            consumerReadCounter = new AlignedLong();
+            start();
+        }
+
+        private void start() {
+            consumerWriteIndex = writeCounter.getAcquire();
+            consumerReadCounter.setRelease(consumerWriteIndex);
+        }
+
+        @Override
+        public T removeFromHead() {
+            AlignedLong localReadCounter = consumerReadCounter;
+
+            long writeIndex = consumerWriteIndex;
+            long readIndex = localReadCounter.get();
+            if (readIndex >= writeIndex) {
+                writeIndex = writeCounter.getAcquire();
+                consumerWriteIndex = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return null;
+                }
+            }
+
+            int index = (int) (readIndex % size);
+            Object element = ArrayMemory.getObject(data, index);
+            localReadCounter.setRelease(readIndex + 1);
+            producerWaitStrategy.signal();
+            return (T) element;
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            AlignedLong localReadCounter = consumerReadCounter;
+
+            long writeIndex = consumerWriteIndex;
+            long readIndex = localReadCounter.get();
+            if (readIndex + length > writeIndex) {
+                writeIndex = writeCounter.getAcquire();
+                consumerWriteIndex = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return 0;
+                }
+            }
+
+            int count = (int) Math.min(length, writeIndex - readIndex);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((readIndex + i) % size);
+                elements[offset + i] = (T) ArrayMemory.getObject(data, index);
+            }
+            localReadCounter.setRelease(readIndex + count);
+            producerWaitStrategy.signal();
+            return count;
+        }
+    }
+}
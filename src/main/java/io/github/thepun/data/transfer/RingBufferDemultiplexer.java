@@ -16,12 +16,13 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.github.thepun.unsafe.ArrayMemory;
-import io.github.thepun.unsafe.MemoryFence;
 
 
-public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsumers<T> {
+public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsumers<T>, HasDepth {
 
     // TODO: align consumers
     // TODO: change size to mask
@@ -32,21 +33,48 @@ public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsum
     private final Object[] data;
     private final AlignedLong readCounter;
     private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     private long producerReadIndex;
     // TODO: split consumers and counters
     private RingBufferConsumer<T>[] consumers;
 
     public RingBufferDemultiplexer(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public RingBufferDemultiplexer(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public RingBufferDemultiplexer(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (bufferSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         size = bufferSize;
         data = new Object[bufferSize];
         readCounter = new AlignedLong();
         writeCounter = new AlignedLong();
         consumers = new RingBufferConsumer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
     }
 
     @Override
@@ -115,18 +143,55 @@ public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsum
             if (writeIndexMinusSize >= readIndex) {
                 return false;
             }
-        } else {
-            producerReadIndex = readIndex + 1;
         }
 
-        int index = (int) writeIndex % size;
+        int index = (int) (writeIndex % size);
         ArrayMemory.setObject(data, index, element);
-        MemoryFence.store();
-
-        localWriteCounter.set(writeIndex + 1);
+        localWriteCounter.setRelease(writeIndex + 1);
+        consumerWaitStrategy.signal();
         return true;
     }
 
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        AlignedLong localWriteCounter = writeCounter;
+
+        long readIndex = producerReadIndex;
+        long writeIndex = localWriteCounter.get();
+        long writeIndexMinusSize = writeIndex - size;
+        if (writeIndexMinusSize + length > readIndex) {
+            RingBufferConsumer<T>[] localConsumers = consumers;
+            int consumersLength = localConsumers.length;
+
+            readIndex = readCounter.get();
+            for (int i = 0; i < consumersLength; i++) {
+                long localReadCounterFromConsumer = localConsumers[i].consumerReadCounter.get();
+                if (readIndex > localReadCounterFromConsumer) {
+                    readIndex = localReadCounterFromConsumer;
+                }
+            }
+            producerReadIndex = readIndex;
+
+            if (writeIndexMinusSize >= readIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, readIndex - writeIndexMinusSize);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((writeIndex + i) % size);
+            ArrayMemory.setObject(data, index, elements[offset + i]);
+        }
+        localWriteCounter.setRelease(writeIndex + count);
+        consumerWaitStrategy.signal();
+        return count;
+    }
+
 
     private static final class RingBufferConsumer<T> implements QueueHead<T> {
 
@@ -137,6 +202,8 @@ public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsum
         private final AlignedLong readCounter;
         private final AlignedLong writeCounter;
         private final AlignedLong consumerReadCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private RingBufferConsumer(RingBufferDemultiplexer<T> parent) {
             this.parent = parent;
@@ -145,8 +212,11 @@ public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsum
             data = parent.data;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             consumerReadCounter = new AlignedLong();
+            consumerReadCounter.set(Long.MAX_VALUE);
         }
 
         @Override
@@ -174,10 +244,49 @@ public final class RingBufferDemultiplexer<T> implements QueueTail<T>, HasConsum
 
             int index = (int) readIndex % size;
             Object element = ArrayMemory.getObject(data, index);
-            MemoryFence.load();
-
-            localConsumerReadCounter.set(Long.MAX_VALUE);
+            localConsumerReadCounter.setRelease(Long.MAX_VALUE);
+            producerWaitStrategy.signal();
             return (T) element;
         }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            AlignedLong localReadCounter = readCounter;
+            AlignedLong localConsumerReadCounter = consumerReadCounter;
+
+            long writeIndex = writeCounter.get();
+            long readIndex = localReadCounter.get();
+            if (readIndex >= writeIndex) {
+                localConsumerReadCounter.set(Long.MAX_VALUE);
+                return 0;
+            }
+
+            // claim the whole range with single CAS
+            localConsumerReadCounter.set(readIndex);
+            int count = (int) Math.min(length, writeIndex - readIndex);
+            while (!localReadCounter.compareAndSwap(readIndex, readIndex + count)) {
+                readIndex = localReadCounter.get();
+
+                if (readIndex >= writeIndex) {
+                    localConsumerReadCounter.set(Long.MAX_VALUE);
+                    return 0;
+                }
+
+                count = (int) Math.min(length, writeIndex - readIndex);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((readIndex + i) % size);
+                elements[offset + i] = (T) ArrayMemory.getObject(data, index);
+            }
+            localConsumerReadCounter.setRelease(Long.MAX_VALUE);
+            producerWaitStrategy.signal();
+            return count;
+        }
     }
 }
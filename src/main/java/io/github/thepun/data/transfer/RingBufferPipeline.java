@@ -0,0 +1,318 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.github.thepun.unsafe.ArrayMemory;
+
+/**
+ * Single producer ring buffer with stages which process every element in order of their dependencies.
+ *
+ * Each stage has its own counter of finished elements. Stage without dependencies follows the producer,
+ * other stages follow the slowest of their dependencies and producer is gated by the slowest stage.
+ * For example decode, enrich and then journal and dispatch in parallel:
+ * <pre>
+ *     PipelineStage&lt;Event&gt; decode = pipeline.createStage();
+ *     PipelineStage&lt;Event&gt; enrich = pipeline.createStage(decode);
+ *     PipelineStage&lt;Event&gt; journal = pipeline.createStage(enrich);
+ *     PipelineStage&lt;Event&gt; dispatch = pipeline.createStage(enrich);
+ * </pre>
+ *
+ * GUARANTIES:
+ * 1. Every stage receives all elements in order of addition
+ * 2. Stage receives element only after all its dependencies have finished it
+ *
+ * LIMITATIONS:
+ * 1. Only one thread can add elements
+ * 2. Each stage should be used by a single thread
+ * 3. Stages can not be destroyed
+ * 4. Stage created after elements were added sees only elements not yet finished by its dependencies
+ * 5. If there are no stages then added elements are dropped
+ */
+public final class RingBufferPipeline<T> implements QueueTail<T>, HasDepth {
+
+    // TODO: align stages
+
+    private final int size;
+    private final Object[] data;
+    private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
+
+    private long producerReadIndex;
+    private volatile Stage<T>[] stages;
+
+    public RingBufferPipeline(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public RingBufferPipeline(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public RingBufferPipeline(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
+        size = bufferSize;
+        data = new Object[bufferSize];
+        writeCounter = new AlignedLong();
+        stages = new Stage[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    /**
+     * @return number of elements not yet finished by the slowest stage
+     */
+    @Override
+    public long depth() {
+        long writeIndex = writeCounter.getAcquire();
+        long depth = writeIndex - slowestFinishedIndex(writeIndex);
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
+    }
+
+    /**
+     * Create stage which receives elements after all the dependencies have finished them.
+     *
+     * @param dependencies - stages of this pipeline, if there are none then stage receives elements right after they are added
+     * @return new stage
+     */
+    @SafeVarargs
+    public final synchronized PipelineStage<T> createStage(PipelineStage<T>... dependencies) {
+        AlignedLong[] dependencyCounters;
+        if (dependencies.length == 0) {
+            dependencyCounters = new AlignedLong[] {writeCounter};
+        } else {
+            dependencyCounters = new AlignedLong[dependencies.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                if (!(dependencies[i] instanceof Stage)) {
+                    throw new IllegalArgumentException("Wrong stage");
+                }
+
+                Stage<T> dependency = (Stage<T>) dependencies[i];
+                if (dependency.parent != this) {
+                    throw new IllegalArgumentException("Stage from another pipeline");
+                }
+
+                dependencyCounters[i] = dependency.finishedCounter;
+            }
+        }
+
+        Stage<T>[] oldStages = stages;
+        Stage<T>[] newStages = Arrays.copyOf(oldStages, oldStages.length + 1);
+        Stage<T> stage = new Stage<>(this, dependencyCounters);
+        newStages[oldStages.length] = stage;
+        stages = newStages;
+
+        // producer which has not seen the stage yet could pass its start index
+        stage.start();
+        return stage;
+    }
+
+    @Override
+    public boolean addToTail(T element) {
+        AlignedLong localWriteCounter = writeCounter;
+
+        long readIndex = producerReadIndex;
+        long writeIndex = localWriteCounter.get();
+        long writeIndexMinusSize = writeIndex - size;
+        if (writeIndexMinusSize >= readIndex) {
+            readIndex = slowestFinishedIndex(writeIndex);
+            producerReadIndex = readIndex;
+
+            if (writeIndexMinusSize >= readIndex) {
+                return false;
+            }
+        }
+
+        int index = (int) (writeIndex % size);
+        ArrayMemory.setObject(data, index, element);
+        localWriteCounter.setRelease(writeIndex + 1);
+        consumerWaitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        addToTail(element, timeout, timeUnit, producerWaitStrategy);
+    }
+
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        AlignedLong localWriteCounter = writeCounter;
+
+        long readIndex = producerReadIndex;
+        long writeIndex = localWriteCounter.get();
+        long writeIndexMinusSize = writeIndex - size;
+        if (writeIndexMinusSize + length > readIndex) {
+            readIndex = slowestFinishedIndex(writeIndex);
+            producerReadIndex = readIndex;
+
+            if (writeIndexMinusSize >= readIndex) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(length, readIndex - writeIndexMinusSize);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((writeIndex + i) % size);
+            ArrayMemory.setObject(data, index, elements[offset + i]);
+        }
+        localWriteCounter.setRelease(writeIndex + count);
+        consumerWaitStrategy.signal();
+        return count;
+    }
+
+    private long slowestFinishedIndex(long writeIndex) {
+        Stage<T>[] localStages = stages;
+        int length = localStages.length;
+
+        // stage is never ahead of its dependencies so minimum of all stages is minimum of the last ones
+        long finishedIndex = writeIndex;
+        for (int i = 0; i < length; i++) {
+            long finishedIndexFromStage = localStages[i].finishedCounter.getAcquire();
+            if (finishedIndex > finishedIndexFromStage) {
+                finishedIndex = finishedIndexFromStage;
+            }
+        }
+
+        return finishedIndex;
+    }
+
+
+    private static final class Stage<T> implements PipelineStage<T> {
+
+        private final RingBufferPipeline<T> parent;
+
+        private final int size;
+        private final Object[] data;
+        private final AlignedLong[] dependencyCounters;
+        private final AlignedLong finishedCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
+
+        private long readIndex;
+        private long availableIndex;
+
+        private Stage(RingBufferPipeline<T> parent, AlignedLong[] dependencyCounters) {
+            this.parent = parent;
+            this.dependencyCounters = dependencyCounters;
+
+            size = parent.size;
+            data = parent.data;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
+
+            finishedCounter = new AlignedLong();
+            start();
+        }
+
+        private void start() {
+            readIndex = availableIndex();
+            availableIndex = readIndex;
+            finishedCounter.setRelease(readIndex);
+        }
+
+        @Override
+        public T removeFromHead() {
+            long localReadIndex = readIndex;
+            finish(localReadIndex);
+
+            if (localReadIndex >= availableIndex) {
+                availableIndex = availableIndex();
+
+                if (localReadIndex >= availableIndex) {
+                    return null;
+                }
+            }
+
+            int index = (int) (localReadIndex % size);
+            Object element = ArrayMemory.getObject(data, index);
+            readIndex = localReadIndex + 1;
+            return (T) element;
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            long localReadIndex = readIndex;
+            finish(localReadIndex);
+
+            if (localReadIndex + length > availableIndex) {
+                availableIndex = availableIndex();
+
+                if (localReadIndex >= availableIndex) {
+                    return 0;
+                }
+            }
+
+            int count = (int) Math.min(length, availableIndex - localReadIndex);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((localReadIndex + i) % size);
+                elements[offset + i] = (T) ArrayMemory.getObject(data, index);
+            }
+            readIndex = localReadIndex + count;
+            return count;
+        }
+
+        @Override
+        public void finish() {
+            finish(readIndex);
+        }
+
+        private void finish(long finishedIndex) {
+            if (finishedCounter.get() != finishedIndex) {
+                finishedCounter.setRelease(finishedIndex);
+
+                // both dependent stages and producer could wait for it
+                consumerWaitStrategy.signal();
+                producerWaitStrategy.signal();
+            }
+        }
+
+        private long availableIndex() {
+            AlignedLong[] localDependencyCounters = dependencyCounters;
+
+            long index = localDependencyCounters[0].getAcquire();
+            for (int i = 1; i < localDependencyCounters.length; i++) {
+                long indexFromDependency = localDependencyCounters[i].getAcquire();
+                if (index > indexFromDependency) {
+                    index = indexFromDependency;
+                }
+            }
+
+            return index;
+        }
+    }
+}
@@ -16,12 +16,13 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.github.thepun.unsafe.ArrayMemory;
-import io.github.thepun.unsafe.MemoryFence;
 
 
-public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<T> {
+public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<T>, HasDepth {
 
     // TODO: extend from AbstractRouter
     // TODO: change 'writeIndex >= readIndex + size' to 'writeIndex - size >= readIndex'
@@ -33,6 +34,8 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
     private final Object[] data;
     private final AlignedLong readCounter;
     private final AlignedLong writeCounter;
+    private final WaitStrategy consumerWaitStrategy;
+    private final WaitStrategy producerWaitStrategy;
 
     private AlignedLong[] consumerCounters;
     private AlignedLong[] producerCounters;
@@ -40,10 +43,22 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
     private RingBufferProducer<T>[] producers;
 
     public RingBufferRouter(int bufferSize) {
+        this(bufferSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public RingBufferRouter(int bufferSize, WaitStrategy waitStrategy) {
+        this(bufferSize, waitStrategy, waitStrategy);
+    }
+
+    public RingBufferRouter(int bufferSize, WaitStrategy consumerWaitStrategy, WaitStrategy producerWaitStrategy) {
         if (bufferSize < 1) {
             throw new IllegalArgumentException("Size should be greater then zero");
         }
 
+        if (consumerWaitStrategy == null || producerWaitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategies should be specified");
+        }
+
         double log2 = Math.log10(bufferSize) / Math.log10(2);
         int pow = (int) Math.ceil(log2);
 
@@ -56,6 +71,19 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
         producerCounters = new AlignedLong[0];
         consumers = new RingBufferConsumer[0];
         producers = new RingBufferProducer[0];
+        this.consumerWaitStrategy = consumerWaitStrategy;
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    @Override
+    public long depth() {
+        long depth = writeCounter.getAcquire() - readCounter.getAcquire();
+        return Math.max(0, Math.min(depth, size));
+    }
+
+    @Override
+    public long capacity() {
+        return size;
     }
 
     @Override
@@ -181,6 +209,8 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
         private final AlignedLong writeCounter;
         private final AlignedLong producerWriteCounter;
         private final AlignedLong readCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private AlignedLong[] consumers;
         private long producerReadCounter;
@@ -199,6 +229,8 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
             consumers = parent.consumerCounters;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             producerWriteCounter = new AlignedLong();
             producerWriteCounter.set(Long.MAX_VALUE);
@@ -219,9 +251,9 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
                 AlignedLong[] localConsumers = consumers;
                 AlignedLong localReadCounter = readCounter;
 
-                readIndex = localReadCounter.get();
+                readIndex = localReadCounter.getAcquire();
                 for (int i = 0; i < localConsumers.length; i++) {
-                    long localReadCounterFromConsumer = localConsumers[i].get();
+                    long localReadCounterFromConsumer = localConsumers[i].getAcquire();
                     if (readIndex > localReadCounterFromConsumer) {
                         readIndex = localReadCounterFromConsumer;
                     }
@@ -234,8 +266,7 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
                 }
             }
 
-            MemoryFence.store();
-            localProducerWriteCounter.set(writeIndex);
+            localProducerWriteCounter.setRelease(writeIndex);
             while (!localWriteCounter.compareAndSwap(writeIndex, writeIndex + 1)) {
                 writeIndex = localWriteCounter.get();
 
@@ -247,11 +278,68 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
 
             int index = (int) (writeIndex & localMask);
             ArrayMemory.setObject(localData, index, element);
-            MemoryFence.store();
-
-            localProducerWriteCounter.set(Long.MAX_VALUE);
+            localProducerWriteCounter.setRelease(Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
             return true;
         }
+
+        @Override
+        public void addToTail(T element, long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            addToTail(element, timeout, timeUnit, producerWaitStrategy);
+        }
+
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            int localSize = size;
+            long readIndex = producerReadCounter;
+            int localMask = mask;
+            Object[] localData = data;
+            AlignedLong localWriteCounter = writeCounter;
+            AlignedLong localProducerWriteCounter = producerWriteCounter;
+
+            long writeIndex = localWriteCounter.get();
+            long readIndexPlusSize = readIndex + localSize;
+            if (writeIndex + length > readIndexPlusSize) {
+                AlignedLong[] localConsumers = consumers;
+                AlignedLong localReadCounter = readCounter;
+
+                readIndex = localReadCounter.getAcquire();
+                for (int i = 0; i < localConsumers.length; i++) {
+                    long localReadCounterFromConsumer = localConsumers[i].getAcquire();
+                    if (readIndex > localReadCounterFromConsumer) {
+                        readIndex = localReadCounterFromConsumer;
+                    }
+                }
+                producerReadCounter = readIndex;
+
+                readIndexPlusSize = readIndex + localSize;
+                if (writeIndex >= readIndexPlusSize) {
+                    return 0;
+                }
+            }
+
+            // claim the whole range with single CAS
+            localProducerWriteCounter.setRelease(writeIndex);
+            int count = (int) Math.min(length, readIndexPlusSize - writeIndex);
+            while (!localWriteCounter.compareAndSwap(writeIndex, writeIndex + count)) {
+                writeIndex = localWriteCounter.get();
+
+                if (writeIndex >= readIndexPlusSize) {
+                    localProducerWriteCounter.set(Long.MAX_VALUE);
+                    return 0;
+                }
+
+                count = (int) Math.min(length, readIndexPlusSize - writeIndex);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((writeIndex + i) & localMask);
+                ArrayMemory.setObject(localData, index, elements[offset + i]);
+            }
+            localProducerWriteCounter.setRelease(Long.MAX_VALUE);
+            consumerWaitStrategy.signal();
+            return count;
+        }
     }
 
 
@@ -265,6 +353,8 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
         private final AlignedLong readCounter;
         private final AlignedLong consumerReadCounter;
         private final AlignedLong writeCounter;
+        private final WaitStrategy consumerWaitStrategy;
+        private final WaitStrategy producerWaitStrategy;
 
         private long consumerWriteCounter;
         private AlignedLong[] producers;
@@ -282,6 +372,8 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
             producers = parent.producerCounters;
             readCounter = parent.readCounter;
             writeCounter = parent.writeCounter;
+            consumerWaitStrategy = parent.consumerWaitStrategy;
+            producerWaitStrategy = parent.producerWaitStrategy;
 
             consumerReadCounter = new AlignedLong();
             consumerReadCounter.set(Long.MAX_VALUE);
@@ -300,9 +392,9 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
                 AlignedLong[] localProducers = producers;
                 AlignedLong localWriteCounter = writeCounter;
 
-                writeIndex = localWriteCounter.get();
+                writeIndex = localWriteCounter.getAcquire();
                 for (int i = 0; i < localProducers.length; i++) {
-                    long localWriteCounterFromConsumer = localProducers[i].get();
+                    long localWriteCounterFromConsumer = localProducers[i].getAcquire();
                     if (writeIndex > localWriteCounterFromConsumer) {
                         writeIndex = localWriteCounterFromConsumer;
                     }
@@ -314,8 +406,7 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
                 }
             }
 
-            MemoryFence.store();
-            localConsumerReadCounter.set(readIndex);
+            localConsumerReadCounter.setRelease(readIndex);
             while (!localReadCounter.compareAndSwap(readIndex, readIndex + 1)) {
                 readIndex = localReadCounter.get();
 
@@ -327,10 +418,64 @@ public final class RingBufferRouter<T> implements HasProducers<T>, HasConsumers<
 
             int index = (int) (readIndex & localMask);
             Object element = ArrayMemory.getObject(localData, index);
-            MemoryFence.load();
-
-            localConsumerReadCounter.set(Long.MAX_VALUE);
+            localConsumerReadCounter.setRelease(Long.MAX_VALUE);
+            producerWaitStrategy.signal();
             return (T) element;
         }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, consumerWaitStrategy);
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            int localMask = mask;
+            Object[] localData = data;
+            long writeIndex = consumerWriteCounter;
+            AlignedLong localReadCounter = readCounter;
+            AlignedLong localConsumerReadCounter = consumerReadCounter;
+
+            long readIndex = localReadCounter.get();
+            if (readIndex + length > writeIndex) {
+                AlignedLong[] localProducers = producers;
+                AlignedLong localWriteCounter = writeCounter;
+
+                writeIndex = localWriteCounter.getAcquire();
+                for (int i = 0; i < localProducers.length; i++) {
+                    long localWriteCounterFromConsumer = localProducers[i].getAcquire();
+                    if (writeIndex > localWriteCounterFromConsumer) {
+                        writeIndex = localWriteCounterFromConsumer;
+                    }
+                }
+                consumerWriteCounter = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    return 0;
+                }
+            }
+
+            // claim the whole range with single CAS
+            localConsumerReadCounter.setRelease(readIndex);
+            int count = (int) Math.min(length, writeIndex - readIndex);
+            while (!localReadCounter.compareAndSwap(readIndex, readIndex + count)) {
+                readIndex = localReadCounter.get();
+
+                if (readIndex >= writeIndex) {
+                    localConsumerReadCounter.set(Long.MAX_VALUE);
+                    return 0;
+                }
+
+                count = (int) Math.min(length, writeIndex - readIndex);
+            }
+
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((readIndex + i) & localMask);
+                elements[offset + i] = (T) ArrayMemory.getObject(localData, index);
+            }
+            localConsumerReadCounter.setRelease(Long.MAX_VALUE);
+            producerWaitStrategy.signal();
+            return count;
+        }
     }
 }
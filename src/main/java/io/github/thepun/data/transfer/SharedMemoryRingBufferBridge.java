@@ -0,0 +1,177 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Single producer / single consumer bounded queue of fixed-size binary messages shared between processes.
+ *
+ * Same counters as {@link OffHeapRingBufferBridge} but the counters and the slots are placed in memory mapped file.
+ * Use a file in /dev/shm so it is never written to disk. Producer process and consumer process open the same file
+ * with the same sizes and use only their side of the queue. Cached counters are local to each process.
+ *
+ * File layout: queue size and slot size, write counter and read counter on their own cache lines, slots.
+ *
+ * LIMITATIONS:
+ * 1. Only one process should produce and only one process should consume
+ * 2. Mapping is released by GC
+ */
+public final class SharedMemoryRingBufferBridge implements OffHeapHead, OffHeapTail {
+
+    static final int QUEUE_SIZE_OFFSET = 0;
+    static final int SLOT_SIZE_OFFSET = 4;
+    static final int WRITE_COUNTER_OFFSET = 128;
+    static final int READ_COUNTER_OFFSET = 256;
+    static final int DATA_OFFSET = 384;
+
+    private final int size;
+    private final int mask;
+    private final int slotSize;
+    private final MappedByteBuffer data;
+
+    private long localReadCounter;
+    private long localWriteCounter;
+    private long claimedReadIndex;
+    private long claimedWriteIndex;
+
+    /**
+     * @param file - file to share, usually in /dev/shm
+     * @param queueSize - number of slots, rounded up to power of two
+     * @param slotSize - size of slot in bytes, rounded up to multiple of 8
+     */
+    public SharedMemoryRingBufferBridge(Path file, int queueSize, int slotSize) throws IOException {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("Slot size should be greater then zero");
+        }
+
+        double log2 = Math.log10(queueSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        this.slotSize = (slotSize + 7) & ~7;
+
+        long capacity = DATA_OFFSET + (long) size * this.slotSize;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer is too large");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            data = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            data.order(ByteOrder.nativeOrder());
+
+            // the first side writes layout and the second one checks it, lock keeps sides opening at once from both writing
+            try (FileLock ignored = channel.lock(0, WRITE_COUNTER_OFFSET, false)) {
+                int sharedSize = data.getInt(QUEUE_SIZE_OFFSET);
+                int sharedSlotSize = data.getInt(SLOT_SIZE_OFFSET);
+                if (sharedSize == 0 && sharedSlotSize == 0) {
+                    data.putInt(QUEUE_SIZE_OFFSET, size);
+                    data.putInt(SLOT_SIZE_OFFSET, this.slotSize);
+                } else if (sharedSize != size || sharedSlotSize != this.slotSize) {
+                    throw new IllegalArgumentException("Shared file has different queue size or slot size");
+                }
+            }
+        }
+
+        localReadCounter = data.getLong(READ_COUNTER_OFFSET);
+        localWriteCounter = data.getLong(WRITE_COUNTER_OFFSET);
+        claimedReadIndex = -1;
+        claimedWriteIndex = -1;
+    }
+
+    @Override
+    public ByteBuffer buffer() {
+        return data;
+    }
+
+    @Override
+    public int slotSize() {
+        return slotSize;
+    }
+
+    @Override
+    public int claimTail() {
+        long readIndex = localReadCounter;
+        long writeIndex = data.getLong(WRITE_COUNTER_OFFSET);
+        if (writeIndex >= readIndex + size) {
+            readIndex = data.getLong(READ_COUNTER_OFFSET);
+            MemoryFence.load();
+            localReadCounter = readIndex;
+
+            if (writeIndex >= readIndex + size) {
+                return -1;
+            }
+        }
+
+        claimedWriteIndex = writeIndex;
+        return DATA_OFFSET + (int) (writeIndex & mask) * slotSize;
+    }
+
+    @Override
+    public void commitTail() {
+        long writeIndex = data.getLong(WRITE_COUNTER_OFFSET);
+        if (claimedWriteIndex != writeIndex) {
+            throw new IllegalStateException("Slot is not claimed");
+        }
+
+        MemoryFence.store();
+        data.putLong(WRITE_COUNTER_OFFSET, writeIndex + 1);
+    }
+
+    @Override
+    public int claimHead() {
+        long writeIndex = localWriteCounter;
+        long readIndex = data.getLong(READ_COUNTER_OFFSET);
+        if (readIndex >= writeIndex) {
+            writeIndex = data.getLong(WRITE_COUNTER_OFFSET);
+            MemoryFence.load();
+            localWriteCounter = writeIndex;
+
+            if (readIndex >= writeIndex) {
+                return -1;
+            }
+        }
+
+        MemoryFence.load();
+        claimedReadIndex = readIndex;
+        return DATA_OFFSET + (int) (readIndex & mask) * slotSize;
+    }
+
+    @Override
+    public void releaseHead() {
+        long readIndex = data.getLong(READ_COUNTER_OFFSET);
+        if (claimedReadIndex != readIndex) {
+            throw new IllegalStateException("Slot is not claimed");
+        }
+
+        MemoryFence.load();
+        data.putLong(READ_COUNTER_OFFSET, readIndex + 1);
+    }
+}
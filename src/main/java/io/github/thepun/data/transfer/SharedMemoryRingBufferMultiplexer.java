@@ -0,0 +1,314 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.thepun.unsafe.MemoryFence;
+
+/**
+ * Multiple producers / single consumer bounded queue of fixed-size binary messages shared between processes.
+ *
+ * There is no atomic counter in shared memory so each producer takes its own lane with {@link SharedMemoryRingBufferBridge} layout.
+ * Lane is owned through a file lock which is released by OS if producer process dies, so the lane can be taken again.
+ * Consumer goes round the lanes one message per lane.
+ *
+ * File layout: lane count, queue size and slot size, lanes.
+ *
+ * LIMITATIONS:
+ * 1. Only one process should consume
+ * 2. Mapping is released by GC, {@link #close()} releases only the file and the lanes
+ */
+public final class SharedMemoryRingBufferMultiplexer implements OffHeapHead, Closeable {
+
+    static final int LANE_COUNT_OFFSET = 0;
+    static final int QUEUE_SIZE_OFFSET = 4;
+    static final int SLOT_SIZE_OFFSET = 8;
+    static final int FIRST_LANE_OFFSET = 128;
+    static final int WRITE_COUNTER_OFFSET = 128;
+    static final int READ_COUNTER_OFFSET = 256;
+    static final int DATA_OFFSET = 384;
+
+    private final int size;
+    private final int mask;
+    private final int slotSize;
+    private final int laneCount;
+    private final int laneSize;
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final long[] localWriteCounters;
+
+    private int nextLane;
+    private int claimedLane;
+    private long claimedReadIndex;
+
+    /**
+     * @param file - file to share, usually in /dev/shm
+     * @param maxProducers - number of lanes
+     * @param queueSize - number of slots in each lane, rounded up to power of two
+     * @param slotSize - size of slot in bytes, rounded up to multiple of 8
+     */
+    public SharedMemoryRingBufferMultiplexer(Path file, int maxProducers, int queueSize, int slotSize) throws IOException {
+        if (maxProducers < 1) {
+            throw new IllegalArgumentException("Number of producers should be greater then zero");
+        }
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Size should be greater then zero");
+        }
+
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("Slot size should be greater then zero");
+        }
+
+        double log2 = Math.log10(queueSize) / Math.log10(2);
+        int pow = (int) Math.ceil(log2);
+
+        size = (int) Math.pow(2, pow);
+        mask = size - 1;
+        this.slotSize = (slotSize + 7) & ~7;
+        laneCount = maxProducers;
+
+        long laneCapacity = (DATA_OFFSET + (long) size * this.slotSize + 127) & ~127L;
+        long capacity = FIRST_LANE_OFFSET + laneCapacity * laneCount;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer is too large");
+        }
+
+        laneSize = (int) laneCapacity;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        data = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        data.order(ByteOrder.nativeOrder());
+
+        // the first side writes layout and others check it, lock keeps sides opening at once from all writing
+        boolean sameLayout;
+        try (FileLock ignored = channel.lock(0, FIRST_LANE_OFFSET, false)) {
+            int sharedLaneCount = data.getInt(LANE_COUNT_OFFSET);
+            int sharedSize = data.getInt(QUEUE_SIZE_OFFSET);
+            int sharedSlotSize = data.getInt(SLOT_SIZE_OFFSET);
+            if (sharedLaneCount == 0 && sharedSize == 0 && sharedSlotSize == 0) {
+                data.putInt(LANE_COUNT_OFFSET, laneCount);
+                data.putInt(QUEUE_SIZE_OFFSET, size);
+                data.putInt(SLOT_SIZE_OFFSET, this.slotSize);
+                sameLayout = true;
+            } else {
+                sameLayout = sharedLaneCount == laneCount && sharedSize == size && sharedSlotSize == this.slotSize;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (!sameLayout) {
+            channel.close();
+            throw new IllegalArgumentException("Shared file has different lane count, queue size or slot size");
+        }
+
+        localWriteCounters = new long[laneCount];
+        claimedLane = -1;
+    }
+
+    /**
+     * Take free lane. Lane is owned till {@link #destroyProducer(OffHeapTail)} or till the end of the process.
+     *
+     * @return producer
+     * @throws IllegalStateException if all lanes are taken
+     */
+    public synchronized OffHeapTail createProducer() {
+        for (int i = 0; i < laneCount; i++) {
+            int laneOffset = FIRST_LANE_OFFSET + i * laneSize;
+
+            FileLock lock;
+            try {
+                lock = channel.tryLock(laneOffset, 1, false);
+            } catch (OverlappingFileLockException e) {
+                // taken in this process
+                continue;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (lock != null) {
+                return new SharedMemoryProducer(this, laneOffset, lock);
+            }
+        }
+
+        throw new IllegalStateException("All producer lanes are taken");
+    }
+
+    public synchronized void destroyProducer(OffHeapTail producer) {
+        if (!(producer instanceof SharedMemoryProducer)) {
+            throw new IllegalArgumentException("Wrong producer");
+        }
+
+        SharedMemoryProducer sharedMemoryProducer = (SharedMemoryProducer) producer;
+        if (sharedMemoryProducer.parent != this) {
+            throw new IllegalArgumentException("Producer from another multiplexer");
+        }
+
+        try {
+            sharedMemoryProducer.lock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ByteBuffer buffer() {
+        return data;
+    }
+
+    @Override
+    public int slotSize() {
+        return slotSize;
+    }
+
+    @Override
+    public int claimHead() {
+        if (claimedLane != -1) {
+            return FIRST_LANE_OFFSET + claimedLane * laneSize + DATA_OFFSET + (int) (claimedReadIndex & mask) * slotSize;
+        }
+
+        for (int i = 0; i < laneCount; i++) {
+            int lane = nextLane + i;
+            if (lane >= laneCount) {
+                lane -= laneCount;
+            }
+
+            int laneOffset = FIRST_LANE_OFFSET + lane * laneSize;
+            long writeIndex = localWriteCounters[lane];
+            long readIndex = data.getLong(laneOffset + READ_COUNTER_OFFSET);
+            if (readIndex >= writeIndex) {
+                writeIndex = data.getLong(laneOffset + WRITE_COUNTER_OFFSET);
+                MemoryFence.load();
+                localWriteCounters[lane] = writeIndex;
+
+                if (readIndex >= writeIndex) {
+                    continue;
+                }
+            }
+
+            MemoryFence.load();
+            claimedLane = lane;
+            claimedReadIndex = readIndex;
+            return laneOffset + DATA_OFFSET + (int) (readIndex & mask) * slotSize;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void releaseHead() {
+        int lane = claimedLane;
+        if (lane == -1) {
+            throw new IllegalStateException("Slot is not claimed");
+        }
+
+        MemoryFence.load();
+        data.putLong(FIRST_LANE_OFFSET + lane * laneSize + READ_COUNTER_OFFSET, claimedReadIndex + 1);
+
+        claimedLane = -1;
+        nextLane = lane + 1 == laneCount ? 0 : lane + 1;
+    }
+
+    /**
+     * Release lanes of producers created by this instance and close the file. Mapping stays till GC.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private static final class SharedMemoryProducer implements OffHeapTail {
+
+        private final SharedMemoryRingBufferMultiplexer parent;
+
+        private final int size;
+        private final int mask;
+        private final int slotSize;
+        private final int laneOffset;
+        private final FileLock lock;
+        private final MappedByteBuffer data;
+
+        private long localReadCounter;
+        private long claimedWriteIndex;
+
+        private SharedMemoryProducer(SharedMemoryRingBufferMultiplexer parent, int laneOffset, FileLock lock) {
+            this.parent = parent;
+            this.laneOffset = laneOffset;
+            this.lock = lock;
+
+            size = parent.size;
+            mask = parent.mask;
+            slotSize = parent.slotSize;
+            data = parent.data;
+
+            // lane could be used by a dead process before
+            localReadCounter = data.getLong(laneOffset + READ_COUNTER_OFFSET);
+            claimedWriteIndex = -1;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return data;
+        }
+
+        @Override
+        public int slotSize() {
+            return slotSize;
+        }
+
+        @Override
+        public int claimTail() {
+            long readIndex = localReadCounter;
+            long writeIndex = data.getLong(laneOffset + WRITE_COUNTER_OFFSET);
+            if (writeIndex >= readIndex + size) {
+                readIndex = data.getLong(laneOffset + READ_COUNTER_OFFSET);
+                MemoryFence.load();
+                localReadCounter = readIndex;
+
+                if (writeIndex >= readIndex + size) {
+                    return -1;
+                }
+            }
+
+            claimedWriteIndex = writeIndex;
+            return laneOffset + DATA_OFFSET + (int) (writeIndex & mask) * slotSize;
+        }
+
+        @Override
+        public void commitTail() {
+            long writeIndex = data.getLong(laneOffset + WRITE_COUNTER_OFFSET);
+            if (claimedWriteIndex != writeIndex) {
+                throw new IllegalStateException("Slot is not claimed");
+            }
+
+            MemoryFence.store();
+            data.putLong(laneOffset + WRITE_COUNTER_OFFSET, writeIndex + 1);
+        }
+    }
+}
@@ -16,38 +16,160 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import io.github.thepun.unsafe.ArrayMemory;
+import io.github.thepun.unsafe.MemoryFence;
 import io.github.thepun.unsafe.SystemTypeSizes;
 
 
+/**
+ * Each consumer owns a linked chunk queue filled by the producer in turn. Consumer with empty queue steals from
+ * the consumer with the largest backlog: it takes up to a half of the backlog from the end of victim chunks in one go
+ * and keeps stolen elements in its own buffer.
+ *
+ * Producer chooses consumer with {@link DispatchPolicy} and gives it a batch of elements before choosing again,
+ * so a good initial placement makes stealing rare.
+ *
+ * Thief publishes the bunch it scans as a hazard and owner does not recycle a passed bunch while it is published,
+ * so a thief never claims slots of a bunch which is already reused by this or another queue sharing the {@link ChunkPool}.
+ *
+ * Destroyed consumer gets no more elements but stays a victim for other consumers until its backlog is stolen,
+ * and elements it has stolen but not removed are taken by the next thief. So elements are not lost on destroy
+ * as long as there is another consumer. Consumer should be destroyed by its own thread or after the thread stops using it.
+ *
+ * @param <T> type of objects to store
+ */
 public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>, HasConsumers<T> {
 
     // TODO: align consumer variables
 
-    private static final int LINKED_BUNCH_SIZE = 1024;
-    private static final int LINKED_FIRST_OFFSET_INDEX = LINKED_BUNCH_SIZE - 2;
     private static final int LINKED_FIRST_ITEM_INDEX = 0;
     private static final int LINKED_SECOND_ITEM_INDEX = 1;
     private static final long LINKED_FIRST_ITEM_ADDRESS = ArrayMemory.firstElementOffset();
-    private static final long LINKED_REF_TO_NEXT_ADDRESS = ArrayMemory.firstElementOffset() + SystemTypeSizes.referenceSize() * (LINKED_BUNCH_SIZE - 1);
-    private static final long LINKED_REF_TO_NEXT_GC_ADDRESS = ArrayMemory.firstElementOffset() + SystemTypeSizes.referenceSize() * (LINKED_BUNCH_SIZE - 2);
-    private static final Object[] LINKED_NULLS_BUNCH = new Object[LINKED_BUNCH_SIZE];
     private static final Object EMPTY_REF = new Object();
     private static final Object STEAL_REF = new Object();
+    private static final int MAX_STOLEN_ELEMENTS = 1024;
 
 
+    // last two slots of a bunch keep references to the next empty bunch and to the next bunch with data
+    private final int linkedBunchSize;
+    private final int linkedFirstOffsetIndex;
+    private final int linkedRefToNextIndex;
+    private final long linkedRefToNextGcAddress;
+    private final ChunkPool pool;
     private final AtomicReference<Object[]> globalEmptyChain;
+    private final WaitStrategy waitStrategy;
+    private final DispatchPolicy policy;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Object[]> orphanedElements;
+
+    // version of consumers array, producer publishes the version it dispatches with
+    private volatile long consumersVersion;
+    private volatile long observedVersion;
 
     private int nextConsumerIndex;
+    private int dispatchIndex;
+    private int remainingInBatch;
+    private int randomSeed;
     private Object[] writerEmptyChain;
+    private StealingConsumer<T>[] dispatchConsumers;
     private StealingConsumer<T>[] consumers;
+    private StealingConsumer<T>[] retiredConsumers;
 
     public StealingLinkedChunkDemultiplexer() {
+        this(BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public StealingLinkedChunkDemultiplexer(WaitStrategy waitStrategy) {
+        this(ChunkPool.DEFAULT_CHUNK_SIZE, waitStrategy);
+    }
+
+    public StealingLinkedChunkDemultiplexer(int chunkSize) {
+        this(chunkSize, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public StealingLinkedChunkDemultiplexer(int chunkSize, WaitStrategy waitStrategy) {
+        this(chunkSize, null, DispatchPolicy.ROUND_ROBIN, 1, waitStrategy);
+    }
+
+    public StealingLinkedChunkDemultiplexer(ChunkPool pool) {
+        this(pool, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public StealingLinkedChunkDemultiplexer(ChunkPool pool, WaitStrategy waitStrategy) {
+        this(ChunkPool.chunkSizeOf(pool), pool, DispatchPolicy.ROUND_ROBIN, 1, waitStrategy);
+    }
+
+    public StealingLinkedChunkDemultiplexer(DispatchPolicy policy) {
+        this(policy, 1, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    /**
+     * @param policy - how to choose consumer
+     * @param batchSize - number of elements given to the chosen consumer before choosing again
+     * @param waitStrategy - wait strategy of consumers
+     */
+    public StealingLinkedChunkDemultiplexer(DispatchPolicy policy, int batchSize, WaitStrategy waitStrategy) {
+        this(ChunkPool.DEFAULT_CHUNK_SIZE, null, policy, batchSize, waitStrategy);
+    }
+
+    /**
+     * @param chunkSize - number of elements in each chunk
+     * @param policy - how to choose consumer
+     * @param batchSize - number of elements given to the chosen consumer before choosing again
+     * @param waitStrategy - wait strategy of consumers
+     */
+    public StealingLinkedChunkDemultiplexer(int chunkSize, DispatchPolicy policy, int batchSize, WaitStrategy waitStrategy) {
+        this(chunkSize, null, policy, batchSize, waitStrategy);
+    }
+
+    /**
+     * @param pool - pool of chunks, its chunk size is used
+     * @param policy - how to choose consumer
+     * @param batchSize - number of elements given to the chosen consumer before choosing again
+     * @param waitStrategy - wait strategy of consumers
+     */
+    public StealingLinkedChunkDemultiplexer(ChunkPool pool, DispatchPolicy policy, int batchSize, WaitStrategy waitStrategy) {
+        this(ChunkPool.chunkSizeOf(pool), pool, policy, batchSize, waitStrategy);
+    }
+
+    private StealingLinkedChunkDemultiplexer(int chunkSize, ChunkPool pool, DispatchPolicy policy, int batchSize, WaitStrategy waitStrategy) {
+        if (chunkSize < ChunkPool.MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size should be at least " + ChunkPool.MIN_CHUNK_SIZE);
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy should be specified");
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be greater then zero");
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        this.pool = pool;
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+        randomSeed = (int) System.nanoTime() | 1;
+
+        linkedBunchSize = chunkSize;
+        linkedFirstOffsetIndex = chunkSize - 2;
+        linkedRefToNextIndex = chunkSize - 1;
+        linkedRefToNextGcAddress = ArrayMemory.firstElementOffset() + SystemTypeSizes.referenceSize() * (chunkSize - 2);
+
         consumers = new StealingConsumer[0];
+        retiredConsumers = new StealingConsumer[0];
         globalEmptyChain = new AtomicReference<>(null);
+        orphanedElements = new ConcurrentLinkedQueue<>();
     }
 
     @Override
@@ -90,18 +212,46 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
         newConsumers = new StealingConsumer[oldConsumers.length - 1];
         System.arraycopy(oldConsumers, 0, newConsumers, 0, index);
         System.arraycopy(oldConsumers, index + 1, newConsumers, index + 1 - 1, oldConsumers.length - (index + 1));
+
+        // stolen elements are left for the next thief, own backlog stays in the chain for other consumers to steal
+        Object[] leftover = producerSubqueue.takeStolenLeftover();
+        if (leftover != null) {
+            orphanedElements.add(leftover);
+        }
+
+        retiredConsumers = Arrays.copyOf(retiredConsumers, retiredConsumers.length + 1);
+        retiredConsumers[retiredConsumers.length - 1] = producerSubqueue;
         updateConsumers(newConsumers);
+        producerSubqueue.retiredVersion = consumersVersion;
+    }
+
+    private synchronized void pruneRetiredConsumers() {
+        // producer does not dispatch to consumers retired before the version it has published
+        long localObservedVersion = observedVersion;
+
+        StealingConsumer<T>[] stillRetired = Stream.of(retiredConsumers)
+                .filter(consumer -> consumer.retiredVersion > localObservedVersion || consumer.backlog() > 0)
+                .toArray(length -> new StealingConsumer[length]);
+
+        if (stillRetired.length != retiredConsumers.length) {
+            retiredConsumers = stillRetired;
+            updateVictims();
+        }
     }
 
     private void updateConsumers(StealingConsumer<T>[] newConsumers) {
         consumers = newConsumers;
+        consumersVersion++;
+        updateVictims();
+    }
 
+    private void updateVictims() {
         for (int i = 0; i < consumers.length; i++) {
             final int finalI = i;
 
             StealingConsumer<T> thisConsumer = consumers[finalI];
 
-            StealingConsumer<T>[] otherConsumers = Stream.of(this.consumers)
+            StealingConsumer<T>[] otherConsumers = Stream.concat(Stream.of(this.consumers), Stream.of(retiredConsumers))
                     .filter(consumer -> consumer != thisConsumer)
                     .toArray(length -> new StealingConsumer[length]);
 
@@ -111,60 +261,196 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
 
     @Override
     public boolean addToTail(T element) {
-        int localNextConsumerIndex = nextConsumerIndex;
-        StealingConsumer<T>[] localConsumers = consumers;
-        int numberOfConsumers = localConsumers.length;
-
-        StealingConsumer<T> consumer = localConsumers[localNextConsumerIndex % numberOfConsumers];
+        StealingConsumer<T> consumer = nextConsumer(1);
         AlignedBunch currentWriteNode = consumer.currentWriteNode;
         Object[] currentBunch = currentWriteNode.bunch;
         int currentIndex = currentWriteNode.index;
-        if (currentIndex == LINKED_FIRST_OFFSET_INDEX) {
-            //Object[] localEmptyChain = new Object[LINKED_BUNCH_SIZE];
-            Object[] localEmptyChain = writerEmptyChain;
-            if (localEmptyChain == null) {
-                Object[] newChain = globalEmptyChain.getAndSet(null);
-                if (newChain == null) {
-                    newChain = new Object[LINKED_BUNCH_SIZE];
-                }
-
-                localEmptyChain = newChain;
-                //localEmptyChain = new Object[LINKED_BUNCH_SIZE];
-            }
-
-            writerEmptyChain = (Object[]) ArrayMemory.getObject(localEmptyChain, LINKED_REF_TO_NEXT_GC_ADDRESS);
+        if (currentIndex == linkedFirstOffsetIndex) {
+            Object[] localEmptyChain = takeWriteBunch();
             ArrayMemory.setObject(localEmptyChain, LINKED_FIRST_ITEM_ADDRESS, element);
-            ArrayMemory.setObject(currentBunch, LINKED_REF_TO_NEXT_ADDRESS, localEmptyChain);
+            ArrayAccess.setRelease(currentBunch, linkedRefToNextIndex, localEmptyChain);
             currentWriteNode.index = LINKED_SECOND_ITEM_INDEX;
             currentWriteNode.bunch = localEmptyChain;
-            nextConsumerIndex = localNextConsumerIndex + 1;
+            consumer.addedCounter.setRelease(consumer.addedCounter.get() + 1);
+            waitStrategy.signal();
             return true;
         }
 
-        ArrayMemory.setObject(currentBunch, currentIndex, element);
+        ArrayAccess.setRelease(currentBunch, currentIndex, element);
         currentWriteNode.index = currentIndex + 1;
-        nextConsumerIndex = localNextConsumerIndex + 1;
+        consumer.addedCounter.setRelease(consumer.addedCounter.get() + 1);
+        waitStrategy.signal();
         return true;
     }
 
+    @Override
+    public int addAllToTail(T[] elements, int offset, int length) {
+        // whole batch goes to a single consumer, others will steal if it is too slow
+        StealingConsumer<T> consumer = nextConsumer(length);
+        AlignedBunch currentWriteNode = consumer.currentWriteNode;
+        Object[] currentBunch = currentWriteNode.bunch;
+        int currentIndex = currentWriteNode.index;
+
+        int count = 0;
+        while (count < length) {
+            if (currentIndex == linkedFirstOffsetIndex) {
+                Object[] localEmptyChain = takeWriteBunch();
+
+                // fill new bunch before it becomes visible to consumers
+                int bunchCount = Math.min(length - count, linkedFirstOffsetIndex - LINKED_FIRST_ITEM_INDEX);
+                System.arraycopy(elements, offset + count, localEmptyChain, LINKED_FIRST_ITEM_INDEX, bunchCount);
+                ArrayAccess.setRelease(currentBunch, linkedRefToNextIndex, localEmptyChain);
+
+                currentBunch = localEmptyChain;
+                currentIndex = LINKED_FIRST_ITEM_INDEX + bunchCount;
+                count += bunchCount;
+            } else {
+                int bunchCount = Math.min(length - count, linkedFirstOffsetIndex - currentIndex);
+                MemoryFence.store();
+                System.arraycopy(elements, offset + count, currentBunch, currentIndex, bunchCount);
+
+                currentIndex += bunchCount;
+                count += bunchCount;
+            }
+        }
+
+        currentWriteNode.index = currentIndex;
+        currentWriteNode.bunch = currentBunch;
+        consumer.addedCounter.setRelease(consumer.addedCounter.get() + count);
+        waitStrategy.signal();
+        return count;
+    }
+
+    private StealingConsumer<T> nextConsumer(int count) {
+        StealingConsumer<T>[] localConsumers = consumers;
+
+        // stay with the chosen consumer until batch is over or consumers are changed
+        int index;
+        if (remainingInBatch > 0 && dispatchConsumers == localConsumers) {
+            index = dispatchIndex;
+            remainingInBatch -= count;
+        } else {
+            if (dispatchConsumers != localConsumers) {
+                // version is read before the array, so retired consumers of the version are not in the array
+                long version = consumersVersion;
+                localConsumers = consumers;
+                observedVersion = version;
+            }
+
+            index = chooseConsumer(localConsumers);
+            dispatchIndex = index;
+            dispatchConsumers = localConsumers;
+            remainingInBatch = batchSize - count;
+        }
+
+        return localConsumers[index];
+    }
+
+    private int chooseConsumer(StealingConsumer<T>[] localConsumers) {
+        int numberOfConsumers = localConsumers.length;
+        int localNextConsumerIndex = nextConsumerIndex;
+        nextConsumerIndex = localNextConsumerIndex + 1;
+
+        switch (policy) {
+            case LEAST_LOADED:
+                // start from the next consumer to break ties
+                int leastLoadedIndex = localNextConsumerIndex % numberOfConsumers;
+                long leastBacklog = Long.MAX_VALUE;
+                for (int i = localNextConsumerIndex; i < localNextConsumerIndex + numberOfConsumers; i++) {
+                    int candidateIndex = i % numberOfConsumers;
+                    long backlog = localConsumers[candidateIndex].backlog();
+                    if (backlog < leastBacklog) {
+                        leastLoadedIndex = candidateIndex;
+                        leastBacklog = backlog;
+                    }
+                }
+                return leastLoadedIndex;
+
+            case TWO_RANDOM_CHOICES:
+                // xorshift is enough as only the producer thread uses it
+                int seed = randomSeed;
+                seed ^= seed << 13;
+                seed ^= seed >>> 17;
+                seed ^= seed << 5;
+                randomSeed = seed;
+
+                int firstIndex = (seed & Integer.MAX_VALUE) % numberOfConsumers;
+                if (numberOfConsumers == 1) {
+                    return firstIndex;
+                }
+
+                int secondIndex = (firstIndex + 1 + (seed >>> 16) % (numberOfConsumers - 1)) % numberOfConsumers;
+                if (localConsumers[secondIndex].backlog() < localConsumers[firstIndex].backlog()) {
+                    return secondIndex;
+                }
+                return firstIndex;
+
+            default:
+                return localNextConsumerIndex % numberOfConsumers;
+        }
+    }
+
+    private Object[] takeWriteBunch() {
+        if (pool != null) {
+            return pool.take();
+        }
+
+        Object[] localEmptyChain = writerEmptyChain;
+        if (localEmptyChain == null) {
+            Object[] newChain = globalEmptyChain.getAndSet(null);
+            if (newChain == null) {
+                newChain = new Object[linkedBunchSize];
+            }
+
+            localEmptyChain = newChain;
+        }
+
+        writerEmptyChain = (Object[]) ArrayMemory.getObject(localEmptyChain, linkedRefToNextGcAddress);
+        return localEmptyChain;
+    }
+
 
     private static final class StealingConsumer<T> implements QueueHead<T> {
 
         private final StealingLinkedChunkDemultiplexer<T> parent;
 
         private final AlignedLong nextConsumerToStealFrom;
+        private final AlignedLong addedCounter;
+        private final AlignedLong removedCounter;
+        private final AlignedLong stolenCounter;
+        private final AlignedLong readBunchCounter;
+        private final Object[] stolenElements;
         private final AlignedBunch currentReadNode;
         private final AlignedBunch currentWriteNode;
+        private final int linkedFirstOffsetIndex;
+        private final int linkedRefToNextIndex;
+        private final long linkedRefToNextGcAddress;
+        private final ChunkPool pool;
         private final AtomicReference<Object[]> emptyChain;
+        private final AtomicReference<Object[]> stealHazard;
+        private final WaitStrategy waitStrategy;
+
+        private int stolenIndex;
+        private int stolenCount;
+        private long stealBunchSequence;
+        private Object[] stealBunch;
+        private StealingConsumer<T> stealVictim;
+        private volatile StealingConsumer<T>[] consumers;
 
-        private StealingConsumer<T>[] consumers;
+        // zero while consumer is not destroyed
+        private volatile long retiredVersion;
 
         private StealingConsumer(StealingLinkedChunkDemultiplexer<T> parent) {
             this.parent = parent;
 
+            linkedFirstOffsetIndex = parent.linkedFirstOffsetIndex;
+            linkedRefToNextIndex = parent.linkedRefToNextIndex;
+            linkedRefToNextGcAddress = parent.linkedRefToNextGcAddress;
+            pool = parent.pool;
             emptyChain = parent.globalEmptyChain;
+            waitStrategy = parent.waitStrategy;
 
-            Object[] firstBunch = new Object[LINKED_BUNCH_SIZE];
+            Object[] firstBunch = pool == null ? new Object[parent.linkedBunchSize] : pool.take();
             currentReadNode = new AlignedBunch();
             currentWriteNode = new AlignedBunch();
             currentReadNode.index = LINKED_FIRST_ITEM_INDEX;
@@ -173,10 +459,22 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
             currentWriteNode.bunch = firstBunch;
 
             nextConsumerToStealFrom = new AlignedLong();
+            addedCounter = new AlignedLong();
+            removedCounter = new AlignedLong();
+            stolenCounter = new AlignedLong();
+            readBunchCounter = new AlignedLong();
+            stolenElements = new Object[MAX_STOLEN_ELEMENTS];
+            stealHazard = new AtomicReference<>(null);
+            consumers = new StealingConsumer[0];
         }
 
         @Override
         public T removeFromHead() {
+            // elements stolen before go first
+            if (stolenIndex < stolenCount) {
+                return takeStolen();
+            }
+
             AlignedBunch currentNode = currentReadNode;
             int currentIndex = currentNode.index;
             Object[] currentBunch = currentNode.bunch;
@@ -184,27 +482,15 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
             // get element from owned queue
             Object element;
             for (;;) {
-                if (currentIndex == LINKED_FIRST_OFFSET_INDEX) {
-                    Object[] oldHeadBunh = currentBunch;
-                    currentBunch = (Object[]) ArrayMemory.getObject(currentBunch, LINKED_REF_TO_NEXT_ADDRESS);
-                    if (currentBunch == null) {
+                if (currentIndex == linkedFirstOffsetIndex) {
+                    Object[] nextBunch = switchReadBunch(currentBunch);
+                    if (nextBunch == null) {
                         currentNode.index = currentIndex;
                         break;
                     }
 
-                    currentNode.bunch = currentBunch;
+                    currentBunch = nextBunch;
                     currentIndex = LINKED_FIRST_ITEM_INDEX;
-                    currentNode.index = LINKED_FIRST_ITEM_INDEX;
-
-                    // clear chunk
-                    System.arraycopy(LINKED_NULLS_BUNCH, 0, oldHeadBunh, 0, LINKED_BUNCH_SIZE);
-
-                    // return to chunk pool
-                    Object[] prevEmptyChainHead;
-                    do {
-                        prevEmptyChainHead = emptyChain.get();
-                        ArrayMemory.setObject(oldHeadBunh, LINKED_REF_TO_NEXT_GC_ADDRESS, prevEmptyChainHead);
-                    } while (!emptyChain.compareAndSet(prevEmptyChainHead, oldHeadBunh));
                 }
 
                 element = ArrayMemory.getObject(currentBunch, currentIndex);
@@ -220,6 +506,7 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
                 // try to get element
                 if (element != STEAL_REF && ArrayMemory.compareAndSwapObject(currentBunch, currentIndex, element, EMPTY_REF)) {
                     currentNode.index = currentIndex + 1;
+                    removedCounter.setRelease(removedCounter.get() + 1);
                     return (T) element;
                 }
 
@@ -227,45 +514,283 @@ public final class StealingLinkedChunkDemultiplexer<T> implements QueueTail<T>,
             }
 
             // go stealing
+            if (steal() == 0) {
+                return null;
+            }
+
+            return takeStolen();
+        }
+
+        @Override
+        public int removeFromHead(T[] elements, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            AlignedBunch currentNode = currentReadNode;
+            int currentIndex = currentNode.index;
+            Object[] currentBunch = currentNode.bunch;
+
+            // elements stolen before go first
+            int count = drainStolen(elements, offset, length);
+            int ownCount = 0;
+
+            // get elements from owned queue
+            while (count < length) {
+                if (currentIndex == linkedFirstOffsetIndex) {
+                    Object[] nextBunch = switchReadBunch(currentBunch);
+                    if (nextBunch == null) {
+                        break;
+                    }
+
+                    currentBunch = nextBunch;
+                    currentIndex = LINKED_FIRST_ITEM_INDEX;
+                }
+
+                Object element = ArrayMemory.getObject(currentBunch, currentIndex);
+
+                if (element == null) {
+                    break;
+                }
+
+                if (element == EMPTY_REF) {
+                    break;
+                }
+
+                // try to get element
+                if (element != STEAL_REF && ArrayMemory.compareAndSwapObject(currentBunch, currentIndex, element, EMPTY_REF)) {
+                    elements[offset + count] = (T) element;
+                    count++;
+                    ownCount++;
+                }
+
+                currentIndex++;
+            }
+
+            currentNode.index = currentIndex;
+            if (ownCount > 0) {
+                removedCounter.setRelease(removedCounter.get() + ownCount);
+            }
+
+            if (count > 0) {
+                return count;
+            }
+
+            // go stealing
+            if (steal() == 0) {
+                return 0;
+            }
+
+            return drainStolen(elements, offset, length);
+        }
+
+        @Override
+        public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+            return removeFromHead(timeout, timeUnit, waitStrategy);
+        }
+
+        private Object[] switchReadBunch(Object[] oldHeadBunh) {
+            Object[] nextBunch = (Object[]) ArrayAccess.getAcquire(oldHeadBunh, linkedRefToNextIndex);
+            if (nextBunch == null) {
+                return null;
+            }
+
+            AlignedBunch currentNode = currentReadNode;
+            currentNode.bunch = nextBunch;
+            currentNode.index = LINKED_FIRST_ITEM_INDEX;
+
+            // atomic increment is a full fence: thief either sees the bunch passed or its hazard is visible below
+            readBunchCounter.getAndIncrement();
+
+            // thief could claim slots of the bunch after reuse, so leave it to GC
+            if (isStealHazard(oldHeadBunh)) {
+                return nextBunch;
+            }
+
+            // clear chunk
+            Arrays.fill(oldHeadBunh, null);
+
+            // return to shared pool if any
+            if (pool != null) {
+                pool.release(oldHeadBunh);
+                return nextBunch;
+            }
+
+            // return to chunk pool
+            Object[] prevEmptyChainHead;
+            do {
+                prevEmptyChainHead = emptyChain.get();
+                ArrayMemory.setObject(oldHeadBunh, linkedRefToNextGcAddress, prevEmptyChainHead);
+            } while (!emptyChain.compareAndSet(prevEmptyChainHead, oldHeadBunh));
+
+            return nextBunch;
+        }
+
+        private boolean isStealHazard(Object[] bunch) {
+            for (StealingConsumer<T> thief : consumers) {
+                if (thief.stealHazard.get() == bunch) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long backlog() {
+            return addedCounter.getAcquire() - removedCounter.getAcquire() - stolenCounter.getAcquire();
+        }
+
+        private T takeStolen() {
+            int index = stolenIndex;
+            Object element = stolenElements[index];
+            stolenElements[index] = null;
+            stolenIndex = index + 1;
+            return (T) element;
+        }
+
+        private int drainStolen(T[] elements, int offset, int length) {
+            int count = Math.min(length, stolenCount - stolenIndex);
+            for (int i = 0; i < count; i++) {
+                elements[offset + i] = takeStolen();
+            }
+            return count;
+        }
+
+        private Object[] takeStolenLeftover() {
+            if (stolenIndex >= stolenCount) {
+                return null;
+            }
+
+            Object[] leftover = Arrays.copyOfRange(stolenElements, stolenIndex, stolenCount);
+            Arrays.fill(stolenElements, null);
+            stolenIndex = 0;
+            stolenCount = 0;
+            return leftover;
+        }
+
+        private int steal() {
+            // buffer should not be overwritten while it has stolen elements
+            if (stolenIndex < stolenCount) {
+                return stolenCount - stolenIndex;
+            }
+
+            // elements left by destroyed consumers go first
+            Object[] orphans = parent.orphanedElements.poll();
+            if (orphans != null) {
+                System.arraycopy(orphans, 0, stolenElements, 0, orphans.length);
+                stolenIndex = 0;
+                stolenCount = orphans.length;
+                return orphans.length;
+            }
+
             StealingConsumer<T>[] localConsumers = consumers;
             int numberOfOtherConsumers = localConsumers.length;
+            if (numberOfOtherConsumers == 0) {
+                return 0;
+            }
+
+            // choose consumer with the largest backlog, start from the next one to break ties
+            StealingConsumer<T> victim = null;
+            long victimBacklog = 0;
             int localNextConsumerToStealFrom = (int) nextConsumerToStealFrom.get();
             for (int i = localNextConsumerToStealFrom; i < localNextConsumerToStealFrom + numberOfOtherConsumers; i++) {
-                StealingConsumer<T> consumerToStealFrom = localConsumers[i % numberOfOtherConsumers];
-                currentNode = consumerToStealFrom.currentReadNode;
-                currentBunch = currentNode.bunch;
-                currentIndex = LINKED_FIRST_OFFSET_INDEX;
+                StealingConsumer<T> candidate = localConsumers[i % numberOfOtherConsumers];
+                long backlog = candidate.backlog();
+                if (backlog > victimBacklog) {
+                    victim = candidate;
+                    victimBacklog = backlog;
+                } else if (backlog <= 0 && candidate.retiredVersion != 0 && candidate.retiredVersion <= parent.observedVersion) {
+                    // drained consumer which producer does not dispatch to any more
+                    parent.pruneRetiredConsumers();
+                }
+            }
 
-                for (;;) {
-                    currentIndex--;
+            nextConsumerToStealFrom.set(localNextConsumerToStealFrom + 1);
+            if (victim == null) {
+                // nothing at the moment
+                return 0;
+            }
+
+            // take a half of the backlog so the victim and the thief finish at about the same time
+            int count = stealRange(victim, (int) Math.min(stolenElements.length, Math.max(1, victimBacklog / 2)));
+            if (count > 0) {
+                AlignedLong victimStolenCounter = victim.stolenCounter;
+                long stolen;
+                do {
+                    stolen = victimStolenCounter.getAcquire();
+                } while (!victimStolenCounter.compareAndSwap(stolen, stolen + count));
+            }
+
+            stolenIndex = 0;
+            stolenCount = count;
+            return count;
+        }
+
+        private int stealRange(StealingConsumer<T> victim, int maxCount) {
+            Object[] localStolenElements = stolenElements;
+            AlignedLong victimReadBunchCounter = victim.readBunchCounter;
+
+            // continue from the bunch where previous steal stopped, it is checked under hazard so victim could not recycle it meanwhile
+            Object[] currentBunch;
+            long currentSequence;
+            if (stealVictim == victim && protect(stealBunch, stealBunchSequence, victimReadBunchCounter)) {
+                currentBunch = stealBunch;
+                currentSequence = stealBunchSequence;
+            } else {
+                // bunch read after the counter is the same or a later one, so the check is conservative
+                do {
+                    currentSequence = victimReadBunchCounter.getAcquire();
+                    currentBunch = victim.currentReadNode.bunch;
+                } while (!protect(currentBunch, currentSequence, victimReadBunchCounter));
+            }
+
+            int count = 0;
+            for (;;) {
+                Object[] nextBunch = (Object[]) ArrayAccess.getAcquire(currentBunch, linkedRefToNextIndex);
 
-                    element = ArrayMemory.getObject(currentBunch, currentIndex);
+                // seize contiguous range from the end of bunch until owner position
+                int i = linkedFirstOffsetIndex - 1;
+                for (; i >= LINKED_FIRST_ITEM_INDEX && count < maxCount; i--) {
+                    Object element = ArrayMemory.getObject(currentBunch, i);
 
                     if (element == EMPTY_REF) {
+                        i = LINKED_FIRST_ITEM_INDEX - 1;
                         break;
                     }
 
-                    // try to seize element
-                    if (element != null && element != STEAL_REF && ArrayMemory.compareAndSwapObject(currentBunch, currentIndex, element, STEAL_REF)) {
-                        nextConsumerToStealFrom.set(localNextConsumerToStealFrom + 1);
-                        return (T) element;
+                    if (element != null && element != STEAL_REF && ArrayMemory.compareAndSwapObject(currentBunch, i, element, STEAL_REF)) {
+                        localStolenElements[count++] = element;
                     }
+                }
 
-                    if (currentIndex == LINKED_FIRST_ITEM_INDEX) {
-                        Object[] refToNextBunch = (Object[]) ArrayMemory.getObject(currentBunch, LINKED_REF_TO_NEXT_ADDRESS);
-                        if (refToNextBunch == null) {
-                            break;
-                        }
+                // bunch is fully taken only if it was complete before scanning
+                if (nextBunch == null || i >= LINKED_FIRST_ITEM_INDEX) {
+                    break;
+                }
 
-                        currentBunch = refToNextBunch;
-                        currentIndex = LINKED_FIRST_OFFSET_INDEX;
-                    }
+                if (!protect(nextBunch, currentSequence + 1, victimReadBunchCounter)) {
+                    break;
                 }
+
+                currentBunch = nextBunch;
+                currentSequence++;
             }
 
-            // nothing at the moment
-            nextConsumerToStealFrom.set(localNextConsumerToStealFrom + 1);
-            return null;
+            stealHazard.lazySet(null);
+            stealVictim = victim;
+            stealBunch = currentBunch;
+            stealBunchSequence = currentSequence;
+            return count;
+        }
+
+        private boolean protect(Object[] bunch, long sequence, AlignedLong victimReadBunchCounter) {
+            // volatile write is a full fence so owner either sees the hazard or the bunch is already passed here
+            stealHazard.set(bunch);
+            if (victimReadBunchCounter.getAcquire() > sequence) {
+                stealHazard.lazySet(null);
+                return false;
+            }
+
+            return true;
         }
     }
 }
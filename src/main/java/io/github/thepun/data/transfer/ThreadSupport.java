@@ -0,0 +1,35 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Internal helpers depending on kind of the current thread.
+ *
+ * Java 8 version knows nothing about virtual threads. Java 21+ version of the class is packed to META-INF/versions/21.
+ */
+final class ThreadSupport {
+
+    private ThreadSupport() {
+    }
+
+    /**
+     * @param waitStrategy - strategy of the queue
+     * @return strategy to wait with in the current thread
+     */
+    static WaitStrategy waitStrategyFor(WaitStrategy waitStrategy) {
+        return waitStrategy;
+    }
+}
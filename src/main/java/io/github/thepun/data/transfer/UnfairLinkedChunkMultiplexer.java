@@ -16,10 +16,19 @@
 package io.github.thepun.data.transfer;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.github.thepun.unsafe.MemoryFence;
+
 /**
  * Created by thepun on 19.08.17.
+ *
+ * Order of taking elements from producers is chosen with {@link MultiplexingPolicy} at construction.
+ * Weight and priority of each producer are specified with {@link #createProducer(int, int)}.
+ * Chunk size is 1024 by default. Empty chunks are recycled by each producer or by a {@link ChunkPool} shared with other queues.
+ * Elements added before a producer is destroyed are still removed, the producer is dropped by consumer once it is empty.
  */
 @SuppressWarnings("unchecked")
 public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
@@ -27,29 +36,97 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
     // TODO: align producers
 
     // TODO: refactor constants
-    private static final int BUNCH_SIZE = 1024;
     private static final int FIRST_ITEM_INDEX = 1;
     private static final int SECOND_ITEM_INDEX = 2;
     private static final int REF_TO_NEXT_INDEX = 0;
-    private static final int FIRST_OFFSET_INDEX = BUNCH_SIZE;
 
-    private static final Object[] EMPTY_ARRAY = new Object[BUNCH_SIZE];
 
+    private final int chunkSize;
+    private final ChunkPool pool;
+    private final WaitStrategy waitStrategy;
+    private final MultiplexingPolicy policy;
 
     private int nextProducerIndex;
+    private int remainingWeight;
+    private int[] priorityClassOffsets;
     private ProducerSubqueue<T>[] producers;
 
     public UnfairLinkedChunkMultiplexer() {
+        this(BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public UnfairLinkedChunkMultiplexer(WaitStrategy waitStrategy) {
+        this(MultiplexingPolicy.UNFAIR, waitStrategy);
+    }
+
+    public UnfairLinkedChunkMultiplexer(MultiplexingPolicy policy) {
+        this(policy, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    public UnfairLinkedChunkMultiplexer(MultiplexingPolicy policy, WaitStrategy waitStrategy) {
+        this(policy, ChunkPool.DEFAULT_CHUNK_SIZE, waitStrategy);
+    }
+
+    public UnfairLinkedChunkMultiplexer(MultiplexingPolicy policy, int chunkSize, WaitStrategy waitStrategy) {
+        this(policy, chunkSize, null, waitStrategy);
+    }
+
+    public UnfairLinkedChunkMultiplexer(MultiplexingPolicy policy, ChunkPool pool, WaitStrategy waitStrategy) {
+        this(policy, ChunkPool.chunkSizeOf(pool), pool, waitStrategy);
+    }
+
+    private UnfairLinkedChunkMultiplexer(MultiplexingPolicy policy, int chunkSize, ChunkPool pool, WaitStrategy waitStrategy) {
+        if (chunkSize < ChunkPool.MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size should be at least " + ChunkPool.MIN_CHUNK_SIZE);
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy should be specified");
+        }
+
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy should be specified");
+        }
+
+        this.policy = policy;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+        this.waitStrategy = waitStrategy;
+
         producers = new ProducerSubqueue[0];
+        priorityClassOffsets = new int[0];
         nextProducerIndex = 0;
     }
 
     @Override
-    public synchronized QueueTail<T> createProducer() {
+    public QueueTail<T> createProducer() {
+        return createProducer(1, 0);
+    }
+
+    /**
+     * Create producer with weight and priority.
+     *
+     * @param weight - number of elements taken from the producer in turn by {@link MultiplexingPolicy#WEIGHTED} policy
+     * @param priority - priority of the producer for {@link MultiplexingPolicy#PRIORITY} policy, greater is taken first
+     * @return subqueue for single producer
+     */
+    public synchronized QueueTail<T> createProducer(int weight, int priority) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight should be greater then zero");
+        }
+
         ProducerSubqueue<T>[] oldProducers = producers;
         ProducerSubqueue<T>[] newProducers = Arrays.copyOf(oldProducers, oldProducers.length + 1);
-        ProducerSubqueue<T> producer = new ProducerSubqueue<>(this);
-        newProducers[oldProducers.length] = producer;
+        ProducerSubqueue<T> producer = new ProducerSubqueue<>(this, weight, priority);
+
+        // keep producers sorted by priority, new producer goes after the ones of the same priority
+        int index = oldProducers.length;
+        while (index > 0 && newProducers[index - 1].priority < priority) {
+            newProducers[index] = newProducers[index - 1];
+            index--;
+        }
+        newProducers[index] = producer;
+
         producers = newProducers;
         return producer;
     }
@@ -65,20 +142,22 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
             throw new IllegalArgumentException("Producer from another multiplexer");
         }
 
+        if (producerSubqueue.destroyed || indexOf(producers, producerSubqueue) == -1) {
+            throw new IllegalArgumentException("Producer not found");
+        }
+
+        // consumer drops the producer when it finds it empty
+        producerSubqueue.destroyed = true;
+    }
+
+    private synchronized void removeProducer(ProducerSubqueue<T> producer) {
         ProducerSubqueue[] newProducers;
         ProducerSubqueue[] oldProducers;
 
         oldProducers = producers;
-        int index = -1;
-        for (int i = 0; i < oldProducers.length; i++) {
-            if (oldProducers[i] == producer) {
-                index = i;
-                break;
-            }
-        }
-
+        int index = indexOf(oldProducers, producer);
         if (index == -1) {
-            throw new IllegalArgumentException("Producer not found");
+            return;
         }
 
         newProducers = new ProducerSubqueue[oldProducers.length - 1];
@@ -88,8 +167,40 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
         producers = newProducers;
     }
 
+    private static int indexOf(ProducerSubqueue<?>[] producers, ProducerSubqueue<?> producer) {
+        for (int i = 0; i < producers.length; i++) {
+            if (producers[i] == producer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public T removeFromHead() {
+        switch (policy) {
+            case ROUND_ROBIN:
+                return removeInTurn();
+            case WEIGHTED:
+                return removeByWeight();
+            case PRIORITY:
+                return removeByPriority();
+            default:
+                return removeUnfair();
+        }
+    }
+
+    @Override
+    public int removeFromHead(T[] elements, int offset, int length) {
+        if (policy != MultiplexingPolicy.UNFAIR) {
+            // policy is applied to each element
+            return Multiplexer.super.removeFromHead(elements, offset, length);
+        }
+
+        return removeUnfair(elements, offset, length);
+    }
+
+    private T removeUnfair() {
         ProducerSubqueue<T>[] localProducers = producers;
 
         int producerIndex = nextProducerIndex;
@@ -103,42 +214,148 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
 
             ProducerSubqueue<T> producer = localProducers[producerIndex % producerCount];
 
-            if (producer.consumerIndex == FIRST_OFFSET_INDEX) {
-                Object[] oldConsumerBunch = producer.consumerBunch;
-
-                Object[] newHeadBunch = (Object[]) oldConsumerBunch[REF_TO_NEXT_INDEX];
-                if (newHeadBunch == null) {
+            if (producer.consumerIndex == chunkSize) {
+                if (!producer.switchConsumerBunch()) {
+                    producer.removeIfDrained();
+                    producerIndex++;
                     continue;
                 }
-
-                producer.consumerIndex = FIRST_ITEM_INDEX;
-                producer.consumerBunch = newHeadBunch;
-
-                System.arraycopy(EMPTY_ARRAY, 0, oldConsumerBunch, 0, BUNCH_SIZE);
-
-                Object[] prevEmptyChainHead = producer.emptyChain.get();
-                if (prevEmptyChainHead == null) {
-                    producer.emptyChain.set(oldConsumerBunch);
-                } else {
-                    oldConsumerBunch[REF_TO_NEXT_INDEX] = prevEmptyChainHead;
-                    if (!producer.emptyChain.compareAndSet(prevEmptyChainHead, oldConsumerBunch)) {
-                        oldConsumerBunch[REF_TO_NEXT_INDEX] = null;
-                        producer.emptyChain.set(oldConsumerBunch);
-                    }
-                }
             }
 
-            Object element = producer.consumerBunch[producer.consumerIndex];
+            Object element = ArrayAccess.getAcquire(producer.consumerBunch, producer.consumerIndex);
             if (element != null) {
-                nextProducerIndex = producerIndex;
+                nextProducerIndex = producerIndex % producerCount;
                 producer.consumerIndex++;
                 return (T) element;
             }
 
+            producer.removeIfDrained();
             producerIndex++;
         }
     }
 
+    private int removeUnfair(T[] elements, int offset, int length) {
+        ProducerSubqueue<T>[] localProducers = producers;
+
+        int producerIndex = nextProducerIndex;
+        int producerCount = localProducers.length;
+        int maxProducerIndex = producerIndex + producerCount;
+        if (producerCount == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < length) {
+            if (producerIndex >= maxProducerIndex) {
+                nextProducerIndex = 0;
+                return count;
+            }
+
+            ProducerSubqueue<T> producer = localProducers[producerIndex % producerCount];
+            count += producer.removeFromConsumerSide(elements, offset + count, length - count);
+            if (count < length) {
+                producerIndex++;
+            }
+        }
+
+        nextProducerIndex = producerIndex % producerCount;
+        return count;
+    }
+
+    private T removeInTurn() {
+        ProducerSubqueue<T>[] localProducers = producers;
+
+        int producerCount = localProducers.length;
+        int producerIndex = nextProducerIndex;
+        for (int i = 0; i < producerCount; i++, producerIndex++) {
+            if (producerIndex >= producerCount) {
+                producerIndex = 0;
+            }
+
+            T element = localProducers[producerIndex].removeFromConsumerSide();
+            if (element != null) {
+                nextProducerIndex = producerIndex + 1;
+                return element;
+            }
+        }
+
+        return null;
+    }
+
+    private T removeByWeight() {
+        ProducerSubqueue<T>[] localProducers = producers;
+
+        int producerCount = localProducers.length;
+        int producerIndex = nextProducerIndex;
+        int weight = remainingWeight;
+        for (int i = 0; i < producerCount; i++, producerIndex++) {
+            if (producerIndex >= producerCount) {
+                producerIndex = 0;
+                weight = 0;
+            }
+
+            ProducerSubqueue<T> producer = localProducers[producerIndex];
+            if (weight <= 0) {
+                weight = producer.weight;
+            }
+
+            T element = producer.removeFromConsumerSide();
+            if (element != null) {
+                weight--;
+                nextProducerIndex = weight == 0 ? producerIndex + 1 : producerIndex;
+                remainingWeight = weight;
+                return element;
+            }
+
+            // empty producer loses the rest of its turn
+            weight = 0;
+        }
+
+        remainingWeight = 0;
+        return null;
+    }
+
+    private T removeByPriority() {
+        ProducerSubqueue<T>[] localProducers = producers;
+
+        int producerCount = localProducers.length;
+        int[] offsets = priorityClassOffsets;
+        if (offsets.length != producerCount) {
+            offsets = new int[producerCount];
+            priorityClassOffsets = offsets;
+        }
+
+        // producers are sorted by priority so each priority class is a range
+        int classStart = 0;
+        while (classStart < producerCount) {
+            int priority = localProducers[classStart].priority;
+            int classEnd = classStart + 1;
+            while (classEnd < producerCount && localProducers[classEnd].priority == priority) {
+                classEnd++;
+            }
+
+            int classSize = classEnd - classStart;
+            int offset = offsets[classStart];
+            for (int i = 0; i < classSize; i++) {
+                int producerOffset = (offset + i) % classSize;
+                T element = localProducers[classStart + producerOffset].removeFromConsumerSide();
+                if (element != null) {
+                    offsets[classStart] = producerOffset + 1;
+                    return element;
+                }
+            }
+
+            classStart = classEnd;
+        }
+
+        return null;
+    }
+
+    @Override
+    public T removeFromHead(long timeout, TimeUnit timeUnit) throws TimeoutException, InterruptedException {
+        return removeFromHead(timeout, timeUnit, waitStrategy);
+    }
+
 
     private static final class ProducerSubqueue<T> implements QueueTail<T> {
 
@@ -153,12 +370,26 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
         private Object[] producerBunch;
         private Object[] producerEmptyChain;
 
+        // index after the last element of a bunch is equal to its size
+        private final int firstOffsetIndex;
+        private final ChunkPool pool;
         private final AtomicReference<Object[]> emptyChain;
+        private final WaitStrategy waitStrategy;
+        private final int weight;
+        private final int priority;
+
+        private volatile boolean destroyed;
 
-        private ProducerSubqueue(UnfairLinkedChunkMultiplexer<T> parent) {
+        private ProducerSubqueue(UnfairLinkedChunkMultiplexer<T> parent, int weight, int priority) {
             this.parent = parent;
+            this.weight = weight;
+            this.priority = priority;
 
-            Object[] firstBunch = new Object[BUNCH_SIZE];
+            waitStrategy = parent.waitStrategy;
+            firstOffsetIndex = parent.chunkSize;
+            pool = parent.pool;
+
+            Object[] firstBunch = pool == null ? new Object[firstOffsetIndex] : pool.take();
             consumerBunch = firstBunch;
             producerBunch = firstBunch;
             consumerIndex = FIRST_ITEM_INDEX;
@@ -169,29 +400,171 @@ public final class UnfairLinkedChunkMultiplexer<T> implements Multiplexer<T> {
 
         @Override
         public boolean addToTail(T element) {
-            if (producerIndex == FIRST_OFFSET_INDEX) {
-                Object[] newTailBunch;
+            if (producerIndex == firstOffsetIndex) {
+                Object[] newTailBunch = takeProducerBunch();
+                newTailBunch[FIRST_ITEM_INDEX] = element;
+                ArrayAccess.setRelease(producerBunch, REF_TO_NEXT_INDEX, newTailBunch);
+                producerBunch = newTailBunch;
+                producerIndex = SECOND_ITEM_INDEX;
+                waitStrategy.signal();
+                return true;
+            }
+
+            ArrayAccess.setRelease(producerBunch, producerIndex++, element);
+            waitStrategy.signal();
+            return true;
+        }
 
-                if (producerEmptyChain == null) {
-                    Object[] newChain = emptyChain.getAndSet(null);
-                    if (newChain == null) {
-                        newChain = new Object[BUNCH_SIZE];
+        @Override
+        public int addAllToTail(T[] elements, int offset, int length) {
+            int localIndex = producerIndex;
+            Object[] localBunch = producerBunch;
+
+            int count = 0;
+            while (count < length) {
+                if (localIndex == firstOffsetIndex) {
+                    Object[] newTailBunch = takeProducerBunch();
+
+                    // fill new bunch before it becomes visible to consumer
+                    int bunchCount = Math.min(length - count, firstOffsetIndex - FIRST_ITEM_INDEX);
+                    System.arraycopy(elements, offset + count, newTailBunch, FIRST_ITEM_INDEX, bunchCount);
+                    ArrayAccess.setRelease(localBunch, REF_TO_NEXT_INDEX, newTailBunch);
+
+                    localBunch = newTailBunch;
+                    localIndex = FIRST_ITEM_INDEX + bunchCount;
+                    count += bunchCount;
+                } else {
+                    int bunchCount = Math.min(length - count, firstOffsetIndex - localIndex);
+                    MemoryFence.store();
+                    System.arraycopy(elements, offset + count, localBunch, localIndex, bunchCount);
+
+                    localIndex += bunchCount;
+                    count += bunchCount;
+                }
+            }
+
+            producerBunch = localBunch;
+            producerIndex = localIndex;
+            waitStrategy.signal();
+            return count;
+        }
+
+        private Object[] takeProducerBunch() {
+            if (pool != null) {
+                return pool.take();
+            }
+
+            if (producerEmptyChain == null) {
+                Object[] newChain = emptyChain.getAndSet(null);
+                if (newChain == null) {
+                    newChain = new Object[firstOffsetIndex];
+                }
+
+                producerEmptyChain = newChain;
+            }
+
+            Object[] newTailBunch = producerEmptyChain;
+            producerEmptyChain = (Object[]) producerEmptyChain[REF_TO_NEXT_INDEX];
+            newTailBunch[REF_TO_NEXT_INDEX] = null;
+            return newTailBunch;
+        }
+
+        private T removeFromConsumerSide() {
+            if (consumerIndex == firstOffsetIndex) {
+                if (!switchConsumerBunch()) {
+                    removeIfDrained();
+                    return null;
+                }
+            }
+
+            Object element = ArrayAccess.getAcquire(consumerBunch, consumerIndex);
+            if (element != null) {
+                consumerIndex++;
+                return (T) element;
+            }
+
+            removeIfDrained();
+            return null;
+        }
+
+        private int removeFromConsumerSide(T[] elements, int offset, int length) {
+            int localIndex = consumerIndex;
+            Object[] localBunch = consumerBunch;
+
+            int count = 0;
+            while (count < length) {
+                if (localIndex == firstOffsetIndex) {
+                    if (!switchConsumerBunch()) {
+                        break;
                     }
 
-                    producerEmptyChain = newChain;
+                    localIndex = FIRST_ITEM_INDEX;
+                    localBunch = consumerBunch;
                 }
 
-                newTailBunch = producerEmptyChain;
-                producerEmptyChain = (Object[]) producerEmptyChain[REF_TO_NEXT_INDEX];
-                newTailBunch[REF_TO_NEXT_INDEX] = null;
-                newTailBunch[FIRST_ITEM_INDEX] = element;
-                producerBunch[REF_TO_NEXT_INDEX] = newTailBunch;
-                producerBunch = newTailBunch;
-                producerIndex = SECOND_ITEM_INDEX;
+                Object element = ArrayAccess.getAcquire(localBunch, localIndex);
+                if (element == null) {
+                    break;
+                }
+
+                elements[offset + count] = (T) element;
+                localIndex++;
+                count++;
+            }
+
+            consumerIndex = localIndex;
+            if (count < length) {
+                removeIfDrained();
+            }
+
+            return count;
+        }
+
+        private void removeIfDrained() {
+            if (!destroyed) {
+                return;
+            }
+
+            // flag is read before checking for elements so nothing could be added after the check
+            Object[] localBunch = consumerBunch;
+            int localIndex = consumerIndex;
+            Object next = localIndex == firstOffsetIndex
+                    ? ArrayAccess.getAcquire(localBunch, REF_TO_NEXT_INDEX)
+                    : ArrayAccess.getAcquire(localBunch, localIndex);
+            if (next == null) {
+                parent.removeProducer(this);
+            }
+        }
+
+        private boolean switchConsumerBunch() {
+            Object[] oldConsumerBunch = consumerBunch;
+
+            Object[] newHeadBunch = (Object[]) ArrayAccess.getAcquire(oldConsumerBunch, REF_TO_NEXT_INDEX);
+            if (newHeadBunch == null) {
+                return false;
+            }
+
+            consumerIndex = FIRST_ITEM_INDEX;
+            consumerBunch = newHeadBunch;
+
+            Arrays.fill(oldConsumerBunch, null);
+
+            if (pool != null) {
+                pool.release(oldConsumerBunch);
                 return true;
             }
 
-            producerBunch[producerIndex++] = element;
+            Object[] prevEmptyChainHead = emptyChain.get();
+            if (prevEmptyChainHead == null) {
+                emptyChain.set(oldConsumerBunch);
+            } else {
+                oldConsumerBunch[REF_TO_NEXT_INDEX] = prevEmptyChainHead;
+                if (!emptyChain.compareAndSet(prevEmptyChainHead, oldConsumerBunch)) {
+                    oldConsumerBunch[REF_TO_NEXT_INDEX] = null;
+                    emptyChain.set(oldConsumerBunch);
+                }
+            }
+
             return true;
         }
     }
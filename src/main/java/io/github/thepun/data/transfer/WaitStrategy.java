@@ -0,0 +1,49 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+/**
+ * Defines how a thread waits for a queue to change its state.
+ *
+ * Waiting thread calls {@link #idle(int, long)} after each unsuccessful attempt and {@link #finish(int)} once waiting is over.
+ * The other side of the queue calls {@link #signal()} after each change that could be awaited.
+ * A single instance is usually shared between all threads working with a queue.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Pause after unsuccessful attempt.
+     *
+     * @param attempt - number of unsuccessful attempts in a row starting from zero
+     * @param deadline - value of {@link System#nanoTime()} after which waiting is useless
+     */
+    void idle(int attempt, long deadline);
+
+    /**
+     * Called by waiting thread when waiting is over successfully or not.
+     *
+     * @param attempt - number of unsuccessful attempts made
+     */
+    default void finish(int attempt) {
+    }
+
+    /**
+     * Called by the other side of the queue to notify waiting threads.
+     */
+    default void signal() {
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Internal class for storing long value aligned to cache lines for lesser false sharing.
+ *
+ * Variable that stores the value is not volatile. Use getAcquire / setRelease methods to publish data between threads.
+ * Java 9+ version based on VarHandle.
+ *
+ * Provides Compare-and-Swap (CAS) operation.
+ */
+final class AlignedLong extends AlignedLongFields {
+
+    private static final VarHandle VALUE;
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(AlignedLongFields.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // 56 bytes gap
+    private long t1, t2, t3, t4, t5, t6, t7, t8;
+
+
+    long get() {
+        return value;
+    }
+
+    void set(long newValue) {
+        value = newValue;
+    }
+
+    long getAcquire() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    boolean compareAndSwap(long expectedValue, long newValue) {
+        return VALUE.compareAndSet(this, expectedValue, newValue);
+    }
+
+    long getAndIncrement() {
+        return (long) VALUE.getAndAdd(this, 1L);
+    }
+
+    long getAndAdd(long delta) {
+        return (long) VALUE.getAndAdd(this, delta);
+    }
+}
+
+class AlignedLongPadding {
+    // 12 bytes header
+
+    // 4 byte gap
+    private int t0;
+
+    // 48 byte gap
+    private long t1, t2, t3, t4, t5, t6;
+}
+
+class AlignedLongFields extends AlignedLongPadding {
+
+    // non-volatile field to store current value
+    long value;
+
+}
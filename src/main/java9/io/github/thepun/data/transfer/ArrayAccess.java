@@ -0,0 +1,40 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Internal accessors for array slots shared between threads.
+ *
+ * Java 9+ version based on VarHandle.
+ */
+final class ArrayAccess {
+
+    private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private ArrayAccess() {
+    }
+
+    static Object getAcquire(Object[] array, int index) {
+        return ELEMENT.getAcquire(array, index);
+    }
+
+    static void setRelease(Object[] array, int index, Object element) {
+        ELEMENT.setRelease(array, index, element);
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import io.github.thepun.data.transfer.BlockingWaitStrategy;
+import io.github.thepun.data.transfer.ChunkPool;
+import io.github.thepun.data.transfer.DispatchPolicy;
+import io.github.thepun.data.transfer.YieldingWaitStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class ExecutorServiceTest {
+
+    @Parameter(0)
+    public String name;
+
+    @Parameter(1)
+    public Supplier<ExecutorService> factory;
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = factory.get();
+    }
+
+    @After
+    public void destroyExecutor() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runsAllTasks() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            futures.add(executor.submit(() -> {
+                counter.incrementAndGet();
+                return value;
+            }));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1000, counter.get());
+    }
+
+    @Test
+    public void shutdownCompletesQueuedTasks() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(counter::incrementAndGet);
+        }
+
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        assertEquals(1000, counter.get());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsAfterShutdown() {
+        executor.shutdown();
+        executor.execute(() -> {});
+    }
+
+    @Test
+    public void shutdownNowReturnsWaitingTasks() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            executor.execute(counter::incrementAndGet);
+        }
+
+        // blocked workers are interrupted and waiting tasks are returned
+        List<Runnable> tasks = executor.shutdownNow();
+        assertEquals(10, tasks.size());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void workerSurvivesFailedTask() throws Exception {
+        executor.execute(() -> {
+            throw new IllegalStateException();
+        });
+
+        Future<?> future = executor.submit(() -> {
+            throw new IllegalStateException();
+        });
+        assertNotNull(executor.submit(() -> 1).get(10, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        List<Object[]> list = new ArrayList<>();
+        list.add(new Object[] {"RouterExecutorService", (Supplier<ExecutorService>) () -> new RouterExecutorService(2, 1024)});
+        list.add(new Object[] {"RouterExecutorServiceYielding", (Supplier<ExecutorService>) () -> new RouterExecutorService(2, 1024, new YieldingWaitStrategy())});
+        list.add(new Object[] {"StealingExecutorService", (Supplier<ExecutorService>) () -> new StealingExecutorService(2)});
+        list.add(new Object[] {"StealingExecutorServicePooled", (Supplier<ExecutorService>) () -> new StealingExecutorService(2, new ChunkPool(16, 64),
+                DispatchPolicy.LEAST_LOADED, 1, new BlockingWaitStrategy(), Executors.defaultThreadFactory())});
+        return list;
+    }
+}
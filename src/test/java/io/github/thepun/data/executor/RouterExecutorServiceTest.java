@@ -0,0 +1,138 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.executor;
+
+import io.github.thepun.data.transfer.BlockingWaitStrategy;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RouterExecutorServiceTest {
+
+    @Test
+    public void abortWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RouterExecutorService executor = blockedExecutor(RejectionPolicy.ABORT, release);
+        try {
+            executor.execute(() -> {});
+            executor.execute(() -> {});
+            try {
+                executor.execute(() -> {});
+                fail();
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void callerRunsWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RouterExecutorService executor = blockedExecutor(RejectionPolicy.CALLER_RUNS, release);
+        try {
+            executor.execute(() -> {});
+            executor.execute(() -> {});
+
+            AtomicReference<Thread> runner = new AtomicReference<>();
+            executor.execute(() -> runner.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), runner.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void waitForSpaceWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RouterExecutorService executor = blockedExecutor(RejectionPolicy.WAIT, release);
+        try {
+            AtomicInteger counter = new AtomicInteger();
+            executor.execute(counter::incrementAndGet);
+            executor.execute(counter::incrementAndGet);
+
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            });
+            releaser.start();
+
+            executor.execute(counter::incrementAndGet);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(3, counter.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void manySubmitters() throws InterruptedException {
+        RouterExecutorService executor = new RouterExecutorService(2, 64, new BlockingWaitStrategy(), RejectionPolicy.WAIT, Executors.defaultThreadFactory());
+        AtomicInteger counter = new AtomicInteger();
+
+        Thread[] submitters = new Thread[4];
+        for (int i = 0; i < submitters.length; i++) {
+            submitters[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    executor.execute(counter::incrementAndGet);
+                }
+            });
+            submitters[i].start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40000, counter.get());
+    }
+
+    private static RouterExecutorService blockedExecutor(RejectionPolicy policy, CountDownLatch release) throws InterruptedException {
+        RouterExecutorService executor = new RouterExecutorService(1, 2, new BlockingWaitStrategy(), policy, Executors.defaultThreadFactory());
+
+        // single worker is busy so the queue of two tasks fills up
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return executor;
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.reactive;
+
+import io.github.thepun.data.transfer.BackoffWaitStrategy;
+import io.github.thepun.data.transfer.FairRingBufferMultiplexer;
+import io.github.thepun.data.transfer.Multiplexer;
+import io.github.thepun.data.transfer.QueueHead;
+import io.github.thepun.data.transfer.QueueTail;
+import io.github.thepun.data.transfer.RingBufferRouter;
+import io.github.thepun.data.transfer.StealingLinkedChunkDemultiplexer;
+import io.github.thepun.data.transfer.UnfairLinkedChunkMultiplexer;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QueuePublisherSubscriberTest {
+
+    private static final Executor EXECUTOR = task -> {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    @Test
+    public void publisherHonoursDemand() throws Exception {
+        RingBufferRouter<Long> router = new RingBufferRouter<>(1024);
+        QueueTail<Long> producer = router.createProducer();
+        for (long i = 0; i < 100; i++) {
+            assertTrue(producer.addToTail(i));
+        }
+
+        TestSubscriber subscriber = new TestSubscriber(10);
+        new QueuePublisher<>(router, EXECUTOR, 4, new BackoffWaitStrategy()).subscribe(subscriber);
+
+        for (long i = 0; i < 10; i++) {
+            assertEquals(i, (long) subscriber.elements.poll(10, TimeUnit.SECONDS));
+        }
+        assertNull(subscriber.elements.poll(100, TimeUnit.MILLISECONDS));
+
+        subscriber.subscription.request(90);
+        for (long i = 10; i < 100; i++) {
+            assertEquals(i, (long) subscriber.elements.poll(10, TimeUnit.SECONDS));
+        }
+
+        subscriber.subscription.request(10);
+        subscriber.subscription.cancel();
+        Thread.sleep(100);
+
+        producer.addToTail(100L);
+        assertNull(subscriber.elements.poll(100, TimeUnit.MILLISECONDS));
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void invalidRequestSignalsError() throws Exception {
+        RingBufferRouter<Long> router = new RingBufferRouter<>(16);
+
+        TestSubscriber subscriber = new TestSubscriber(0);
+        new QueuePublisher<>(router, EXECUTOR).subscribe(subscriber);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (subscriber.error == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void fullQueueSlowsDownPublisher() throws Exception {
+        RingBufferRouter<Long> source = new RingBufferRouter<>(1024);
+        RingBufferRouter<Long> target = new RingBufferRouter<>(16);
+        QueueHead<Long> consumer = target.createConsumer();
+
+        QueueSubscriber<Long> subscriber = new QueueSubscriber<>(target, 8, new BackoffWaitStrategy());
+        new QueuePublisher<>(source, EXECUTOR).subscribe(subscriber);
+
+        Thread producerThread = new Thread(() -> {
+            QueueTail<Long> producer = source.createProducer();
+            for (long i = 0; i < 100_000; i++) {
+                while (!producer.addToTail(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producerThread.setDaemon(true);
+        producerThread.start();
+
+        for (long i = 0; i < 100_000; i++) {
+            Long element;
+            while ((element = consumer.removeFromHead()) == null) {
+                Thread.yield();
+            }
+
+            assertEquals(i, (long) element);
+        }
+
+        subscriber.cancel();
+        assertNull(subscriber.getError());
+    }
+
+    @Test
+    public void completedSubscriberKeepsElementsOfFairMultiplexer() {
+        completedSubscriberKeepsElements(new FairRingBufferMultiplexer<>(1024));
+    }
+
+    @Test
+    public void completedSubscriberKeepsElementsOfUnfairMultiplexer() {
+        completedSubscriberKeepsElements(new UnfairLinkedChunkMultiplexer<>());
+    }
+
+    @Test
+    public void cancelledSubscriberDestroysProducer() {
+        FairRingBufferMultiplexer<Long> target = new FairRingBufferMultiplexer<>(16);
+        QueueSubscriber<Long> subscriber = new QueueSubscriber<>(target);
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        subscriber.onNext(1L);
+        subscriber.onNext(2L);
+        assertEquals(16, target.capacity());
+
+        // no completion comes after cancel, lane is dropped once its elements are removed
+        subscriber.cancel();
+        assertEquals(1L, (long) target.removeFromHead());
+        assertEquals(2L, (long) target.removeFromHead());
+        assertNull(target.removeFromHead());
+        assertEquals(0, target.capacity());
+    }
+
+    @Test
+    public void cancelledPublisherLeavesBacklogToOtherConsumers() throws Exception {
+        StealingLinkedChunkDemultiplexer<Long> source = new StealingLinkedChunkDemultiplexer<>();
+        QueueHead<Long> other = source.createConsumer();
+
+        Thread[] deliveryThread = new Thread[1];
+        TestSubscriber subscriber = new TestSubscriber(0);
+        new QueuePublisher<Long>(source, task -> {
+            deliveryThread[0] = new Thread(task);
+            deliveryThread[0].start();
+        }).subscribe(subscriber);
+
+        // every second element goes to the consumer of the publisher
+        for (long i = 0; i < 1000; i++) {
+            source.addToTail(i);
+        }
+
+        subscriber.subscription.cancel();
+        deliveryThread[0].join(10_000);
+        assertFalse(deliveryThread[0].isAlive());
+
+        Set<Long> taken = new HashSet<>();
+        Long element;
+        while ((element = other.removeFromHead()) != null) {
+            assertTrue(taken.add(element));
+        }
+        assertEquals(1000, taken.size());
+    }
+
+    private static void completedSubscriberKeepsElements(Multiplexer<Long> target) {
+        QueueSubscriber<Long> subscriber = new QueueSubscriber<>(target, 8, new BackoffWaitStrategy());
+        new RangePublisher(1000).subscribe(subscriber);
+        assertTrue(subscriber.isCompleted());
+
+        // producer is destroyed already but its elements are still there
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i, (long) target.removeFromHead());
+        }
+        assertNull(target.removeFromHead());
+    }
+
+
+    private static final class RangePublisher implements Publisher<Long> {
+
+        private final long count;
+
+        private RangePublisher(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Long> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private long next;
+                private long demand;
+                private boolean emitting;
+
+                @Override
+                public void request(long n) {
+                    demand += n;
+
+                    // request from onNext only adds demand
+                    if (emitting) {
+                        return;
+                    }
+
+                    emitting = true;
+                    while (demand > 0 && next < count) {
+                        demand--;
+                        subscriber.onNext(next++);
+                    }
+                    emitting = false;
+
+                    if (next == count) {
+                        next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    next = count + 1;
+                }
+            });
+        }
+    }
+
+    private static final class TestSubscriber implements Subscriber<Long> {
+
+        private final long initialRequest;
+        private final BlockingQueue<Long> elements;
+
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+
+        private TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+
+            elements = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Long element) {
+            elements.add(element);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
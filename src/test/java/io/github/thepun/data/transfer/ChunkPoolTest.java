@@ -0,0 +1,159 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ChunkPoolTest {
+
+    @Test
+    public void takeReturnsReleasedChunk() {
+        ChunkPool pool = new ChunkPool(16, 4, 1);
+        Object[] chunk = pool.take();
+        assertEquals(16, chunk.length);
+        assertEquals(0, pool.retainedChunks());
+
+        assertTrue(pool.release(chunk));
+        assertEquals(1, pool.retainedChunks());
+        assertSame(chunk, pool.take());
+        assertEquals(0, pool.retainedChunks());
+    }
+
+    @Test
+    public void retainedChunksAreBounded() {
+        ChunkPool pool = new ChunkPool(16, 4, 1);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pool.release(new Object[16]));
+        }
+
+        assertFalse(pool.release(new Object[16]));
+        assertEquals(4, pool.retainedChunks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongChunkSize() {
+        ChunkPool pool = new ChunkPool(16, 4);
+        pool.release(new Object[32]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooSmallChunkSize() {
+        new LinkedChunkBridge<Long>(2);
+    }
+
+    @Test
+    public void poolIsSharedBetweenQueues() throws InterruptedException {
+        ChunkPool pool = new ChunkPool(8, 64);
+        LinkedChunkBridge<Long> bridge = new LinkedChunkBridge<>(pool);
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.ROUND_ROBIN, pool, BusySpinWaitStrategy.INSTANCE);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+
+        for (long i = 0; i < 1000; i++) {
+            bridge.addToTail(i);
+        }
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i, (long) bridge.removeFromHead());
+        }
+        assertNull(bridge.removeFromHead());
+        assertTrue(pool.retainedChunks() > 0);
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < 1000; i++) {
+                first.addToTail(i);
+                second.addToTail(-i);
+            }
+        });
+        producer.start();
+        producer.join();
+
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i, (long) multiplexer.removeFromHead());
+            assertEquals(-i, (long) multiplexer.removeFromHead());
+        }
+        assertNull(multiplexer.removeFromHead());
+        assertTrue(pool.retainedChunks() <= 64);
+    }
+
+    @Test
+    public void poolIsSharedWithStealingDemultiplexer() throws InterruptedException {
+        int total = 300000;
+        ChunkPool pool = new ChunkPool(8, 64);
+        LinkedChunkBridge<Object> bridge = new LinkedChunkBridge<>(pool);
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(pool);
+        AtomicIntegerArray taken = new AtomicIntegerArray(total);
+        AtomicLong takenCount = new AtomicLong();
+        boolean[] failed = new boolean[1];
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                demultiplexer.addToTail(i);
+            }
+        }));
+
+        for (int c = 0; c < 3; c++) {
+            QueueHead<Long> consumer = demultiplexer.createConsumer();
+            threads.add(new Thread(() -> {
+                while (takenCount.get() < total) {
+                    Long element = consumer.removeFromHead();
+                    if (element != null) {
+                        if (taken.getAndSet((int) (long) element, 1) != 0) {
+                            failed[0] = true;
+                        }
+                        takenCount.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        // bridge reuses chunks released by demultiplexer consumers while thieves are scanning
+        threads.add(new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                bridge.addToTail(i);
+            }
+        }));
+        threads.add(new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                Object element;
+                while ((element = bridge.removeFromHead()) == null) {
+                    Thread.yield();
+                }
+                if (!Long.valueOf(i).equals(element)) {
+                    failed[0] = true;
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed[0]);
+        assertEquals(total, takenCount.get());
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CooperationRouterTest {
+
+    @Test
+    public void fullQueue() {
+        CooperationRouter<Long> router = new CooperationRouter<>(8);
+        QueueTail<Long> producer = router.createProducer();
+        QueueHead<Long> consumer = router.createConsumer();
+
+        for (int l = 0; l < 100; l++) {
+            for (long i = 0; i < 8; i++) {
+                assertTrue(producer.addToTail(i));
+            }
+            assertFalse(producer.addToTail(8L));
+
+            for (long i = 0; i < 8; i++) {
+                assertEquals(i, (long) consumer.removeFromHead());
+            }
+            assertNull(consumer.removeFromHead());
+        }
+    }
+
+    @Test
+    public void sharedQueueSize() {
+        CooperationRouter<Long> router = new CooperationRouter<>(8);
+        QueueTail<Long> producer1 = router.createProducer();
+        QueueTail<Long> producer2 = router.createProducer();
+
+        for (long i = 0; i < 4; i++) {
+            assertTrue(producer1.addToTail(i));
+            assertTrue(producer2.addToTail(i));
+        }
+
+        assertFalse(producer1.addToTail(4L));
+        assertFalse(producer2.addToTail(4L));
+    }
+
+    @Test
+    public void elementsOfDestroyedProducer() {
+        CooperationRouter<Long> router = new CooperationRouter<>(8);
+        QueueHead<Long> consumer = router.createConsumer();
+
+        QueueTail<Long> producer = router.createProducer();
+        producer.addToTail(1L);
+        router.destroyProducer(producer);
+
+        producer = router.createProducer();
+        producer.addToTail(2L);
+
+        assertEquals(1L, (long) consumer.removeFromHead());
+        assertEquals(2L, (long) consumer.removeFromHead());
+        assertNull(consumer.removeFromHead());
+    }
+
+    @Test
+    public void multipleProducersAndConsumers() throws Exception {
+        int producerCount = 3;
+        int consumerCount = 3;
+        long elementsPerProducer = 200000;
+
+        CooperationRouter<Long> router = new CooperationRouter<>(1024);
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producerCount; p++) {
+            QueueTail<Long> producer = router.createProducer();
+            long base = p * elementsPerProducer;
+            threads.add(new Thread(() -> {
+                for (long i = 0; i < elementsPerProducer; i++) {
+                    while (!producer.addToTail(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        long total = producerCount * elementsPerProducer;
+        boolean[] orderViolation = new boolean[1];
+        for (int c = 0; c < consumerCount; c++) {
+            QueueHead<Long> consumer = router.createConsumer();
+            threads.add(new Thread(() -> {
+                // elements of each producer should come in order
+                long[] last = new long[producerCount];
+                for (int p = 0; p < producerCount; p++) {
+                    last[p] = -1;
+                }
+
+                while (count.get() < total) {
+                    Long element = consumer.removeFromHead();
+                    if (element == null) {
+                        Thread.yield();
+                        continue;
+                    }
+
+                    int p = (int) (element / elementsPerProducer);
+                    if (element <= last[p]) {
+                        orderViolation[0] = true;
+                    }
+
+                    last[p] = element;
+                    sum.addAndGet(element);
+                    count.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(orderViolation[0]);
+        assertEquals(total, count.get());
+        assertEquals(total * (total - 1) / 2, sum.get());
+    }
+
+    @Test(timeout = 10000)
+    public void consumerHelpsPastSlotRefilledForNextLap() {
+        CooperationRouter<Long> router = new CooperationRouter<>(2);
+        CooperationProducer<Long> producer = (CooperationProducer<Long>) router.createProducer();
+        QueueHead<Long> consumer = router.createConsumer();
+
+        assertTrue(producer.addToTail(1L));
+
+        // as if another consumer took the slot and was descheduled before moving the read counter
+        router.states.set(0, CooperationRouter.freeState(1));
+        producer.lane[0] = null;
+
+        assertTrue(producer.addToTail(2L));
+        assertTrue(producer.addToTail(3L));
+
+        assertEquals(2L, (long) consumer.removeFromHead());
+        assertEquals(3L, (long) consumer.removeFromHead());
+        assertNull(consumer.removeFromHead());
+    }
+
+    @Test
+    public void manyConsumersOnTinyRing() throws Exception {
+        int consumerCount = 4;
+        long total = 200000;
+
+        // ring is full most of the time so slots are refilled while the read counter is behind
+        CooperationRouter<Long> router = new CooperationRouter<>(2);
+        QueueTail<Long> producer = router.createProducer();
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                while (!producer.addToTail(i)) {
+                    Thread.yield();
+                }
+            }
+        }));
+
+        for (int c = 0; c < consumerCount; c++) {
+            QueueHead<Long> consumer = router.createConsumer();
+            threads.add(new Thread(() -> {
+                while (count.get() < total) {
+                    Long element = consumer.removeFromHead();
+                    if (element == null) {
+                        Thread.yield();
+                        continue;
+                    }
+
+                    sum.addAndGet(element);
+                    count.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assertFalse(thread.isAlive());
+        }
+
+        assertEquals(total, count.get());
+        assertEquals(total * (total - 1) / 2, sum.get());
+    }
+}
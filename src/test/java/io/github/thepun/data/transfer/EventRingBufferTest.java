@@ -0,0 +1,128 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class EventRingBufferTest {
+
+    @Parameter(0)
+    public EventTail<long[]> tail;
+
+    @Parameter(1)
+    public EventHead<long[]> head;
+
+    @Test
+    public void emptyQueue() {
+        for (int i = 0; i < 100; i++) {
+            assertNull(head.claimHead());
+        }
+    }
+
+    @Test
+    public void writeAndReadInPlace() {
+        for (long l = 0; l < 100000; l++) {
+            long[] writeEvent = tail.claimTail();
+            assertNotNull(writeEvent);
+            writeEvent[0] = l;
+            writeEvent[1] = -l;
+            tail.commitTail();
+
+            long[] readEvent = head.claimHead();
+            assertSame(writeEvent, readEvent);
+            assertEquals(l, readEvent[0]);
+            assertEquals(-l, readEvent[1]);
+            head.releaseHead();
+        }
+
+        assertNull(head.claimHead());
+    }
+
+    @Test
+    public void fillAndDrain() {
+        for (int l = 0; l < 100; l++) {
+            int count = 0;
+            long[] writeEvent;
+            while ((writeEvent = tail.claimTail()) != null) {
+                writeEvent[0] = count++;
+                tail.commitTail();
+            }
+
+            assertEquals(64, count);
+
+            for (int i = 0; i < count; i++) {
+                long[] readEvent = head.claimHead();
+                assertSame(readEvent, head.claimHead());
+                assertEquals(i, readEvent[0]);
+                head.releaseHead();
+            }
+
+            assertNull(head.claimHead());
+        }
+    }
+
+    @Test
+    public void eventsAreReused() {
+        List<long[]> events = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            events.add(tail.claimTail());
+            tail.commitTail();
+            head.claimHead();
+            head.releaseHead();
+        }
+
+        for (int i = 0; i < 64; i++) {
+            assertSame(events.get(i), tail.claimTail());
+            tail.commitTail();
+            head.claimHead();
+            head.releaseHead();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitWithoutClaim() {
+        tail.commitTail();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutClaim() {
+        head.releaseHead();
+    }
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        List<Object[]> list = new ArrayList<>();
+
+        EventRingBufferBridge<long[]> bridge = new EventRingBufferBridge<>(64, () -> new long[2]);
+        list.add(new Object[] {bridge, bridge});
+
+        EventRingBufferRouter<long[]> router = new EventRingBufferRouter<>(64, () -> new long[2]);
+        list.add(new Object[] {router.createProducer(), router.createConsumer()});
+
+        return list;
+    }
+}
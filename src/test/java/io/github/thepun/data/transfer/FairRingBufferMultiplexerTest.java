@@ -0,0 +1,118 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FairRingBufferMultiplexerTest {
+
+    @Test
+    public void producersTakeTurns() {
+        FairRingBufferMultiplexer<Long> multiplexer = new FairRingBufferMultiplexer<>(16);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+
+        for (long i = 0; i < 3; i++) {
+            first.addToTail(i);
+            second.addToTail(100 + i);
+        }
+
+        long[] expected = {0, 100, 1, 101, 2, 102};
+        for (long element : expected) {
+            assertEquals(element, (long) multiplexer.removeFromHead());
+        }
+        assertNull(multiplexer.removeFromHead());
+    }
+
+    @Test
+    public void fullProducerDoesNotBlockOthers() {
+        FairRingBufferMultiplexer<Long> multiplexer = new FairRingBufferMultiplexer<>(4);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+
+        for (long i = 0; i < 4; i++) {
+            assertTrue(first.addToTail(i));
+        }
+        assertFalse(first.addToTail(4L));
+        assertTrue(second.addToTail(100L));
+
+        assertEquals(5, multiplexer.depth());
+        assertEquals(8, multiplexer.capacity());
+    }
+
+    @Test
+    public void batchRemoveTakesFromAllProducers() {
+        FairRingBufferMultiplexer<Long> multiplexer = new FairRingBufferMultiplexer<>(16);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+
+        Long[] elements = {0L, 1L, 2L};
+        assertEquals(3, first.addAllToTail(elements));
+        second.addToTail(100L);
+
+        Long[] removed = new Long[10];
+        assertEquals(4, multiplexer.removeFromHead(removed));
+        assertEquals(0L, (long) removed[0]);
+        assertEquals(2L, (long) removed[2]);
+        assertEquals(100L, (long) removed[3]);
+        assertEquals(0, multiplexer.removeFromHead(removed));
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        FairRingBufferMultiplexer<Long> multiplexer = new FairRingBufferMultiplexer<>(1024);
+        int producerCount = 3;
+        long count = 300000;
+
+        Thread[] threads = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            QueueTail<Long> producer = multiplexer.createProducer();
+            long first = p * count;
+            threads[p] = new Thread(() -> {
+                for (long i = 0; i < count; i++) {
+                    while (!producer.addToTail(first + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] last = new long[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            last[p] = p * count - 1;
+        }
+
+        for (long received = 0; received < count * producerCount; ) {
+            Long element = multiplexer.removeFromHead();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+
+            int producer = (int) (element / count);
+            assertEquals(last[producer] + 1, (long) element);
+            last[producer] = element;
+            received++;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GreedyRingBufferTest {
+
+    @Test
+    public void partialBatchDoesNotBlockMultiplexer() {
+        GreedyRingBufferMultiplexer<Long> multiplexer = new GreedyRingBufferMultiplexer<>(4);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+
+        assertPartialBatchIsNotClaimed(first, second, multiplexer);
+    }
+
+    @Test
+    public void partialBatchDoesNotBlockRouter() {
+        GreedyRingBufferRouter<Long> router = new GreedyRingBufferRouter<>(4);
+        QueueTail<Long> first = router.createProducer();
+        QueueTail<Long> second = router.createProducer();
+        QueueHead<Long> consumer = router.createConsumer();
+
+        assertPartialBatchIsNotClaimed(first, second, consumer);
+    }
+
+    private static void assertPartialBatchIsNotClaimed(QueueTail<Long> first, QueueTail<Long> second, QueueHead<Long> consumer) {
+        assertEquals(3, first.addAllToTail(new Long[] {0L, 1L, 2L}));
+
+        // only one slot is free, the rest of the batch stays with the caller
+        assertEquals(1, first.addAllToTail(new Long[] {3L, 4L, 5L, 6L, 7L}));
+        assertEquals(0, first.addAllToTail(new Long[] {4L}));
+
+        for (long i = 0; i < 4; i++) {
+            assertEquals(i, (long) consumer.removeFromHead());
+        }
+        assertNull(consumer.removeFromHead());
+
+        // other producer is not stuck behind slots claimed for the dropped elements
+        assertTrue(second.addToTail(100L));
+        assertEquals(100L, (long) consumer.removeFromHead());
+        assertNull(consumer.removeFromHead());
+    }
+}
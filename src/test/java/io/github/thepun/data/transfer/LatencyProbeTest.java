@@ -0,0 +1,108 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyProbeTest {
+
+    @Test
+    public void histogramPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.recordValue(i * 1000);
+        }
+
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(10000000, histogram.getMaxValue());
+        assertEquals(5000000, histogram.getValueAtPercentile(50), 5000000 / 64);
+        assertEquals(9900000, histogram.getValueAtPercentile(99), 9900000 / 64);
+        assertEquals(5000500, histogram.getMean(), 5000500 / 64);
+
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void histogramSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 0; i < 100; i++) {
+            histogram.recordValue(i);
+        }
+
+        assertEquals(49, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void coordinatedOmissionCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordValueWithExpectedInterval(1000, 100);
+
+        // 1000, 900, ... 100
+        assertEquals(10, histogram.getTotalCount());
+        assertEquals(1000, histogram.getMaxValue());
+    }
+
+    @Test
+    public void sampleTransitTime() {
+        RingBufferRouter<Long> router = new RingBufferRouter<>(1024);
+        LatencyProbe probe = new LatencyProbe(10);
+        QueueTail<Long> tail = probe.probeTail(router.createProducer());
+        QueueHead<Long> head = probe.probeHead(router.createConsumer());
+
+        for (long l = 0; l < 100; l++) {
+            for (long i = 0; i < 10; i++) {
+                // out of Long cache so instances are distinct
+                tail.addToTail(1000 + l * 10 + i);
+            }
+
+            for (long i = 0; i < 10; i++) {
+                assertNotNull(head.removeFromHead());
+            }
+        }
+
+        LatencyHistogram histogram = probe.histogram();
+        assertEquals(100, histogram.getTotalCount());
+        assertTrue(histogram.getValueAtPercentile(50) > 0);
+        assertTrue(histogram.getMaxValue() >= histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void rejectedSampleKeepsFirstAttemptTime() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(1);
+        LatencyProbe probe = new LatencyProbe(2);
+        QueueTail<Long> tail = probe.probeTail(bridge);
+        QueueHead<Long> head = probe.probeHead(bridge);
+
+        // second element is sampled but rejected until the first one is removed
+        Long first = 1001L;
+        Long second = 1002L;
+        assertTrue(tail.addToTail(first));
+        assertFalse(tail.addToTail(second));
+
+        Thread.sleep(10);
+        assertSame(first, head.removeFromHead());
+        assertTrue(tail.addToTail(second));
+        assertSame(second, head.removeFromHead());
+
+        assertEquals(1, probe.histogram().getTotalCount());
+        assertTrue(probe.histogram().getMaxValue() >= 10000000);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class LongOrderCorrectnessTest {
+
+    @Parameter(0)
+    public LongQueueTail tail;
+
+    @Parameter(1)
+    public LongQueueHead head;
+
+    @Test
+    public void emptyQueue() {
+        for (int i = 0; i < 100; i++) {
+            long element = head.removeFromHead();
+            assertEquals(LongQueueHead.EMPTY, element);
+        }
+    }
+
+    @Test
+    public void addAndGet() {
+        tail.addToTail(1L);
+
+        long element = head.removeFromHead();
+        assertEquals(1L, element);
+    }
+
+    @Test
+    public void addBunchAndGetBunchMultipleTimes() {
+        for (int l = 0; l < 1000; l++) {
+            for (long i = 0; i < 10000; i++) {
+                boolean result = tail.addToTail(i * l);
+                assertTrue(result);
+            }
+
+            for (long i = 0; i < 10000; i++) {
+                long element = head.removeFromHead();
+                assertEquals(i * l, element);
+            }
+        }
+
+        assertEquals(LongQueueHead.EMPTY, head.removeFromHead());
+    }
+
+    @Test
+    public void addArrayAndRemoveIntoArray() {
+        long[] elements = new long[3000];
+
+        for (int l = 0; l < 1000; l++) {
+            int length = 1 + (l * 7) % 2990;
+            for (int i = 0; i < length; i++) {
+                elements[10 + i] = (long) i * l;
+            }
+
+            int count = tail.addAllToTail(elements, 10, length);
+            assertEquals(length, count);
+
+            int removed = 0;
+            while (removed < length) {
+                int removedNow = head.removeFromHead(elements, 0, Math.min(100, length - removed));
+                assertTrue(removedNow > 0);
+
+                for (int i = 0; i < removedNow; i++) {
+                    assertEquals((long) (removed + i) * l, elements[i]);
+                }
+
+                removed += removedNow;
+            }
+        }
+
+        assertEquals(0, head.removeFromHead(elements));
+    }
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        List<Object[]> list = new ArrayList<>();
+
+        LongLinkedChunkBridge linkedBridge = new LongLinkedChunkBridge();
+        list.add(new Object[] {linkedBridge, linkedBridge});
+
+        LongRingBufferBridge ringBridge = new LongRingBufferBridge(100000);
+        list.add(new Object[] {ringBridge, ringBridge});
+
+        return list;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class MappedJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void emptyJournal() throws IOException {
+        new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(reader.removeFromHead());
+        }
+    }
+
+    @Test
+    public void writeAndReadThroughManySegments() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(journal.addToTail(message(i)));
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+
+        assertNull(reader.removeFromHead());
+        assertEquals(journal.position(), reader.position());
+    }
+
+    @Test
+    public void independentReaders() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader1 = new MappedJournalReader(directory, SEGMENT_SIZE, "reader1");
+        MappedJournalReader reader2 = new MappedJournalReader(directory, SEGMENT_SIZE, "reader2");
+
+        for (int i = 0; i < 1000; i++) {
+            journal.addToTail(message(i));
+            assertMessage(i, reader1.removeFromHead());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertMessage(i, reader2.removeFromHead());
+        }
+
+        assertNull(reader1.removeFromHead());
+        assertNull(reader2.removeFromHead());
+    }
+
+    @Test
+    public void resumeAfterRestart() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        for (int i = 0; i < 1000; i++) {
+            journal.addToTail(message(i));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+        reader.commit();
+
+        // not committed so should be read again
+        for (int i = 500; i < 600; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+
+        journal = new MappedJournal(directory, SEGMENT_SIZE);
+        reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        for (int i = 1000; i < 2000; i++) {
+            journal.addToTail(message(i));
+        }
+
+        for (int i = 500; i < 2000; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+
+        assertNull(reader.removeFromHead());
+    }
+
+    @Test
+    public void deleteReadSegments() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        for (int i = 0; i < 10000; i++) {
+            journal.addToTail(message(i));
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+
+        journal.deleteSegmentsBefore(reader.position());
+        assertFalse(Files.exists(MappedJournal.segmentPath(directory, 0)));
+
+        for (int i = 5000; i < 10000; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+    }
+
+    @Test
+    public void emptyMessages() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        journal.addToTail(ByteBuffer.allocate(0));
+        journal.addToTail(message(1));
+        journal.addToTail(ByteBuffer.allocate(0));
+
+        assertEquals(0, reader.removeFromHead().remaining());
+        assertMessage(1, reader.removeFromHead());
+        assertEquals(0, reader.removeFromHead().remaining());
+        assertNull(reader.removeFromHead());
+
+        journal = new MappedJournal(directory, SEGMENT_SIZE);
+        journal.addToTail(message(2));
+        assertMessage(2, reader.removeFromHead());
+        assertNull(reader.removeFromHead());
+    }
+
+    @Test
+    public void recoverMissingEndOfSegment() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        MappedJournalReader reader = new MappedJournalReader(directory, SEGMENT_SIZE, "reader");
+
+        int count = 0;
+        long markerPosition;
+        do {
+            markerPosition = journal.position();
+            journal.addToTail(message(count++));
+        } while (journal.position() < SEGMENT_SIZE);
+
+        // as if writer crashed after creating the next segment
+        MappedJournal.mapSegment(directory, 0, SEGMENT_SIZE, true).putInt((int) markerPosition, 0);
+
+        journal = new MappedJournal(directory, SEGMENT_SIZE);
+        journal.addToTail(message(count++));
+
+        for (int i = 0; i < count; i++) {
+            assertMessage(i, reader.removeFromHead());
+        }
+
+        assertNull(reader.removeFromHead());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLargeMessage() throws IOException {
+        MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE);
+        journal.addToTail(ByteBuffer.allocate(SEGMENT_SIZE));
+    }
+
+    private static ByteBuffer message(int value) {
+        ByteBuffer message = ByteBuffer.allocate(4 + value % 100);
+        message.putInt(0, value);
+        return message;
+    }
+
+    private static void assertMessage(int value, ByteBuffer message) {
+        assertNotNull(message);
+        assertEquals(4 + value % 100, message.remaining());
+        assertEquals(value, message.getInt(0));
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MultiplexingPolicyTest {
+
+    @Test
+    public void unfairStaysWithProducer() {
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.UNFAIR);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+        fill(first, 0, 3);
+        fill(second, 100, 3);
+
+        assertOrder(multiplexer, 0, 1, 2, 100, 101, 102);
+    }
+
+    @Test
+    public void roundRobinAlternatesProducers() {
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.ROUND_ROBIN);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+        fill(first, 0, 3);
+        fill(second, 100, 2);
+
+        assertOrder(multiplexer, 0, 100, 1, 101, 2);
+    }
+
+    @Test
+    public void weightedTakesSeveralFromProducer() {
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.WEIGHTED);
+        QueueTail<Long> first = multiplexer.createProducer(3, 0);
+        QueueTail<Long> second = multiplexer.createProducer(1, 0);
+        fill(first, 0, 5);
+        fill(second, 100, 3);
+
+        assertOrder(multiplexer, 0, 1, 2, 100, 3, 4, 101, 102);
+    }
+
+    @Test
+    public void priorityGoesFirst() {
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.PRIORITY);
+        QueueTail<Long> bulk = multiplexer.createProducer(1, 0);
+        QueueTail<Long> otherBulk = multiplexer.createProducer(1, 0);
+        QueueTail<Long> control = multiplexer.createProducer(1, 10);
+        fill(bulk, 0, 2);
+        fill(otherBulk, 100, 2);
+        fill(control, 1000, 1);
+
+        assertEquals(1000L, (long) multiplexer.removeFromHead());
+        assertEquals(0L, (long) multiplexer.removeFromHead());
+
+        // control element comes in the middle of bulk traffic
+        control.addToTail(1001L);
+        assertOrder(multiplexer, 1001, 100, 1, 101);
+    }
+
+    @Test
+    public void batchRemoveFollowsPolicy() {
+        UnfairLinkedChunkMultiplexer<Long> multiplexer = new UnfairLinkedChunkMultiplexer<>(MultiplexingPolicy.ROUND_ROBIN);
+        QueueTail<Long> first = multiplexer.createProducer();
+        QueueTail<Long> second = multiplexer.createProducer();
+        fill(first, 0, 2);
+        fill(second, 100, 2);
+
+        Long[] elements = new Long[10];
+        assertEquals(4, multiplexer.removeFromHead(elements));
+        assertArrayEquals(new Long[] {0L, 100L, 1L, 101L}, Arrays.copyOf(elements, 4));
+    }
+
+    private static void fill(QueueTail<Long> tail, long first, int count) {
+        for (long i = 0; i < count; i++) {
+            assertTrue(tail.addToTail(first + i));
+        }
+    }
+
+    private static void assertOrder(QueueHead<Long> head, long... expected) {
+        for (long element : expected) {
+            assertEquals(element, (long) head.removeFromHead());
+        }
+        assertNull(head.removeFromHead());
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class OffHeapRingBufferTest {
+
+    @Parameter(0)
+    public OffHeapTail tail;
+
+    @Parameter(1)
+    public OffHeapHead head;
+
+    @Test
+    public void emptyQueue() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-1, head.claimHead());
+        }
+    }
+
+    @Test
+    public void writeAndReadInPlace() {
+        ByteBuffer tailBuffer = tail.buffer();
+        ByteBuffer headBuffer = head.buffer();
+
+        for (long l = 0; l < 100000; l++) {
+            int writeOffset = tail.claimTail();
+            assertTrue(writeOffset >= 0);
+            tailBuffer.putLong(writeOffset, l);
+            tailBuffer.putLong(writeOffset + tail.slotSize() - 8, -l);
+            tail.commitTail();
+
+            int readOffset = head.claimHead();
+            assertTrue(readOffset >= 0);
+            assertEquals(l, headBuffer.getLong(readOffset));
+            assertEquals(-l, headBuffer.getLong(readOffset + head.slotSize() - 8));
+            head.releaseHead();
+        }
+
+        assertEquals(-1, head.claimHead());
+    }
+
+    @Test
+    public void fillAndDrain() {
+        ByteBuffer tailBuffer = tail.buffer();
+        ByteBuffer headBuffer = head.buffer();
+
+        for (int l = 0; l < 100; l++) {
+            int count = 0;
+            int writeOffset;
+            while ((writeOffset = tail.claimTail()) >= 0) {
+                tailBuffer.putInt(writeOffset, count++);
+                tail.commitTail();
+            }
+
+            assertEquals(64, count);
+
+            for (int i = 0; i < count; i++) {
+                int readOffset = head.claimHead();
+                assertEquals(readOffset, head.claimHead());
+                assertEquals(i, headBuffer.getInt(readOffset));
+                head.releaseHead();
+            }
+
+            assertEquals(-1, head.claimHead());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitWithoutClaim() {
+        tail.commitTail();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutClaim() {
+        head.releaseHead();
+    }
+
+    @Parameters
+    public static Collection<Object[]> data() throws IOException {
+        List<Object[]> list = new ArrayList<>();
+
+        OffHeapRingBufferBridge bridge = new OffHeapRingBufferBridge(64, 60);
+        list.add(new Object[] {bridge, bridge});
+
+        OffHeapRingBufferRouter router = new OffHeapRingBufferRouter(64, 60);
+        list.add(new Object[] {router.createProducer(), router.createConsumer()});
+
+        Path bridgeFile = Files.createTempFile("bridge", ".shm");
+        bridgeFile.toFile().deleteOnExit();
+        SharedMemoryRingBufferBridge sharedMemoryBridge = new SharedMemoryRingBufferBridge(bridgeFile, 64, 60);
+        list.add(new Object[] {sharedMemoryBridge, sharedMemoryBridge});
+
+        Path multiplexerFile = Files.createTempFile("multiplexer", ".shm");
+        multiplexerFile.toFile().deleteOnExit();
+        SharedMemoryRingBufferMultiplexer sharedMemoryMultiplexer = new SharedMemoryRingBufferMultiplexer(multiplexerFile, 4, 64, 60);
+        list.add(new Object[] {sharedMemoryMultiplexer.createProducer(), sharedMemoryMultiplexer});
+
+        return list;
+    }
+}
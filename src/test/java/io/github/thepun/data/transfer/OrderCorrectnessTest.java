@@ -121,6 +121,62 @@ public class OrderCorrectnessTest {
         }
     }
 
+    @Test
+    public void addBunchAndRemoveIntoArray() {
+        Long[] elements = new Long[100];
+
+        for (int l = 0; l < 1000; l++) {
+            for (long i = 0; i < 1000; i++) {
+                boolean result = tail.addToTail(i * l);
+                assertTrue(result);
+            }
+
+            int removed = 0;
+            while (removed < 1000) {
+                int count = head.removeFromHead(elements, 10, Math.min(90, 1000 - removed));
+                assertTrue(count > 0);
+
+                for (int i = 0; i < count; i++) {
+                    assertEquals((removed + i) * l, (long) elements[10 + i]);
+                }
+
+                removed += count;
+            }
+        }
+
+        int count = head.removeFromHead(elements);
+        assertEquals(0, count);
+    }
+
+    @Test
+    public void addArrayAndGetBunch() {
+        Long[] elements = new Long[100];
+
+        for (int l = 0; l < 1000; l++) {
+            int added = 0;
+            while (added < 1000) {
+                int length = Math.min(90, 1000 - added);
+                for (int i = 0; i < length; i++) {
+                    elements[10 + i] = (long) (added + i) * l;
+                }
+
+                int count = tail.addAllToTail(elements, 10, length);
+                assertEquals(length, count);
+
+                added += count;
+            }
+
+            for (long i = 0; i < 1000; i++) {
+                Long element = head.removeFromHead();
+                assertNotNull(element);
+                assertEquals(i * l, (long) element);
+            }
+        }
+
+        Long element = head.removeFromHead();
+        assertNull(element);
+    }
+
    /* @Test
     public void test1() {
         AtomicBufferRouter<Long> arrayQueue = new AtomicBufferRouter<>(4);
@@ -148,6 +204,12 @@ public class OrderCorrectnessTest {
         LinkedChunkBridge<Long> longSPSCSplittedLinkedQueue = new LinkedChunkBridge<>();
         list.add(new Object[] {longSPSCSplittedLinkedQueue, longSPSCSplittedLinkedQueue});
 
+        LinkedChunkBridge<Long> smallChunkBridge = new LinkedChunkBridge<>(16);
+        list.add(new Object[] {smallChunkBridge, smallChunkBridge});
+
+        LinkedChunkBridge<Long> pooledBridge = new LinkedChunkBridge<>(new ChunkPool(64, 16));
+        list.add(new Object[] {pooledBridge, pooledBridge});
+
         RingBufferBridge<Long> arrayBridge = new RingBufferBridge<>(10000000);
         list.add(new Object[] {arrayBridge, arrayBridge});
 
@@ -160,6 +222,9 @@ public class OrderCorrectnessTest {
         StealingLinkedChunkDemultiplexer<Long> stealingDemultiplexer = new StealingLinkedChunkDemultiplexer<>();
         list.add(new Object[] {stealingDemultiplexer, stealingDemultiplexer.createConsumer()});
 
+        StealingLinkedChunkDemultiplexer<Long> pooledStealingDemultiplexer = new StealingLinkedChunkDemultiplexer<>(new ChunkPool(64, 16));
+        list.add(new Object[] {pooledStealingDemultiplexer, pooledStealingDemultiplexer.createConsumer()});
+
         GreedyRingBufferRouter<Long> greedyArrayQueue = new GreedyRingBufferRouter<>(10000000);
         list.add(new Object[] {greedyArrayQueue.createProducer(), greedyArrayQueue.createConsumer()});
 
@@ -169,6 +234,15 @@ public class OrderCorrectnessTest {
         AtomicPoolRouter<Long> arrayPool = new AtomicPoolRouter<>(10000000);
         list.add(new Object[] {arrayPool.createProducer(), arrayPool.createConsumer()});
 
+        CooperationRouter<Long> cooperationRouter = new CooperationRouter<>(10000000);
+        list.add(new Object[] {cooperationRouter.createProducer(), cooperationRouter.createConsumer()});
+
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(10000000);
+        list.add(new Object[] {broadcaster, broadcaster.createConsumer()});
+
+        FairRingBufferMultiplexer<Long> fairMultiplexer = new FairRingBufferMultiplexer<>(10000000);
+        list.add(new Object[] {fairMultiplexer.createProducer(), fairMultiplexer});
+
         return list;
     }
 }
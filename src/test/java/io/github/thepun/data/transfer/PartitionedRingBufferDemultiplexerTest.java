@@ -0,0 +1,176 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class PartitionedRingBufferDemultiplexerTest {
+
+    @Test
+    public void sameKeyGoesToSameConsumer() {
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(4, 16, element -> (int) element[0]);
+        QueueHead<long[]> first = demultiplexer.createConsumer();
+        QueueHead<long[]> second = demultiplexer.createConsumer();
+
+        for (long i = 0; i < 8; i++) {
+            assertTrue(demultiplexer.addToTail(new long[] {i % 4, i}));
+        }
+
+        // partitions 0 and 2 belong to the first consumer, 1 and 3 to the second
+        long[][] elements = new long[8][];
+        assertEquals(4, first.removeFromHead(elements));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, elements[i][0] % 2);
+        }
+
+        assertEquals(4, second.removeFromHead(elements));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, elements[i][0] % 2);
+        }
+
+        assertNull(first.removeFromHead());
+        assertNull(second.removeFromHead());
+        assertEquals(0, demultiplexer.depth());
+    }
+
+    @Test
+    public void hotKeyDoesNotStarveColdKey() {
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(2, 128, element -> (int) element[0]);
+        QueueHead<long[]> consumer = demultiplexer.createConsumer();
+
+        for (long i = 0; i < 100; i++) {
+            assertTrue(demultiplexer.addToTail(new long[] {0, i}));
+        }
+        assertTrue(demultiplexer.addToTail(new long[] {1, 0}));
+
+        // single element removal moves to the next partition after each element
+        assertEquals(0, consumer.removeFromHead()[0]);
+        assertEquals(1, consumer.removeFromHead()[0]);
+        for (long i = 1; i < 100; i++) {
+            assertEquals(i, consumer.removeFromHead()[1]);
+        }
+        assertNull(consumer.removeFromHead());
+    }
+
+    @Test
+    public void partitionIsFull() {
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(2, 4, element -> (int) element[0]);
+        for (long i = 0; i < 4; i++) {
+            assertTrue(demultiplexer.addToTail(new long[] {0, i}));
+        }
+
+        assertFalse(demultiplexer.addToTail(new long[] {0, 4}));
+        assertTrue(demultiplexer.addToTail(new long[] {1, 0}));
+        assertEquals(5, demultiplexer.depth());
+        assertEquals(8, demultiplexer.capacity());
+    }
+
+    @Test
+    public void partitionsMoveAfterConsumerIsDestroyed() {
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(2, 16, element -> (int) element[0]);
+        QueueHead<long[]> first = demultiplexer.createConsumer();
+        QueueHead<long[]> second = demultiplexer.createConsumer();
+
+        demultiplexer.addToTail(new long[] {1, 0});
+        demultiplexer.addToTail(new long[] {1, 1});
+        assertNull(first.removeFromHead());
+        assertEquals(0, second.removeFromHead()[1]);
+
+        demultiplexer.destroyConsumer(second);
+        assertEquals(1, first.removeFromHead()[1]);
+        assertNull(first.removeFromHead());
+    }
+
+    @Test
+    public void newConsumerWaitsUntilPartitionIsReleased() {
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(2, 16, element -> (int) element[0]);
+        QueueHead<long[]> first = demultiplexer.createConsumer();
+
+        demultiplexer.addToTail(new long[] {1, 0});
+        demultiplexer.addToTail(new long[] {1, 1});
+        assertEquals(0, first.removeFromHead()[1]);
+
+        // partition 1 is assigned to the second consumer but still owned by the first one
+        QueueHead<long[]> second = demultiplexer.createConsumer();
+        assertNull(second.removeFromHead());
+
+        assertNull(first.removeFromHead());
+        assertEquals(1, second.removeFromHead()[1]);
+    }
+
+    @Test
+    public void keyOrderIsKeptWhileRebalancing() throws Exception {
+        int keyCount = 64;
+        long count = 1000000;
+        PartitionedRingBufferDemultiplexer<long[]> demultiplexer = new PartitionedRingBufferDemultiplexer<>(16, 256, element -> (int) element[0]);
+
+        // last sequence of each key is handed over together with partition
+        long[] lastSequences = new long[keyCount];
+        AtomicLong received = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        Thread[] threads = new Thread[3];
+        for (int c = 0; c < threads.length; c++) {
+            threads[c] = new Thread(() -> {
+                // consumer is created by its own thread while elements flow
+                QueueHead<long[]> consumer = demultiplexer.createConsumer();
+                while (received.get() < count) {
+                    long[] element = consumer.removeFromHead();
+                    if (element == null) {
+                        Thread.yield();
+                        continue;
+                    }
+
+                    int key = (int) element[0];
+                    if (element[1] != lastSequences[key] + 1) {
+                        failed.set(true);
+                    }
+                    lastSequences[key] = element[1];
+                    received.incrementAndGet();
+                }
+            });
+        }
+
+        threads[0].start();
+
+        long[] sequences = new long[keyCount];
+        for (long i = 0; i < count; i++) {
+            if (i == count / 3) {
+                threads[1].start();
+            } else if (i == count * 2 / 3) {
+                threads[2].start();
+            }
+
+            int key = (int) (i % keyCount);
+            long[] element = new long[] {key, ++sequences[key]};
+            while (!demultiplexer.addToTail(element)) {
+                Thread.yield();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed.get());
+        assertEquals(count, received.get());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class QueueMonitorTest {
+
+    @Test
+    public void countOperations() {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(4);
+        QueueMonitor monitor = new QueueMonitor("bridge", bridge);
+        QueueTail<Long> tail = monitor.monitorTail(bridge);
+        QueueHead<Long> head = monitor.monitorHead(bridge);
+
+        for (long i = 0; i < 6; i++) {
+            tail.addToTail(i);
+        }
+
+        assertEquals(4, monitor.getAddedCount());
+        assertEquals(2, monitor.getRejectedCount());
+        assertEquals(4, monitor.getDepth());
+        assertEquals(4, monitor.getCapacity());
+
+        head.removeFromHead();
+        assertEquals(1, monitor.getRemovedCount());
+        assertEquals(3, monitor.getDepth());
+
+        Long[] elements = new Long[10];
+        assertEquals(3, head.removeFromHead(elements));
+        assertNull(head.removeFromHead());
+        assertEquals(0, head.removeFromHead(elements));
+
+        assertEquals(4, monitor.getRemovedCount());
+        assertEquals(2, monitor.getEmptyPollCount());
+        assertEquals(0, monitor.getDepth());
+    }
+
+    @Test
+    public void timedOperationsWithWaitStrategyAreCountedOnce() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(1);
+        QueueMonitor monitor = new QueueMonitor("bridge", bridge, 1);
+        QueueTail<Long> tail = monitor.monitorTail(bridge);
+        QueueHead<Long> head = monitor.monitorHead(bridge);
+
+        tail.addToTail(1L, 1, TimeUnit.SECONDS, BusySpinWaitStrategy.INSTANCE);
+        try {
+            tail.addToTail(2L, 10, TimeUnit.MILLISECONDS, BusySpinWaitStrategy.INSTANCE);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        assertEquals(1L, (long) head.removeFromHead(1, TimeUnit.SECONDS, BusySpinWaitStrategy.INSTANCE));
+        try {
+            head.removeFromHead(10, TimeUnit.MILLISECONDS, BusySpinWaitStrategy.INSTANCE);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        assertEquals(1, monitor.getAddedCount());
+        assertEquals(1, monitor.getRejectedCount());
+        assertEquals(1, monitor.getRemovedCount());
+        assertEquals(1, monitor.getEmptyPollCount());
+        assertEquals(1, monitor.getLatencySampleCount());
+    }
+
+    @Test
+    public void depthWithoutQueue() {
+        LinkedChunkBridge<Long> bridge = new LinkedChunkBridge<>();
+        QueueMonitor monitor = new QueueMonitor("linked");
+        QueueTail<Long> tail = monitor.monitorTail(bridge);
+        QueueHead<Long> head = monitor.monitorHead(bridge);
+
+        for (long i = 0; i < 10; i++) {
+            tail.addToTail(i);
+        }
+        head.removeFromHead();
+
+        assertEquals(9, monitor.getDepth());
+        assertEquals(-1, monitor.getCapacity());
+    }
+
+    @Test
+    public void sampleLatency() {
+        RingBufferRouter<Long> router = new RingBufferRouter<>(1024);
+        QueueMonitor monitor = new QueueMonitor("router", router, 10);
+        QueueTail<Long> tail = monitor.monitorTail(router.createProducer());
+        QueueHead<Long> head = monitor.monitorHead(router.createConsumer());
+
+        for (long l = 0; l < 100; l++) {
+            for (long i = 0; i < 10; i++) {
+                // out of Long cache so instances are distinct
+                tail.addToTail(1000 + l * 10 + i);
+            }
+
+            for (long i = 0; i < 10; i++) {
+                assertNotNull(head.removeFromHead());
+            }
+        }
+
+        monitor.sample();
+
+        assertEquals(100, monitor.getLatencySampleCount());
+        assertTrue(monitor.getAverageLatencyNanos() > 0);
+        assertTrue(monitor.getMaxLatencyNanos() >= monitor.getAverageLatencyNanos());
+        assertTrue(monitor.getAddRate() > 0);
+    }
+
+    @Test
+    public void exportThroughJmx() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(16);
+        QueueMonitor monitor = new QueueMonitor("jmx", bridge);
+        monitor.monitorTail(bridge).addToTail(1L);
+        monitor.register();
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("io.github.thepun.data.transfer:type=QueueMonitor,name=\"jmx\"");
+            assertEquals(1L, server.getAttribute(name, "AddedCount"));
+            assertEquals(1L, server.getAttribute(name, "Depth"));
+        } finally {
+            monitor.unregister();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RingBufferBroadcasterTest {
+
+    @Test
+    public void everyConsumerReceivesEveryElement() {
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(16);
+        QueueHead<Long> first = broadcaster.createConsumer();
+        QueueHead<Long> second = broadcaster.createConsumer();
+
+        for (long i = 0; i < 10; i++) {
+            assertTrue(broadcaster.addToTail(i));
+        }
+
+        for (long i = 0; i < 10; i++) {
+            assertEquals(i, (long) first.removeFromHead());
+        }
+        assertNull(first.removeFromHead());
+
+        Long[] elements = new Long[20];
+        assertEquals(10, second.removeFromHead(elements));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (long) elements[i]);
+        }
+        assertNull(second.removeFromHead());
+    }
+
+    @Test
+    public void producerIsGatedBySlowestConsumer() {
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(4);
+        QueueHead<Long> fast = broadcaster.createConsumer();
+        QueueHead<Long> slow = broadcaster.createConsumer();
+
+        for (long i = 0; i < 4; i++) {
+            assertTrue(broadcaster.addToTail(i));
+            assertEquals(i, (long) fast.removeFromHead());
+        }
+
+        assertFalse(broadcaster.addToTail(4L));
+        assertEquals(4, broadcaster.depth());
+
+        assertEquals(0L, (long) slow.removeFromHead());
+        assertTrue(broadcaster.addToTail(4L));
+        assertFalse(broadcaster.addToTail(5L));
+
+        broadcaster.destroyConsumer(slow);
+        assertTrue(broadcaster.addToTail(5L));
+        assertEquals(4L, (long) fast.removeFromHead());
+        assertEquals(5L, (long) fast.removeFromHead());
+    }
+
+    @Test
+    public void newConsumerSeesOnlyNewElements() {
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(4);
+        for (long i = 0; i < 10; i++) {
+            assertTrue(broadcaster.addToTail(i));
+        }
+
+        QueueHead<Long> consumer = broadcaster.createConsumer();
+        assertNull(consumer.removeFromHead());
+
+        broadcaster.addToTail(10L);
+        assertEquals(10L, (long) consumer.removeFromHead());
+    }
+
+    @Test
+    public void concurrentConsumers() throws Exception {
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(1024, new YieldingWaitStrategy());
+        int consumerCount = 3;
+        long count = 1000000;
+
+        long[] sums = new long[consumerCount];
+        Thread[] threads = new Thread[consumerCount];
+        for (int c = 0; c < consumerCount; c++) {
+            QueueHead<Long> consumer = broadcaster.createConsumer();
+            int consumerIndex = c;
+            threads[c] = new Thread(() -> {
+                long expected = 0;
+                long sum = 0;
+                while (expected < count) {
+                    Long element = consumer.removeFromHead();
+                    if (element == null) {
+                        Thread.yield();
+                        continue;
+                    }
+
+                    assertEquals(expected++, (long) element);
+                    sum += element;
+                }
+                sums[consumerIndex] = sum;
+            });
+            threads[c].start();
+        }
+
+        for (long i = 0; i < count; i++) {
+            while (!broadcaster.addToTail(i)) {
+                Thread.yield();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (long sum : sums) {
+            assertEquals(count * (count - 1) / 2, sum);
+        }
+    }
+
+    @Test
+    public void consumersJoinWhileProducerRuns() throws Exception {
+        RingBufferBroadcaster<Long> broadcaster = new RingBufferBroadcaster<>(4, new YieldingWaitStrategy());
+        QueueHead<Long> permanent = broadcaster.createConsumer();
+        long count = 200000;
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < count; i++) {
+                while (!broadcaster.addToTail(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        Thread drainer = new Thread(() -> {
+            long expected = 0;
+            while (expected < count) {
+                if (permanent.removeFromHead() == null) {
+                    Thread.yield();
+                } else {
+                    expected++;
+                }
+            }
+        });
+        producer.start();
+        drainer.start();
+
+        // slot at the start index of a late consumer should not be overwritten before it is read
+        while (producer.isAlive()) {
+            QueueHead<Long> consumer = broadcaster.createConsumer();
+            long expected = -1;
+            for (int i = 0; i < 10 && producer.isAlive(); ) {
+                Long element = consumer.removeFromHead();
+                if (element == null) {
+                    Thread.yield();
+                    continue;
+                }
+
+                if (expected != -1) {
+                    assertEquals(expected, (long) element);
+                }
+                expected = element + 1;
+                i++;
+            }
+            broadcaster.destroyConsumer(consumer);
+        }
+
+        producer.join();
+        drainer.join();
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RingBufferPipelineTest {
+
+    @Test
+    public void stageSeesOnlyFinishedElements() {
+        RingBufferPipeline<long[]> pipeline = new RingBufferPipeline<>(16);
+        PipelineStage<long[]> decode = pipeline.createStage();
+        PipelineStage<long[]> enrich = pipeline.createStage(decode);
+
+        pipeline.addToTail(new long[] {1});
+        pipeline.addToTail(new long[] {2});
+
+        assertNull(enrich.removeFromHead());
+
+        long[] element = decode.removeFromHead();
+        element[0] *= 10;
+        assertNull(enrich.removeFromHead());
+
+        decode.finish();
+        assertEquals(10, enrich.removeFromHead()[0]);
+        assertNull(enrich.removeFromHead());
+
+        // next remove finishes previous element
+        assertEquals(2, decode.removeFromHead()[0]);
+        assertNull(decode.removeFromHead());
+        assertEquals(2, enrich.removeFromHead()[0]);
+    }
+
+    @Test
+    public void parallelStagesAfterCommonDependency() {
+        RingBufferPipeline<Long> pipeline = new RingBufferPipeline<>(4);
+        PipelineStage<Long> decode = pipeline.createStage();
+        PipelineStage<Long> journal = pipeline.createStage(decode);
+        PipelineStage<Long> dispatch = pipeline.createStage(decode);
+        PipelineStage<Long> cleanup = pipeline.createStage(journal, dispatch);
+
+        for (long i = 0; i < 4; i++) {
+            assertTrue(pipeline.addToTail(i));
+        }
+        assertFalse(pipeline.addToTail(4L));
+
+        Long[] elements = new Long[10];
+        assertEquals(4, decode.removeFromHead(elements));
+        decode.finish();
+
+        assertEquals(4, journal.removeFromHead(elements));
+        journal.finish();
+        assertEquals(0, cleanup.removeFromHead(elements));
+
+        assertEquals(0L, (long) dispatch.removeFromHead());
+        assertEquals(1L, (long) dispatch.removeFromHead());
+
+        // only the first element is finished by both journal and dispatch
+        assertEquals(0L, (long) cleanup.removeFromHead());
+        assertEquals(4, pipeline.depth());
+        assertFalse(pipeline.addToTail(4L));
+
+        cleanup.finish();
+        assertEquals(3, pipeline.depth());
+        assertTrue(pipeline.addToTail(4L));
+        assertFalse(pipeline.addToTail(5L));
+    }
+
+    @Test
+    public void concurrentStages() throws Exception {
+        RingBufferPipeline<long[]> pipeline = new RingBufferPipeline<>(1024);
+        PipelineStage<long[]> decode = pipeline.createStage();
+        PipelineStage<long[]> enrich = pipeline.createStage(decode);
+        PipelineStage<long[]> journal = pipeline.createStage(enrich);
+        PipelineStage<long[]> dispatch = pipeline.createStage(enrich);
+        long count = 100000;
+
+        long[] sums = new long[2];
+        Thread[] threads = new Thread[] {
+                stageThread(decode, count, element -> element[1] = element[0] * 2),
+                stageThread(enrich, count, element -> element[2] = element[1] + 1),
+                stageThread(journal, count, element -> sums[0] += element[2]),
+                stageThread(dispatch, count, element -> sums[1] += element[2])
+        };
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (long i = 0; i < count; i++) {
+            long[] element = new long[] {i, 0, 0};
+            while (!pipeline.addToTail(element)) {
+                Thread.yield();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(count * (count - 1) + count, sums[0]);
+        assertEquals(count * (count - 1) + count, sums[1]);
+    }
+
+    @Test
+    public void stagesJoinWhileProducerRuns() throws Exception {
+        RingBufferPipeline<long[]> pipeline = new RingBufferPipeline<>(4);
+        PipelineStage<long[]> decode = pipeline.createStage();
+        long count = 200000;
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < count; i++) {
+                long[] element = new long[] {i};
+                while (!pipeline.addToTail(element)) {
+                    Thread.yield();
+                }
+            }
+        });
+        Thread decoder = stageThread(decode, count, element -> {});
+        producer.start();
+        decoder.start();
+
+        // late stages without dependencies should receive consecutive elements from their start index
+        Thread[] lateStages = new Thread[3];
+        long[] failures = new long[lateStages.length];
+        for (int s = 0; s < lateStages.length; s++) {
+            Thread.sleep(10);
+
+            PipelineStage<long[]> stage = pipeline.createStage();
+            int stageIndex = s;
+            lateStages[s] = new Thread(() -> {
+                long expected = -1;
+                for (;;) {
+                    long[] element = stage.removeFromHead();
+                    if (element == null) {
+                        if (!producer.isAlive()) {
+                            break;
+                        }
+
+                        Thread.yield();
+                        continue;
+                    }
+
+                    if (expected != -1 && expected != element[0]) {
+                        failures[stageIndex]++;
+                    }
+                    expected = element[0] + 1;
+                }
+                stage.finish();
+            });
+            lateStages[s].start();
+        }
+
+        producer.join();
+        decoder.join();
+        for (Thread thread : lateStages) {
+            thread.join();
+        }
+
+        for (long stageFailures : failures) {
+            assertEquals(0, stageFailures);
+        }
+    }
+
+    private static Thread stageThread(PipelineStage<long[]> stage, long count, java.util.function.Consumer<long[]> action) {
+        return new Thread(() -> {
+            long processed = 0;
+            while (processed < count) {
+                long[] element = stage.removeFromHead();
+                if (element == null) {
+                    Thread.yield();
+                    continue;
+                }
+
+                action.accept(element);
+                processed++;
+            }
+            stage.finish();
+        });
+    }
+}
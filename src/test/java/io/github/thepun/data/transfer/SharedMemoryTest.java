@@ -0,0 +1,144 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryTest {
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("queue", ".shm");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void bridgeBetweenTwoMappings() throws IOException {
+        OffHeapTail tail = new SharedMemoryRingBufferBridge(file, 16, 8);
+        OffHeapHead head = new SharedMemoryRingBufferBridge(file, 16, 8);
+
+        for (long l = 0; l < 100000; l++) {
+            int writeOffset = tail.claimTail();
+            assertTrue(writeOffset >= 0);
+            tail.buffer().putLong(writeOffset, l);
+            tail.commitTail();
+
+            int readOffset = head.claimHead();
+            assertTrue(readOffset >= 0);
+            assertEquals(l, head.buffer().getLong(readOffset));
+            head.releaseHead();
+        }
+
+        assertEquals(-1, head.claimHead());
+    }
+
+    @Test
+    public void bridgeContinuesAfterReopen() throws IOException {
+        OffHeapTail tail = new SharedMemoryRingBufferBridge(file, 16, 8);
+        for (long l = 0; l < 10; l++) {
+            tail.buffer().putLong(tail.claimTail(), l);
+            tail.commitTail();
+        }
+
+        OffHeapHead head = new SharedMemoryRingBufferBridge(file, 16, 8);
+        for (long l = 0; l < 10; l++) {
+            assertEquals(l, head.buffer().getLong(head.claimHead()));
+            head.releaseHead();
+        }
+
+        assertEquals(-1, head.claimHead());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bridgeWithDifferentLayout() throws IOException {
+        new SharedMemoryRingBufferBridge(file, 16, 8);
+        new SharedMemoryRingBufferBridge(file, 32, 8);
+    }
+
+    @Test
+    public void multiplexerReadsAllLanes() throws IOException {
+        SharedMemoryRingBufferMultiplexer multiplexer = new SharedMemoryRingBufferMultiplexer(file, 3, 16, 8);
+        OffHeapTail[] producers = new OffHeapTail[3];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = multiplexer.createProducer();
+        }
+
+        ByteBuffer buffer = multiplexer.buffer();
+        for (int l = 0; l < 1000; l++) {
+            for (int i = 0; i < producers.length; i++) {
+                buffer.putLong(producers[i].claimTail(), l * 3 + i);
+                producers[i].commitTail();
+            }
+
+            long sum = 0;
+            for (int i = 0; i < producers.length; i++) {
+                int readOffset = multiplexer.claimHead();
+                assertTrue(readOffset >= 0);
+                sum += buffer.getLong(readOffset);
+                multiplexer.releaseHead();
+            }
+
+            assertEquals(l * 9 + 3, sum);
+            assertEquals(-1, multiplexer.claimHead());
+        }
+
+        multiplexer.close();
+    }
+
+    @Test
+    public void multiplexerReusesLane() throws IOException {
+        SharedMemoryRingBufferMultiplexer multiplexer = new SharedMemoryRingBufferMultiplexer(file, 1, 16, 8);
+
+        OffHeapTail producer = multiplexer.createProducer();
+        producer.buffer().putLong(producer.claimTail(), 1);
+        producer.commitTail();
+
+        try {
+            multiplexer.createProducer();
+            fail("Lane should be taken");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        multiplexer.destroyProducer(producer);
+
+        producer = multiplexer.createProducer();
+        producer.buffer().putLong(producer.claimTail(), 2);
+        producer.commitTail();
+
+        for (long l = 1; l <= 2; l++) {
+            assertEquals(l, multiplexer.buffer().getLong(multiplexer.claimHead()));
+            multiplexer.releaseHead();
+        }
+
+        multiplexer.close();
+    }
+}
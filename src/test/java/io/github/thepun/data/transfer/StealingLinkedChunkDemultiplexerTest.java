@@ -0,0 +1,280 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class StealingLinkedChunkDemultiplexerTest {
+
+    @Test
+    public void thiefTakesHalfOfBacklog() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>();
+        QueueHead<Long> victim = demultiplexer.createConsumer();
+        QueueHead<Long> thief = demultiplexer.createConsumer();
+
+        // whole batch goes to the first consumer
+        addAll(demultiplexer, 0, 1000);
+
+        // single steal moves a half of the backlog to the thief
+        Set<Long> taken = new HashSet<>();
+        assertTrue(taken.add(thief.removeFromHead()));
+        assertEquals(500, drain(victim, taken));
+        assertEquals(499, drain(thief, taken));
+        assertEquals(1000, taken.size());
+    }
+
+    @Test
+    public void emptyRemoveKeepsStolenElements() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>();
+        QueueHead<Long> victim = demultiplexer.createConsumer();
+        QueueHead<Long> thief = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 1000);
+
+        Set<Long> taken = new HashSet<>();
+        assertTrue(taken.add(thief.removeFromHead()));
+
+        // removing nothing should not steal again over the buffered elements
+        assertEquals(0, thief.removeFromHead(new Long[0], 0, 0));
+        drain(thief, taken);
+        drain(victim, taken);
+        assertEquals(1000, taken.size());
+    }
+
+    @Test
+    public void thiefStealsAcrossChunks() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(8);
+        QueueHead<Long> victim = demultiplexer.createConsumer();
+        QueueHead<Long> thief = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 1000);
+
+        // stolen elements are taken from several chunks in one go
+        Set<Long> taken = new HashSet<>();
+        assertTrue(taken.add(thief.removeFromHead()));
+        assertEquals(500, drain(victim, taken));
+        assertEquals(499, drain(thief, taken));
+        assertEquals(1000, taken.size());
+    }
+
+    @Test
+    public void thiefChoosesLargestBacklog() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>();
+        QueueHead<Long> small = demultiplexer.createConsumer();
+        QueueHead<Long> large = demultiplexer.createConsumer();
+        QueueHead<Long> thief = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 10);
+        addAll(demultiplexer, 1000, 100);
+
+        Long element = thief.removeFromHead();
+        assertNotNull(element);
+        assertTrue(element >= 1000);
+    }
+
+    @Test
+    public void concurrentConsumersTakeEachElementOnce() throws InterruptedException {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(64);
+        QueueHead<Long> stalled = demultiplexer.createConsumer();
+        QueueHead<Long> first = demultiplexer.createConsumer();
+        QueueHead<Long> second = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 100000);
+
+        Set<Long> firstTaken = new HashSet<>();
+        Set<Long> secondTaken = new HashSet<>();
+        Thread firstThread = new Thread(() -> drain(first, firstTaken));
+        Thread secondThread = new Thread(() -> drain(second, secondTaken));
+        firstThread.start();
+        secondThread.start();
+        firstThread.join();
+        secondThread.join();
+
+        Set<Long> taken = new HashSet<>();
+        drain(stalled, taken);
+        for (Long element : firstTaken) {
+            assertTrue(taken.add(element));
+        }
+        for (Long element : secondTaken) {
+            assertTrue(taken.add(element));
+        }
+        assertEquals(100000, taken.size());
+    }
+
+    @Test
+    public void concurrentThievesOnSmallChunks() throws InterruptedException {
+        int total = 500000;
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(4);
+        AtomicIntegerArray taken = new AtomicIntegerArray(total);
+        AtomicLong takenCount = new AtomicLong();
+        AtomicLong duplicates = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        // one slow consumer keeps a backlog so the others steal all the time while it recycles chunks
+        for (int c = 0; c < 4; c++) {
+            QueueHead<Long> consumer = demultiplexer.createConsumer();
+            boolean slow = c == 0;
+            threads.add(new Thread(() -> {
+                while (takenCount.get() < total) {
+                    Long element = consumer.removeFromHead();
+                    if (element == null) {
+                        continue;
+                    }
+
+                    if (taken.getAndSet((int) (long) element, 1) != 0) {
+                        duplicates.incrementAndGet();
+                    }
+                    takenCount.incrementAndGet();
+
+                    if (slow) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        threads.add(new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                demultiplexer.addToTail(i);
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(total, takenCount.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, taken.get(i));
+        }
+    }
+
+    @Test
+    public void elementsOfDestroyedConsumerAreTakenByOthers() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(8);
+        QueueHead<Long> first = demultiplexer.createConsumer();
+        QueueHead<Long> destroyed = demultiplexer.createConsumer();
+        QueueHead<Long> second = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 1000);
+
+        // destroyed consumer keeps elements stolen from the first one and its own backlog
+        Set<Long> taken = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(taken.add(destroyed.removeFromHead()));
+        }
+        addAll(demultiplexer, 1000, 1000);
+        demultiplexer.destroyConsumer(destroyed);
+
+        drain(second, taken);
+        drain(first, taken);
+        assertEquals(2000, taken.size());
+    }
+
+    @Test
+    public void leastLoadedSkipsBackedUpConsumer() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(DispatchPolicy.LEAST_LOADED);
+        QueueHead<Long> backedUp = demultiplexer.createConsumer();
+        QueueHead<Long> idle = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 100);
+        for (long i = 0; i < 50; i++) {
+            demultiplexer.addToTail(1000 + i);
+        }
+
+        // single elements go to the second consumer while its backlog is smaller
+        for (long i = 0; i < 50; i++) {
+            assertEquals(1000 + i, (long) idle.removeFromHead());
+        }
+        assertTrue(idle.removeFromHead() < 1000);
+    }
+
+    @Test
+    public void twoRandomChoicesPrefersLessLoaded() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(DispatchPolicy.TWO_RANDOM_CHOICES);
+        QueueHead<Long> first = demultiplexer.createConsumer();
+        QueueHead<Long> second = demultiplexer.createConsumer();
+
+        addAll(demultiplexer, 0, 100);
+        for (long i = 0; i < 50; i++) {
+            demultiplexer.addToTail(1000 + i);
+        }
+
+        // with two consumers both are sampled so single elements go to the one without the batch
+        Long firstElement = first.removeFromHead();
+        QueueHead<Long> idle = firstElement >= 1000 ? first : second;
+        long expected = idle == first ? 1001 : 1000;
+        for (long i = expected; i < 1050; i++) {
+            assertEquals(i, (long) idle.removeFromHead());
+        }
+    }
+
+    @Test
+    public void stickyBatchStaysWithConsumer() {
+        StealingLinkedChunkDemultiplexer<Long> demultiplexer = new StealingLinkedChunkDemultiplexer<>(DispatchPolicy.ROUND_ROBIN, 10, BusySpinWaitStrategy.INSTANCE);
+        QueueHead<Long> first = demultiplexer.createConsumer();
+        QueueHead<Long> second = demultiplexer.createConsumer();
+
+        for (long i = 0; i < 20; i++) {
+            demultiplexer.addToTail(i);
+        }
+
+        for (long i = 0; i < 10; i++) {
+            assertEquals(i, (long) first.removeFromHead());
+        }
+        for (long i = 10; i < 20; i++) {
+            assertEquals(i, (long) second.removeFromHead());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongBatchSize() {
+        new StealingLinkedChunkDemultiplexer<Long>(DispatchPolicy.LEAST_LOADED, 0, BusySpinWaitStrategy.INSTANCE);
+    }
+
+    private static void addAll(QueueTail<Long> tail, long from, int count) {
+        Long[] elements = new Long[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = from + i;
+        }
+
+        assertEquals(count, tail.addAllToTail(elements, 0, count));
+    }
+
+    private static int drain(QueueHead<Long> head, Set<Long> taken) {
+        int count = 0;
+        Long element;
+        while ((element = head.removeFromHead()) != null) {
+            assertTrue(taken.add(element));
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ThreadSupportTest {
+
+    @Test
+    public void platformThreadKeepsStrategy() {
+        assertSame(BusySpinWaitStrategy.INSTANCE, ThreadSupport.waitStrategyFor(BusySpinWaitStrategy.INSTANCE));
+
+        WaitStrategy blocking = new BlockingWaitStrategy();
+        assertSame(blocking, ThreadSupport.waitStrategyFor(blocking));
+    }
+
+    @Test
+    public void manyVirtualThreadsWaitOnBridges() throws Exception {
+        ExecutorService executor = newVirtualThreadExecutor();
+        try {
+            List<RingBufferBridge<Long>> bridges = new ArrayList<>();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                RingBufferBridge<Long> bridge = new RingBufferBridge<>(16, new BlockingWaitStrategy());
+                bridges.add(bridge);
+                results.add(executor.submit(() -> bridge.removeFromHead(10, TimeUnit.SECONDS)));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(bridges.get(i).addToTail((long) i));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, (long) results.get(i).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() throws Exception {
+        // virtual threads are available since Java 21 only
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            Assume.assumeNoException(e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class WaitStrategyTest {
+
+    @Parameter(0)
+    public WaitStrategy waitStrategy;
+
+    @Test(expected = TimeoutException.class)
+    public void timeoutOnEmptyQueue() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(16, waitStrategy);
+        bridge.removeFromHead(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void elementFromAnotherThread() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(16, waitStrategy);
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < 100; i++) {
+                while (!bridge.addToTail(i)) {
+                    Thread.yield();
+                }
+
+                if (i % 10 == 0) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        for (long i = 0; i < 100; i++) {
+            Long element = bridge.removeFromHead(10, TimeUnit.SECONDS);
+            assertEquals(i, (long) element);
+        }
+
+        producer.join();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void timeoutOnFullQueue() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(4, waitStrategy);
+        for (long i = 0; i < 4; i++) {
+            bridge.addToTail(i, 10, TimeUnit.MILLISECONDS);
+        }
+
+        bridge.addToTail(4L, 10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void spaceFromAnotherThread() throws Exception {
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(4, waitStrategy);
+
+        Thread consumer = new Thread(() -> {
+            for (long i = 0; i < 100; i++) {
+                Long element;
+                while ((element = bridge.removeFromHead()) == null) {
+                    Thread.yield();
+                }
+
+                assertEquals(i, (long) element);
+
+                if (i % 10 == 0) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        consumer.start();
+
+        for (long i = 0; i < 100; i++) {
+            bridge.addToTail(i, 10, TimeUnit.SECONDS);
+        }
+
+        consumer.join();
+        assertNull(bridge.removeFromHead());
+    }
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        List<Object[]> list = new ArrayList<>();
+        list.add(new Object[] {BusySpinWaitStrategy.INSTANCE});
+        list.add(new Object[] {new YieldingWaitStrategy()});
+        list.add(new Object[] {new BackoffWaitStrategy()});
+        list.add(new Object[] {new BlockingWaitStrategy()});
+        list.add(new Object[] {new BlockingWaitStrategy(0)});
+        return list;
+    }
+}
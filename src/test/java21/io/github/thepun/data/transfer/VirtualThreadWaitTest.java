@@ -0,0 +1,64 @@
+/**
+ * Copyright (C)2011 - Marat Gariev <thepun599@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.thepun.data.transfer;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against Java 21+ classes of the jar with a single carrier thread, see testJava21 task.
+ */
+public class VirtualThreadWaitTest {
+
+    @Test
+    public void virtualThreadDoesNotSpin() throws Exception {
+        AtomicReference<WaitStrategy> waitStrategy = new AtomicReference<>();
+        Thread.ofVirtual().start(() -> waitStrategy.set(ThreadSupport.waitStrategyFor(BusySpinWaitStrategy.INSTANCE))).join();
+
+        assertNotSame(BusySpinWaitStrategy.INSTANCE, waitStrategy.get());
+    }
+
+    @Test
+    public void spinningBridgeDoesNotStarveOtherVirtualThreads() throws Exception {
+        assertEquals("1", System.getProperty("jdk.virtualThreadScheduler.parallelism"));
+
+        RingBufferBridge<Long> bridge = new RingBufferBridge<>(16, BusySpinWaitStrategy.INSTANCE);
+        AtomicReference<Object> result = new AtomicReference<>();
+
+        Thread consumer = Thread.ofVirtual().start(() -> {
+            try {
+                result.set(bridge.removeFromHead(10, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                result.set(e);
+            }
+        });
+
+        // let consumer take the only carrier thread before producer is started
+        Thread.sleep(100);
+
+        // spinning consumer would keep producer from running until it times out
+        Thread producer = Thread.ofVirtual().start(() -> bridge.addToTail(1L));
+
+        assertTrue(producer.join(Duration.ofSeconds(5)));
+        assertTrue(consumer.join(Duration.ofSeconds(5)));
+        assertEquals(1L, result.get());
+    }
+}